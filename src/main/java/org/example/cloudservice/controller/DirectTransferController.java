@@ -0,0 +1,83 @@
+package org.example.cloudservice.controller;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.example.cloudservice.dto.DirectDownloadDto;
+import org.example.cloudservice.dto.DirectUploadDto;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.service.DirectTransferService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.util.UUID;
+
+@RestController
+@Validated
+@RequestMapping("/file/direct")
+@ConditionalOnProperty(name = "app.storage.direct-transfer.enabled", havingValue = "true")
+public class DirectTransferController {
+
+    private final DirectTransferService directTransferService;
+
+    public DirectTransferController(DirectTransferService directTransferService) {
+        this.directTransferService = directTransferService;
+    }
+
+    /**
+     * POST /file/direct?filename={filename}&size={size}
+     * Announces a file that the client uploads straight to storage with a presigned URL.
+     *
+     * @param filename  the name of the file; must not be null.
+     * @param size      the exact size of the file in bytes.
+     * @param user      the authenticated user; must not be null.
+     * @return the upload id and the URL to PUT the content to.
+     */
+    @PostMapping(produces = "application/json")
+    public ResponseEntity<DirectUploadDto> createUpload(
+            @NotNull @RequestParam("filename") String filename,
+            @PositiveOrZero @RequestParam("size") long size,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) {
+
+        return ResponseEntity.ok(directTransferService.createUpload(filename, size, user));
+    }
+
+    /**
+     * POST /file/direct/{id}/complete
+     * Records the uploaded content as a file once the PUT to the presigned URL has finished.
+     *
+     * @param id        the upload id.
+     * @param user      the authenticated user; must not be null.
+     * @return HTTP 200 OK if successful.
+     * @throws FileNotFoundException if the upload does not exist or has expired.
+     */
+    @PostMapping(value = "/{id}/complete", produces = "application/json")
+    public ResponseEntity<Void> completeUpload(
+            @PathVariable("id") UUID id,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        directTransferService.completeUpload(id, user);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * GET /file/direct?filename={filename}
+     * Returns a presigned URL the client downloads the file from, straight from storage.
+     *
+     * @param filename  the name of the file; must not be null.
+     * @param user      the authenticated user; must not be null.
+     * @return the URL, the file hash and the expiry of the URL.
+     * @throws FileNotFoundException if the file is not found.
+     */
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<DirectDownloadDto> createDownload(
+            @NotNull @RequestParam("filename") String filename,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        return ResponseEntity.ok(directTransferService.createDownload(filename, user));
+    }
+}
@@ -1,25 +1,32 @@
 package org.example.cloudservice.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import org.example.cloudservice.dto.ErrorResponseDto;
 import org.example.cloudservice.dto.FileDto;
 import org.example.cloudservice.dto.FilenameUpdateRequestDto;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.service.FileDownload;
 import org.example.cloudservice.service.FileService;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.example.cloudservice.service.StreamingUploadService;
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.security.Principal;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -27,9 +34,12 @@ import java.util.List;
 public class FileController {
 
     private final FileService fileService;
+    private final StreamingUploadService streamingUploadService;
 
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService,
+                          StreamingUploadService streamingUploadService) {
         this.fileService = fileService;
+        this.streamingUploadService = streamingUploadService;
     }
 
     /**
@@ -39,7 +49,7 @@ public class FileController {
      * @param filename  the name of the file; must not be null.
      * @param file      the multipart file payload; must not be null.
      * @param hash      the file hash; optional. If omitted, the service may compute or ignore it.
-     * @param principal the authenticated principal; must not be null.
+     * @param user      the authenticated user; must not be null.
      * @return HTTP 200 OK if successful.
      */
     @PostMapping(
@@ -51,18 +61,67 @@ public class FileController {
             @NotNull @RequestParam("filename") String filename,
             @NotNull @RequestPart("file") MultipartFile file,
             @RequestPart(value = "hash", required = false) String hash,
-            @NonNull Principal principal) {
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) {
 
-        fileService.uploadFile(filename, file, hash, principal.getName());
+        fileService.uploadFile(filename, file, hash, user);
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 
+    /**
+     * POST /file/stream?filename={filename}
+     * Uploads a file via multipart/form-data without buffering the request body.
+     * The file part is piped straight into storage while it is being received,
+     * so uploads are not bound by the multipart size limits.
+     *
+     * @param request   the raw request; its body must not have been read yet.
+     * @param user      the authenticated user; must not be null.
+     * @return HTTP 200 OK if successful.
+     * @throws IOException if the request body cannot be read or parsed.
+     */
+    @PostMapping(
+            value = "/file/stream",
+            produces = "application/json",
+            consumes = "multipart/form-data"
+    )
+    public ResponseEntity<Void> uploadFileStreaming(
+            HttpServletRequest request,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws IOException {
+
+        streamingUploadService.uploadFile(request, user);
+        return ResponseEntity.status(HttpStatus.OK).build();
+    }
+
+    /**
+     * POST /file/by-hash?filename={filename}&hash={hash}&size={size}
+     * Creates a file from content the server already stores for this user, without transferring it.
+     * Clients offer the hash first and upload the file only if this returns 404.
+     *
+     * @param filename  the name of the file; must not be null.
+     * @param hash      the hex-encoded SHA-256 of the file; must not be null.
+     * @param size      the size of the file in bytes.
+     * @param user      the authenticated user; must not be null.
+     * @return HTTP 200 OK if the file was created, or HTTP 404 Not Found if the content is not stored.
+     */
+    @PostMapping(
+            value = "/file/by-hash",
+            produces = "application/json"
+    )
+    public ResponseEntity<Void> uploadFileByHash(
+            @NotNull @RequestParam("filename") String filename,
+            @NotNull @RequestParam("hash") String hash,
+            @PositiveOrZero @RequestParam("size") long size,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) {
+
+        boolean created = fileService.uploadFileByHash(filename, hash, size, user);
+        return created ? ResponseEntity.status(HttpStatus.OK).build() : ResponseEntity.notFound().build();
+    }
+
     /**
      * DELETE /file?filename={filename}
      * Deletes the specified file.
      *
      * @param filename  the name of the file to delete; must not be null.
-     * @param principal the authenticated principal; must not be null.
+     * @param user      the authenticated user; must not be null.
      * @return HTTP 200 OK if deletion is successful.
      * @throws FileNotFoundException if the file is not found.
      */
@@ -72,8 +131,8 @@ public class FileController {
     )
     public ResponseEntity<Void> deleteFile(
             @NotNull @RequestParam("filename") String filename,
-            @NonNull Principal principal) throws FileNotFoundException {
-        fileService.deleteFile(filename, principal.getName());
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+        fileService.deleteFile(filename, user);
         return ResponseEntity.ok().build();
     }
 
@@ -83,7 +142,7 @@ public class FileController {
      *
      * @param filename                  the current filename; must not be null.
      * @param filenameUpdateRequestDto  DTO containing the new filename; validated.
-     * @param principal                 the authenticated principal; must not be null.
+     * @param user                      the authenticated user; must not be null.
      * @return HTTP 200 OK if the update is successful.
      * @throws FileNotFoundException if the file is not found.
      */
@@ -95,38 +154,136 @@ public class FileController {
     public ResponseEntity<ErrorResponseDto> updateFilename(
             @NotNull @RequestParam("filename") String filename,
             @Valid @RequestBody FilenameUpdateRequestDto filenameUpdateRequestDto,
-            @NonNull Principal principal) throws FileNotFoundException {
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
 
-        fileService.updateFilename(filename, filenameUpdateRequestDto, principal.getName());
+        fileService.updateFilename(filename, filenameUpdateRequestDto, user);
         return ResponseEntity.ok().build();
     }
 
     /**
      * GET /file?filename={filename}
      * Retrieves the specified file along with its hash in a multipart/form-data response.
+     * The file hash is exposed as the ETag. A matching {@code If-None-Match} yields 304 Not Modified,
+     * and a single {@code Range}, optionally guarded by {@code If-Range}, yields 206 Partial Content
+     * with just the requested bytes as application/octet-stream.
      *
-     * @param filename  the name of the file to retrieve; must not be null.
-     * @param principal the authenticated principal; must not be null.
-     * @return a multipart response with a "hash" and a "file" part.
+     * @param filename    the name of the file to retrieve; must not be null.
+     * @param ifNoneMatch the entity tags the client already holds; optional.
+     * @param range       the requested byte range; optional.
+     * @param ifRange     the entity tag the range is conditional on; optional.
+     * @param user        the authenticated user; must not be null.
+     * @return a multipart response with a "hash" and a "file" part, or a partial or not-modified response.
      * @throws FileNotFoundException if the file is not found.
      */
     @GetMapping(
             value = "/file",
-            produces = "multipart/form-data"
+            produces = {"multipart/form-data", "application/octet-stream"}
     )
-    public ResponseEntity<MultiValueMap<String, Object>> getFile(
+    public ResponseEntity<?> getFile(
             @NotNull @RequestParam("filename") String filename,
-            @NonNull Principal principal) throws FileNotFoundException {
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        FileDownload download = fileService.getFile(filename, user);
+        // The resource streams from storage while the response is written.
+        StorageObjectResource fileResource = download.resource();
+        String eTag = (download.hash() != null) ? "\"" + download.hash() + "\"" : null;
+
+        if (eTag != null && ifNoneMatchMatches(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
 
-        File file = fileService.getFile(filename, principal.getName());
-        String fileHash = fileService.getFileHash(filename, principal.getName());
+        if (range != null && ifRangeMatches(ifRange, eTag)) {
+            ResponseEntity<?> partial = getFileRange(range, fileResource, eTag);
+            if (partial != null) {
+                return partial;
+            }
+        }
 
-        Resource fileResource = new FileSystemResource(file);
         MultiValueMap<String, Object> multipartBody = new LinkedMultiValueMap<>();
-        multipartBody.add("hash", fileHash);
+        multipartBody.add("hash", download.hash());
         multipartBody.add("file", fileResource);
 
-        return ResponseEntity.ok(multipartBody);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.body(multipartBody);
+    }
+
+    /**
+     * Builds the 206 or 416 response for a {@code Range} header, or returns null when the
+     * header should be ignored and the full file served: malformed or multi-range requests
+     * fall back to a regular 200 response, which RFC 9110 permits.
+     */
+    private ResponseEntity<?> getFileRange(String rangeHeader, StorageObjectResource fileResource, String eTag) {
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (ranges.size() != 1) {
+            return null;
+        }
+
+        long fileLength = fileResource.contentLength();
+        HttpRange range = ranges.getFirst();
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(fileLength);
+            end = range.getRangeEnd(fileLength);
+        } catch (IllegalArgumentException e) {
+            start = 0;
+            end = -1;
+        }
+        if (end < start) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
+                    .build();
+        }
+
+        long rangeLength = end - start + 1;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(rangeLength);
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.body(fileResource.range(start, rangeLength));
+    }
+
+    /**
+     * {@code If-None-Match} uses the weak comparison, so a {@code W/} prefix is ignored.
+     */
+    private static boolean ifNoneMatchMatches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@code If-Range} only honours the range when it carries the current strong ETag.
+     * No Last-Modified date is exposed, so a date validator never matches.
+     */
+    private static boolean ifRangeMatches(String ifRange, String eTag) {
+        return ifRange == null || ifRange.trim().equals(eTag);
     }
 
     /**
@@ -134,7 +291,7 @@ public class FileController {
      * Retrieves a list of files, limited by the specified parameter.
      *
      * @param limit     the maximum number of files to return; must not be null.
-     * @param principal the authenticated principal; must not be null.
+     * @param user      the authenticated user; must not be null.
      * @return a JSON response with a list of file DTOs.
      */
     @GetMapping(
@@ -143,9 +300,9 @@ public class FileController {
     )
     public ResponseEntity<List<FileDto>> listFiles(
             @NotNull @RequestParam("limit") Integer limit,
-            @NonNull Principal principal) {
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) {
 
-        List<FileDto> response = fileService.listFiles(limit, principal.getName());
+        List<FileDto> response = fileService.listFiles(limit, user);
         return ResponseEntity.ok(response);
     }
 }
@@ -0,0 +1,135 @@
+package org.example.cloudservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import org.example.cloudservice.dto.UploadSessionDto;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.service.UploadSessionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+@RestController
+@Validated
+@RequestMapping("/upload-sessions")
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    /**
+     * POST /upload-sessions?filename={filename}
+     * Opens a resumable upload session.
+     *
+     * @param filename    the name of the file; must not be null.
+     * @param contentType the MIME type of the file; optional.
+     * @param hash        the file hash; optional.
+     * @param user        the authenticated user; must not be null.
+     * @return the new session, including its id.
+     */
+    @PostMapping(produces = "application/json")
+    public ResponseEntity<UploadSessionDto> createSession(
+            @NotNull @RequestParam("filename") String filename,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "hash", required = false) String hash,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) {
+
+        UploadSessionDto session = uploadSessionService.createSession(filename, contentType, hash, user);
+        return ResponseEntity.ok(session);
+    }
+
+    /**
+     * GET /upload-sessions/{id}
+     * Returns how many bytes and which chunks of the session have been received,
+     * so an interrupted client knows where to resume.
+     *
+     * @param id        the session id.
+     * @param user      the authenticated user; must not be null.
+     * @return the session status.
+     * @throws FileNotFoundException if the session does not exist or has expired.
+     */
+    @GetMapping(value = "/{id}", produces = "application/json")
+    public ResponseEntity<UploadSessionDto> getSession(
+            @PathVariable("id") UUID id,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        return ResponseEntity.ok(uploadSessionService.getSessionStatus(id, user));
+    }
+
+    /**
+     * PUT /upload-sessions/{id}/chunks/{number}
+     * Uploads one chunk as the raw request body. Content-Length is required.
+     * Re-sending a chunk replaces it.
+     *
+     * @param id        the session id.
+     * @param number    the 1-based chunk number.
+     * @param request   the raw request; its body is the chunk content.
+     * @param user      the authenticated user; must not be null.
+     * @return the session status after the chunk was stored.
+     * @throws FileNotFoundException if the session does not exist or has expired.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PutMapping(
+            value = "/{id}/chunks/{number}",
+            produces = "application/json",
+            consumes = "application/octet-stream"
+    )
+    public ResponseEntity<UploadSessionDto> uploadChunk(
+            @PathVariable("id") UUID id,
+            @PathVariable("number") int number,
+            HttpServletRequest request,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws IOException {
+
+        try (InputStream body = request.getInputStream()) {
+            UploadSessionDto session = uploadSessionService.uploadChunk(
+                    id, number, body, request.getContentLengthLong(), user);
+            return ResponseEntity.ok(session);
+        }
+    }
+
+    /**
+     * POST /upload-sessions/{id}/commit
+     * Assembles the received chunks into a file.
+     *
+     * @param id        the session id.
+     * @param user      the authenticated user; must not be null.
+     * @return HTTP 200 OK if successful.
+     * @throws FileNotFoundException if the session does not exist or has expired.
+     */
+    @PostMapping(value = "/{id}/commit", produces = "application/json")
+    public ResponseEntity<Void> commitSession(
+            @PathVariable("id") UUID id,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        uploadSessionService.commitSession(id, user);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * DELETE /upload-sessions/{id}
+     * Aborts the session and discards every chunk received for it.
+     *
+     * @param id        the session id.
+     * @param user      the authenticated user; must not be null.
+     * @return HTTP 200 OK if successful.
+     * @throws FileNotFoundException if the session does not exist or has expired.
+     */
+    @DeleteMapping(value = "/{id}", produces = "application/json")
+    public ResponseEntity<Void> abortSession(
+            @PathVariable("id") UUID id,
+            @NonNull @AuthenticationPrincipal AuthenticatedUser user) throws FileNotFoundException {
+
+        uploadSessionService.abortSession(id, user);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.cloudservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class DirectDownloadDto {
+
+    @NotBlank(message = "Download URL must not be blank")
+    private String url;
+
+    private String hash;
+
+    @NotNull(message = "Expiry must not be null")
+    private Instant expiresAt;
+}
@@ -0,0 +1,25 @@
+package org.example.cloudservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class DirectUploadDto {
+
+    @NotBlank(message = "Upload id must not be blank")
+    private String id;
+
+    @NotBlank(message = "Upload URL must not be blank")
+    private String url;
+
+    @NotNull(message = "Expiry must not be null")
+    private Instant expiresAt;
+}
@@ -0,0 +1,34 @@
+package org.example.cloudservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class UploadSessionDto {
+
+    @NotBlank(message = "Session id must not be blank")
+    private String id;
+
+    @NotBlank(message = "Filename must not be blank")
+    private String filename;
+
+    @NotNull(message = "Received bytes must not be null")
+    @PositiveOrZero(message = "Received bytes must be zero or positive")
+    private Long receivedBytes;
+
+    @NotNull(message = "Received chunks must not be null")
+    private List<Integer> receivedChunks;
+
+    @NotNull(message = "Expiry must not be null")
+    private Instant expiresAt;
+}
@@ -0,0 +1,41 @@
+package org.example.cloudservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.example.cloudservice.storage.StorageCodec;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "blobs", schema = "cloud")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BlobEntity {
+
+    /** Hex-encoded SHA-256 of the content, computed by the server. */
+    @Id
+    @Column(name = "digest", nullable = false)
+    private String digest;
+
+    @Column(name = "object_name", nullable = false)
+    private String objectName;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    /** How the object's bytes are encoded; every file referencing the blob decodes them the same way. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "codec", nullable = false)
+    @Builder.Default
+    private StorageCodec codec = StorageCodec.NONE;
+
+    /** Number of files referencing this blob, including files whose upload is still being recorded. */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -2,6 +2,7 @@ package org.example.cloudservice.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.example.cloudservice.storage.StorageCodec;
 import java.time.Instant;
 
 @Entity
@@ -33,6 +34,38 @@ public class FileEntity {
     @Column(name = "s3_link", nullable = false)
     private String s3Link;
 
+    /**
+     * Storage shard holding the object, passed as the bucket of every storage call for it;
+     * null for the default shard. Only ever changed by {@code ShardRebalanceService}, so saving
+     * an entity loaded before a move does not point it back at the old shard.
+     */
+    @Column(name = "shard", updatable = false)
+    private String shard;
+
+    /** SHA-256 of the content when the object is a shared blob; null for objects owned by this file alone. */
+    @Column(name = "blob_digest")
+    private String blobDigest;
+
+    /** How the object's bytes are encoded in storage; the size and hash are those of the decoded content. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "codec", nullable = false)
+    @Builder.Default
+    private StorageCodec codec = StorageCodec.NONE;
+
+    /**
+     * Segment the content is packed into, or null if the file has an object of its own.
+     * For packed files {@link #s3Link} names the segment's object.
+     */
+    @Column(name = "segment_id")
+    private Long segmentId;
+
+    @Column(name = "segment_offset")
+    private Long segmentOffset;
+
+    /** Number of stored bytes in the segment, which differs from the size when a codec is used. */
+    @Column(name = "segment_length")
+    private Long segmentLength;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
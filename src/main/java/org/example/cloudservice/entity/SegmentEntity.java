@@ -0,0 +1,44 @@
+package org.example.cloudservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * An object holding the content of several small files back to back.
+ * Files point into it with an offset and a length.
+ */
+@Entity
+@Table(name = "segments", schema = "cloud")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SegmentEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_name", nullable = false)
+    private String objectName;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /** Set once compaction has moved every file out; the object is deleted after a grace period. */
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+}
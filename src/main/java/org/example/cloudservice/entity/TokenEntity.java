@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.Instant;
+import java.util.UUID;
 
 @Entity
 @Table(name = "tokens", schema = "cloud")
@@ -14,9 +15,10 @@ import java.time.Instant;
 @Builder
 public class TokenEntity {
 
+    /** Hash of the token, see {@code TokenHashes}; the token itself is not stored. */
     @Id
-    @Column(name = "token", nullable = false)
-    private String token;
+    @Column(name = "token_hash", nullable = false)
+    private UUID tokenHash;
 
     @ManyToOne(optional = false)
     @JoinColumn(name = "user_id", nullable = false)
@@ -30,4 +32,8 @@ public class TokenEntity {
 
     @Column(name = "revoked", nullable = false)
     private boolean revoked;
+
+    /** When the token was revoked; other nodes pick revocations up by this time. */
+    @Column(name = "revoked_at")
+    private Instant revokedAt;
 }
@@ -0,0 +1,65 @@
+package org.example.cloudservice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "upload_sessions", schema = "cloud")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private UserEntity user;
+
+    @Column(name = "filename", nullable = false)
+    private String filename;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "hash")
+    private String hash;
+
+    @Column(name = "object_name", nullable = false)
+    private String objectName;
+
+    /** Storage shard the object is written to; null for the default shard. */
+    @Column(name = "shard")
+    private String shard;
+
+    /** Id of the storage-side multipart upload the chunks are written to. */
+    @Column(name = "upload_id", nullable = false)
+    private String uploadId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Set once storage has assembled the object, after which the upload id is no longer valid
+     * and the object is removed instead if the session is never committed.
+     */
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package org.example.cloudservice.exception;
 
+import org.apache.commons.fileupload2.core.FileUploadException;
 import org.example.cloudservice.dto.ErrorResponseDto;
+import org.example.cloudservice.service.DirectTransferException;
+import org.example.cloudservice.service.HashMismatchException;
+import org.example.cloudservice.service.UploadSessionException;
+import org.example.cloudservice.storage.StorageUnavailableException;
 import org.example.cloudservice.util.RandomIdGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.support.MissingServletRequestPartException;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.BindException;
@@ -29,7 +35,11 @@ public class GlobalExceptionHandler {
             MethodArgumentNotValidException.class,
             BindException.class,
             HttpMessageNotReadableException.class,
-            ConstraintViolationException.class
+            ConstraintViolationException.class,
+            FileUploadException.class,
+            UploadSessionException.class,
+            HashMismatchException.class,
+            DirectTransferException.class
     })
     public ResponseEntity<ErrorResponseDto> handleBadRequestExceptions(Exception e) {
         logger.error("Bad Request encountered: {}", e.getMessage(), e);
@@ -38,12 +48,31 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorResponseDto> handleMaxUploadSizeExceededException(MaxUploadSizeExceededException e) {
+        logger.error("Upload size limit exceeded: {}", e.getMessage());
+        int errorId = RandomIdGenerator.generateRandomId();
+        ErrorResponseDto errorResponse = new ErrorResponseDto(e.getMessage(), errorId);
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+    }
+
     @ExceptionHandler(FileNotFoundException.class)
     public ResponseEntity<Void> handleFileNotFoundException(FileNotFoundException e) {
         logger.error("File not found: {}", e.getMessage(), e);
         return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
     }
 
+    /**
+     * Storage is overloaded or failing; the request was not attempted and can be retried later.
+     */
+    @ExceptionHandler(StorageUnavailableException.class)
+    public ResponseEntity<ErrorResponseDto> handleStorageUnavailableException(StorageUnavailableException e) {
+        logger.warn("Storage unavailable: {}", e.getMessage());
+        int errorId = RandomIdGenerator.generateRandomId();
+        ErrorResponseDto errorResponse = new ErrorResponseDto(e.getMessage(), errorId);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ErrorResponseDto> handleOtherException(Exception e) {
         logger.error("Error encountered: {}", e.getMessage(), e);
@@ -0,0 +1,70 @@
+package org.example.cloudservice.infrastructure.minio;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.messages.Part;
+import org.springframework.lang.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes the low-level multipart upload calls of {@link MinioAsyncClient},
+ * which the public API only uses internally, so parts can be uploaded
+ * concurrently and individually.
+ * Every call returns a future; failures, including argument and signing errors,
+ * complete the future exceptionally instead of being thrown.
+ */
+public class ExtendedMinioAsyncClient extends MinioAsyncClient {
+
+    public ExtendedMinioAsyncClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * Starts a multipart upload and returns its upload id.
+     */
+    public CompletableFuture<String> startMultipartUpload(String bucket, String objectName, @Nullable String contentType) {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        return call(() -> createMultipartUploadAsync(bucket, null, objectName, headers, HashMultimap.create())
+                .thenApply(response -> response.result().uploadId()));
+    }
+
+    /**
+     * Uploads one part and returns its ETag.
+     */
+    public CompletableFuture<String> putPart(String bucket, String objectName, String uploadId,
+                                             int partNumber, byte[] data, int length) {
+        return call(() -> uploadPartAsync(bucket, null, objectName, data, length, uploadId, partNumber,
+                HashMultimap.create(), HashMultimap.create())
+                .thenApply(response -> response.etag()));
+    }
+
+    public CompletableFuture<Void> finishMultipartUpload(String bucket, String objectName, String uploadId, Part[] parts) {
+        return call(() -> completeMultipartUploadAsync(bucket, null, objectName, uploadId, parts,
+                HashMultimap.create(), HashMultimap.create())
+                .thenApply(response -> null));
+    }
+
+    public CompletableFuture<Void> cancelMultipartUpload(String bucket, String objectName, String uploadId) {
+        return call(() -> abortMultipartUploadAsync(bucket, null, objectName, uploadId,
+                HashMultimap.create(), HashMultimap.create())
+                .thenApply(response -> null));
+    }
+
+    private static <T> CompletableFuture<T> call(MinioCall<T> call) {
+        try {
+            return call.execute();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface MinioCall<T> {
+        CompletableFuture<T> execute() throws Exception;
+    }
+}
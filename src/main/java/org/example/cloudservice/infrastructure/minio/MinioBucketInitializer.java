@@ -7,34 +7,29 @@ import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 
 @Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
 public class MinioBucketInitializer {
 
     private static final Logger logger = LoggerFactory.getLogger(MinioBucketInitializer.class);
 
-    @Value("${minio.endpoint}")
-    private String endpoint;
-
-    @Value("${minio.access-key}")
-    private String accessKey;
-
-    @Value("${minio.secret-key}")
-    private String secretKey;
+    private final MinioClient minioClient;
 
     @Value("${minio.bucket}")
     private String bucketName;
 
+    public MinioBucketInitializer(MinioClient minioClient) {
+        this.minioClient = minioClient;
+    }
+
     @PostConstruct
     public void init() {
-        // Create a MinioClient instance using the configuration properties
-        try (MinioClient minioClient = MinioClient.builder()
-                .endpoint(endpoint)
-                .credentials(accessKey, secretKey)
-                .build()) {
+        try {
             // Check if the bucket exists
             boolean bucketExists = minioClient.bucketExists(
                     BucketExistsArgs.builder().bucket(bucketName).build());
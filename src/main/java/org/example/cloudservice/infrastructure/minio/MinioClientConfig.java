@@ -0,0 +1,122 @@
+package org.example.cloudservice.infrastructure.minio;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import jakarta.annotation.PreDestroy;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the {@link MinioClient} used by the application.
+ * All MinIO calls share one OkHttp client, so connections and TLS sessions
+ * are pooled instead of being re-established on every request.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioClientConfig.class);
+
+    private final MinioProperties properties;
+
+    private OkHttpClient httpClient;
+
+    public MinioClientConfig(MinioProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public OkHttpClient minioHttpClient() {
+        MinioProperties.Http http = properties.getHttp();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(http.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(http.getMaxRequestsPerHost());
+
+        ConnectionPool connectionPool = new ConnectionPool(
+                http.getMaxIdleConnections(), http.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS);
+
+        httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .connectTimeout(http.getConnectTimeout())
+                .readTimeout(http.getReadTimeout())
+                .writeTimeout(http.getWriteTimeout())
+                .callTimeout(http.getCallTimeout())
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .build();
+
+        logger.info("MinIO HTTP client created: maxIdleConnections={}, keepAlive={}, maxRequestsPerHost={}",
+                http.getMaxIdleConnections(), http.getKeepAlive(), http.getMaxRequestsPerHost());
+        return httpClient;
+    }
+
+    @Bean
+    @Primary
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
+        return MinioClient.builder()
+                .endpoint(properties.getEndpoint())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * Client that only signs URLs handed out to clients, so it is built for the endpoint the
+     * clients see. The region is fixed because signing must not need a request to MinIO.
+     */
+    @Bean
+    public MinioClient minioPresignClient(OkHttpClient minioHttpClient) {
+        String endpoint = (properties.getPublicEndpoint() != null && !properties.getPublicEndpoint().isBlank())
+                ? properties.getPublicEndpoint()
+                : properties.getEndpoint();
+        return MinioClient.builder()
+                .endpoint(endpoint)
+                .region(properties.getRegion())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * Asynchronous client sharing the same HTTP client, used where calls are
+     * issued concurrently, such as the parts of a multipart upload.
+     */
+    @Bean
+    public ExtendedMinioAsyncClient minioAsyncClient(OkHttpClient minioHttpClient) {
+        return new ExtendedMinioAsyncClient(MinioAsyncClient.builder()
+                .endpoint(properties.getEndpoint())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .httpClient(minioHttpClient)
+                .build());
+    }
+
+    @Bean
+    public MeterBinder minioHttpClientMetrics(OkHttpClient minioHttpClient) {
+        return new MinioHttpClientMetrics(minioHttpClient);
+    }
+
+    /**
+     * MinioClient does not close an HTTP client it was given, so the pool
+     * and dispatcher threads are released here.
+     */
+    @PreDestroy
+    public void shutdownHttpClient() {
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.cloudservice.infrastructure.minio;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.lang.NonNull;
+
+/**
+ * Publishes connection pool and dispatcher statistics of the MinIO HTTP client,
+ * available under {@code /actuator/metrics/minio.http.*}.
+ */
+public class MinioHttpClientMetrics implements MeterBinder {
+
+    private final OkHttpClient httpClient;
+
+    public MinioHttpClientMetrics(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        ConnectionPool pool = httpClient.connectionPool();
+        Dispatcher dispatcher = httpClient.dispatcher();
+
+        Gauge.builder("minio.http.pool.connections", pool, ConnectionPool::connectionCount)
+                .description("Open connections in the MinIO connection pool")
+                .register(registry);
+        Gauge.builder("minio.http.pool.connections.idle", pool, ConnectionPool::idleConnectionCount)
+                .description("Idle connections in the MinIO connection pool")
+                .register(registry);
+        Gauge.builder("minio.http.pool.connections.active", pool,
+                        p -> p.connectionCount() - p.idleConnectionCount())
+                .description("Connections currently carrying a MinIO request")
+                .register(registry);
+        Gauge.builder("minio.http.requests.running", dispatcher, Dispatcher::runningCallsCount)
+                .description("MinIO requests currently executing")
+                .register(registry);
+        Gauge.builder("minio.http.requests.queued", dispatcher, Dispatcher::queuedCallsCount)
+                .description("MinIO requests waiting for a free slot")
+                .register(registry);
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.cloudservice.infrastructure.minio;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MinIO connection settings bound from the {@code minio.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "minio")
+public class MinioProperties {
+
+    private String endpoint;
+    private String accessKey;
+    private String secretKey;
+    private String bucket;
+
+    /**
+     * Endpoint clients use to reach MinIO with presigned URLs, if it differs from
+     * {@link #endpoint}, e.g. a public host name in front of an internal address.
+     */
+    private String publicEndpoint;
+
+    /**
+     * Region presigned URLs are signed for. Needed with a public endpoint, which the
+     * server may not be able to reach to look the region up.
+     */
+    private String region = "us-east-1";
+
+    /**
+     * Further endpoints and buckets new objects are spread across. The endpoint and bucket
+     * above are the {@code default} shard, which holds everything stored before sharding.
+     * A shard that still holds objects must not be removed; set its weight to zero instead.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /** Weight of the default shard when placing new objects; zero stops placing objects there. */
+    private int defaultShardWeight = 1;
+
+    /**
+     * Settings of the HTTP client shared by every MinIO call.
+     */
+    private Http http = new Http();
+
+    /**
+     * Settings of uploads that are sent to MinIO in parts.
+     */
+    private Multipart multipart = new Multipart();
+
+    /**
+     * Hedging and retrying of reads.
+     */
+    private Hedging hedging = new Hedging();
+
+    @Data
+    public static class Http {
+
+        /** Maximum number of idle connections kept in the pool. */
+        private int maxIdleConnections = 32;
+
+        /** How long an idle connection is kept alive before it is evicted. */
+        private Duration keepAlive = Duration.ofMinutes(5);
+
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration readTimeout = Duration.ofMinutes(5);
+        private Duration writeTimeout = Duration.ofMinutes(5);
+
+        /** Upper bound for a whole call; zero means no limit. */
+        private Duration callTimeout = Duration.ZERO;
+
+        /** Maximum number of concurrent requests across all hosts. */
+        private int maxRequests = 128;
+
+        /** Maximum number of concurrent requests to the MinIO endpoint. */
+        private int maxRequestsPerHost = 64;
+    }
+
+    @Data
+    public static class Multipart {
+
+        /**
+         * Objects of at least this size, or of unknown size, are uploaded in parts.
+         */
+        private DataSize threshold = DataSize.ofMegabytes(64);
+
+        /**
+         * Size of each part; MinIO requires at least 5MB for all but the last part.
+         * It is raised automatically when an object would need more than 10000 parts.
+         */
+        private DataSize partSize = DataSize.ofMegabytes(16);
+
+        /**
+         * Number of parts uploaded concurrently per object. Each in-flight part
+         * holds one part-sized buffer, so memory per upload is parallelism * part size.
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Hedging {
+
+        private boolean enabled = false;
+
+        /**
+         * A second request is sent when the first has not responded within this percentile
+         * of recent response times.
+         */
+        private double percentile = 0.95;
+
+        /** Lower bound for the hedging delay, also used until enough reads were measured. */
+        private Duration minDelay = Duration.ofMillis(20);
+
+        /** Upper bound for the hedging delay. */
+        private Duration maxDelay = Duration.ofSeconds(2);
+
+        /** How many times a read that failed with a transient error is sent again. */
+        private int maxRetries = 2;
+
+        /** Pause before a retry, multiplied by the number of the retry. */
+        private Duration retryBackoff = Duration.ofMillis(50);
+
+        /**
+         * Hedged and retried requests together may add at most this share of the reads
+         * to the load on MinIO.
+         */
+        private double maxExtraLoad = 0.1;
+    }
+
+    @Data
+    public static class Shard {
+
+        /** Name recorded with the files stored on the shard; it must never change. */
+        private String name;
+
+        private String endpoint;
+
+        /** Credentials of the shard; the ones of the default shard are used when not set. */
+        private String accessKey;
+        private String secretKey;
+
+        private String bucket;
+
+        /** Endpoint clients use to reach the shard with presigned URLs, if it differs from {@link #endpoint}. */
+        private String publicEndpoint;
+
+        /** Share of new objects placed on the shard, relative to the other shards. */
+        private int weight = 1;
+    }
+}
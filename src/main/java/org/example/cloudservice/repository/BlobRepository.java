@@ -0,0 +1,76 @@
+package org.example.cloudservice.repository;
+
+import org.example.cloudservice.entity.BlobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Reference counting is done in single statements so concurrent uploads and deletes
+ * of the same content never lose an update; the row lock taken by each statement
+ * serialises them per digest.
+ */
+public interface BlobRepository extends JpaRepository<BlobEntity, String> {
+
+    /**
+     * Adds a reference to the blob with the given digest, creating it with the given object
+     * if it does not exist yet, and returns the object that now holds the content.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO cloud.blobs (digest, object_name, size_bytes, ref_count, codec)
+            VALUES (:digest, :objectName, :size, 1, :codec)
+            ON CONFLICT (digest) DO UPDATE SET ref_count = cloud.blobs.ref_count + 1
+            RETURNING object_name AS "objectName", codec AS "codec"
+            """, nativeQuery = true)
+    BlobObject acquire(@Param("digest") String digest,
+                       @Param("objectName") String objectName,
+                       @Param("size") long size,
+                       @Param("codec") String codec);
+
+    /**
+     * Adds a reference to an existing blob with the given digest and size and returns its
+     * object name, or empty if there is none. A blob whose last reference is being released
+     * is not revived: the statement waits for that release and then finds no row.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE cloud.blobs SET ref_count = ref_count + 1
+            WHERE digest = :digest AND size_bytes = :size AND ref_count > 0
+            RETURNING object_name AS "objectName", codec AS "codec"
+            """, nativeQuery = true)
+    Optional<BlobObject> addReference(@Param("digest") String digest, @Param("size") long size);
+
+    /**
+     * Drops one reference and returns the remaining count, or empty if there is no such blob.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE cloud.blobs SET ref_count = ref_count - 1
+            WHERE digest = :digest AND ref_count > 0
+            RETURNING ref_count
+            """, nativeQuery = true)
+    Optional<Integer> release(@Param("digest") String digest);
+
+    /**
+     * Removes the blob if nothing references it any more and returns its object name.
+     */
+    @Transactional
+    @Query(value = """
+            DELETE FROM cloud.blobs
+            WHERE digest = :digest AND ref_count = 0
+            RETURNING object_name
+            """, nativeQuery = true)
+    Optional<String> deleteIfUnreferenced(@Param("digest") String digest);
+
+    /** The object holding a blob's content and the codec of its bytes. */
+    interface BlobObject {
+
+        String getObjectName();
+
+        String getCodec();
+    }
+}
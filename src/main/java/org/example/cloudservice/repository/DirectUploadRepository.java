@@ -0,0 +1,24 @@
+package org.example.cloudservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.cloudservice.entity.DirectUploadEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DirectUploadRepository extends JpaRepository<DirectUploadEntity, UUID> {
+
+    /**
+     * Locks the upload, so that concurrent attempts to complete it run one after the other.
+     * Must be called within a transaction, which holds the lock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<DirectUploadEntity> findForUpdateByIdAndUserId(UUID id, Integer userId);
+
+    List<DirectUploadEntity> findByExpiresAtBefore(Instant cutoff, Pageable pageable);
+}
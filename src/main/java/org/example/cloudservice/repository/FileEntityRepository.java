@@ -1,15 +1,60 @@
 package org.example.cloudservice.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.cloudservice.entity.FileEntity;
-import org.example.cloudservice.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface FileEntityRepository extends JpaRepository<FileEntity, Integer> {
 
-    List<FileEntity> findByUserAndFilenameAndDeletedFalse(UserEntity user, String filename);
+    List<FileEntity> findByUserIdAndFilenameAndDeletedFalse(Integer userId, String filename);
 
-    List<FileEntity> findAllByUserAndDeletedFalse(UserEntity userEntity, Pageable pageable);
+    List<FileEntity> findAllByUserIdAndDeletedFalse(Integer userId, Pageable pageable);
+
+    boolean existsByUserIdAndBlobDigestAndDeletedFalse(Integer userId, String blobDigest);
+
+    /**
+     * Locks up to {@code limit} files soft-deleted before {@code cutoff}, oldest first.
+     * Rows locked by another transaction are skipped, so concurrent purges on several
+     * nodes take disjoint batches instead of waiting for each other.
+     * Must be called within a transaction, which holds the locks.
+     */
+    @Query(value = """
+            SELECT id AS "id", s3_link AS "s3Link", blob_digest AS "blobDigest", segment_id AS "segmentId",
+                   shard AS "shard"
+            FROM cloud.files
+            WHERE deleted = TRUE AND deleted_at < :cutoff
+            ORDER BY deleted_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<PurgeCandidate> lockPurgeCandidates(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+
+    /**
+     * Locks every file, deleted or not, packed into one of the given segments, so they can
+     * be moved to another segment. Must be called within a transaction, which holds the locks.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<FileEntity> findBySegmentIdInOrderBySegmentIdAscSegmentOffsetAsc(Collection<Long> segmentIds);
+
+    /** The columns of a soft-deleted file needed to purge it. */
+    interface PurgeCandidate {
+
+        Integer getId();
+
+        String getS3Link();
+
+        String getBlobDigest();
+
+        Long getSegmentId();
+
+        String getShard();
+    }
 }
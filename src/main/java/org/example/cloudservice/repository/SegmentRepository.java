@@ -0,0 +1,35 @@
+package org.example.cloudservice.repository;
+
+import org.example.cloudservice.entity.SegmentEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SegmentRepository extends JpaRepository<SegmentEntity, Long> {
+
+    /**
+     * Locks up to {@code limit} segments created before {@code cutoff} whose files, deleted or
+     * not, take up less than {@code liveRatio} of the segment. Bytes of purged files, and of
+     * uploads that were never recorded, are no longer referenced by any file.
+     * Segments locked by another transaction are skipped.
+     * Must be called within a transaction, which holds the locks.
+     */
+    @Query(value = """
+            SELECT s.* FROM cloud.segments s
+            WHERE s.retired_at IS NULL AND s.created_at < :cutoff
+              AND (SELECT COALESCE(SUM(f.segment_length), 0) FROM cloud.files f WHERE f.segment_id = s.id)
+                  < s.size_bytes * :liveRatio
+            ORDER BY s.id
+            LIMIT :limit
+            FOR UPDATE OF s SKIP LOCKED
+            """, nativeQuery = true)
+    List<SegmentEntity> lockCompactionCandidates(@Param("cutoff") Instant cutoff,
+                                                 @Param("liveRatio") double liveRatio,
+                                                 @Param("limit") int limit);
+
+    List<SegmentEntity> findByRetiredAtBefore(Instant cutoff, Pageable pageable);
+}
@@ -1,10 +1,21 @@
 package org.example.cloudservice.repository;
 
 import org.example.cloudservice.entity.TokenEntity;
+import org.example.cloudservice.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
-public interface TokenEntityRepository extends JpaRepository<TokenEntity, Long> {
-    Optional<TokenEntity> findByToken(String token);
+public interface TokenEntityRepository extends JpaRepository<TokenEntity, UUID> {
+    /**
+     * The table is partitioned by expiry, which is not known here, so this probes the primary
+     * key index of every partition; see {@code TokenReaperService}.
+     */
+    Optional<TokenEntity> findByTokenHash(UUID tokenHash);
+
+    /** The user's tokens that are neither revoked nor expired, newest first. */
+    List<TokenEntity> findByUserAndRevokedFalseAndExpiresAtAfterOrderByIssuedAtDesc(UserEntity user, Instant now);
 }
@@ -0,0 +1,15 @@
+package org.example.cloudservice.repository;
+
+import org.example.cloudservice.entity.UploadSessionEntity;
+import org.example.cloudservice.entity.UploadSessionPartEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPartEntity, Long> {
+
+    List<UploadSessionPartEntity> findBySessionOrderByPartNumber(UploadSessionEntity session);
+
+    Optional<UploadSessionPartEntity> findBySessionAndPartNumber(UploadSessionEntity session, Integer partNumber);
+}
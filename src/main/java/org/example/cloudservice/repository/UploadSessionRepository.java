@@ -0,0 +1,31 @@
+package org.example.cloudservice.repository;
+
+import org.example.cloudservice.entity.UploadSessionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSessionEntity, UUID> {
+
+    Optional<UploadSessionEntity> findByIdAndUserId(UUID id, Integer userId);
+
+    /**
+     * Returns up to {@code limit} sessions that expired before {@code cutoff}, oldest first,
+     * after skipping the first {@code offset} of them. The cleanup skips the sessions it
+     * failed to remove, so that they do not hide the ones after them.
+     */
+    @Query(value = """
+            SELECT * FROM cloud.upload_sessions
+            WHERE expires_at < :cutoff
+            ORDER BY expires_at, id
+            OFFSET :offset
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UploadSessionEntity> findExpired(@Param("cutoff") Instant cutoff, @Param("offset") int offset,
+                                          @Param("limit") int limit);
+}
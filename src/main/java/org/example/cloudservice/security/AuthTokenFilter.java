@@ -16,6 +16,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Optional;
 
 @Component
 public class AuthTokenFilter extends OncePerRequestFilter {
@@ -58,17 +59,16 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
         String token = header.substring(tokenPrefix.length());
         try {
-            if (!tokenService.validateToken(token)) {
+            Optional<AuthenticatedUser> user = tokenService.authenticate(token);
+            if (user.isEmpty()) {
                 logger.warn("Invalid token on {}", req.getRequestURI());
                 res.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid token");
                 return;
             }
-
-            String username = tokenService.getUsernameFromToken(token);
-            logger.debug("Authenticated user '{}'", username);
+            logger.debug("Authenticated user '{}'", user.get().username());
 
             var auth = new UsernamePasswordAuthenticationToken(
-                    username,
+                    user.get(),
                     null,
                     Collections.singletonList(new SimpleGrantedAuthority(userRole))
             );
@@ -0,0 +1,18 @@
+package org.example.cloudservice.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.time.Instant;
+
+/**
+ * The principal of a request authenticated by token: the user the token was issued to and
+ * when the token expires. {@link #getName()} is the username, so {@code Principal.getName()}
+ * in controllers keeps returning it.
+ */
+public record AuthenticatedUser(Integer userId, String username, Instant expiresAt) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
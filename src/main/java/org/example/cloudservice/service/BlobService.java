@@ -0,0 +1,106 @@
+package org.example.cloudservice.service;
+
+import org.example.cloudservice.repository.BlobRepository;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
+import org.example.cloudservice.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * Maintains the reference counts of content-addressed blobs.
+ * <p>
+ * A blob is stored once per distinct SHA-256 digest. The object of the first upload with a
+ * given digest becomes the blob, later uploads of the same content reference it instead of
+ * keeping their own copy, and the object is deleted once the last reference is released.
+ */
+@Service
+public class BlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobService.class);
+
+    private final BlobRepository blobRepository;
+    private final StorageAdapter storageAdapter;
+
+    public BlobService(BlobRepository blobRepository, StorageAdapter storageAdapter) {
+        this.blobRepository = blobRepository;
+        this.storageAdapter = storageAdapter;
+    }
+
+    /**
+     * Adds a reference to the content with the given digest, which has just been uploaded
+     * as {@code uploadedObject} with the given codec. If the content was already stored, the
+     * redundant upload is deleted and the existing object is returned, possibly with another
+     * codec; otherwise the upload becomes the blob.
+     *
+     * @return the object that holds the content.
+     */
+    @Transactional
+    public StoredBlob acquire(String digest, long size, String uploadedObject, StorageCodec codec) {
+        StoredBlob blob = toStoredBlob(blobRepository.acquire(digest, uploadedObject, size, codec.name()));
+        if (!blob.objectName().equals(uploadedObject)) {
+            logger.info("Content {} already stored as {}; discarding duplicate upload {}.",
+                    digest, blob.objectName(), uploadedObject);
+            deleteAfterCommit(uploadedObject);
+        }
+        return blob;
+    }
+
+    /**
+     * Adds a reference to content that is already stored, so it does not have to be uploaded again.
+     *
+     * @return the object that holds the content, or empty if no blob has this digest and size.
+     */
+    @Transactional
+    public Optional<StoredBlob> reference(String digest, long size) {
+        return blobRepository.addReference(digest, size).map(BlobService::toStoredBlob);
+    }
+
+    /**
+     * Drops a reference to the content with the given digest. When no references remain,
+     * the blob row is removed in the same transaction and its object is deleted once the
+     * transaction has committed, so a rollback never leaves a row without its object.
+     */
+    @Transactional
+    public void release(String digest) {
+        Integer remaining = blobRepository.release(digest).orElse(null);
+        if (remaining == null) {
+            logger.warn("Released unknown blob {}.", digest);
+            return;
+        }
+        if (remaining == 0) {
+            blobRepository.deleteIfUnreferenced(digest).ifPresent(objectName -> {
+                logger.info("Blob {} is no longer referenced; deleting object {}.", digest, objectName);
+                deleteAfterCommit(objectName);
+            });
+        }
+    }
+
+    private static StoredBlob toStoredBlob(BlobRepository.BlobObject blobObject) {
+        return new StoredBlob(blobObject.getObjectName(), StorageCodec.valueOf(blobObject.getCodec()));
+    }
+
+    private void deleteAfterCommit(String objectName) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    storageAdapter.deleteObject(null, objectName);
+                } catch (StorageException e) {
+                    // Only storage space is lost; the object is no longer referenced by any row.
+                    logger.error("Failed to delete unreferenced object {}.", objectName, e);
+                }
+            }
+        });
+    }
+
+    /** The object holding a blob's content and how its bytes are encoded. */
+    public record StoredBlob(String objectName, StorageCodec codec) {
+    }
+}
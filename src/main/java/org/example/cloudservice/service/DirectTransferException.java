@@ -0,0 +1,12 @@
+package org.example.cloudservice.service;
+
+/**
+ * Thrown when a file cannot be transferred directly between the client and storage,
+ * or when a direct upload does not match what was announced.
+ */
+public class DirectTransferException extends RuntimeException {
+
+    public DirectTransferException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.cloudservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.dto.DirectDownloadDto;
+import org.example.cloudservice.dto.DirectUploadDto;
+import org.example.cloudservice.entity.DirectUploadEntity;
+import org.example.cloudservice.repository.DirectUploadRepository;
+import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.example.cloudservice.storage.StorageObjectStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lets clients move file content straight to and from storage with short-lived presigned
+ * URLs, so large transfers do not pass through this server.
+ * <p>
+ * An upload is announced with its name and size and gets a URL for a single PUT to a staging
+ * object under {@value #STAGING_PREFIX}. Once the client reports that the PUT finished, the
+ * staging object is copied inside storage to the file's own object, checked with a stat call,
+ * without reading it, and recorded as a file. The URL stays valid until it expires, but it
+ * only reaches the staging object, so the content of the file cannot be replaced after the
+ * check. Uploads are kept until they expire and are then removed with their staging objects,
+ * and with the file's object too if they were never completed.
+ * <p>
+ * The SHA-256 of the content is not known when the file is created and is filled in later by
+ * the hash backfill job, which must therefore be enabled as well.
+ * <p>
+ * Downloads get a URL for the stored object, which only works for files that have an object
+ * of their own, stored without a codec; compressed and packed files are downloaded through
+ * the server.
+ * <p>
+ * Enabled with {@code app.storage.direct-transfer.enabled}; the storage backend must be
+ * reachable by clients, which the filesystem backend is not, and the application does not
+ * start otherwise.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.direct-transfer.enabled", havingValue = "true")
+public class DirectTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectTransferService.class);
+
+    /** Largest object S3 and MinIO accept in a single PUT; larger files use upload sessions. */
+    static final long MAX_SINGLE_PUT_SIZE = 5L * 1024 * 1024 * 1024;
+
+    static final String STAGING_PREFIX = "direct-uploads/";
+
+    private final DirectUploadRepository directUploadRepository;
+    private final UserEntityRepository userEntityRepository;
+    private final StorageAdapter storageAdapter;
+    private final FileService fileService;
+
+    /** How long a presigned URL stays valid. */
+    @Value("${app.storage.direct-transfer.url-ttl:15m}")
+    @Setter
+    @Getter
+    private Duration urlTtl;
+
+    /**
+     * How long after its URL expired an upload can still be completed. A PUT that started
+     * before the URL expired may finish well after it.
+     */
+    @Value("${app.storage.direct-transfer.completion-timeout:1h}")
+    @Setter
+    @Getter
+    private Duration completionTimeout;
+
+    @Value("${app.storage.direct-transfer.cleanup-batch-size:100}")
+    @Setter
+    @Getter
+    private int cleanupBatchSize;
+
+    public DirectTransferService(DirectUploadRepository directUploadRepository,
+                                 UserEntityRepository userEntityRepository,
+                                 StorageAdapter storageAdapter,
+                                 FileService fileService,
+                                 @Nullable HashBackfillService hashBackfillService) {
+        if (hashBackfillService == null) {
+            throw new IllegalStateException("app.storage.direct-transfer.enabled requires app.backfill.hash.enabled, "
+                    + "which fills in the hashes of directly uploaded files");
+        }
+        if (!storageAdapter.supportsPresignedUrls()) {
+            throw new IllegalStateException("app.storage.direct-transfer.enabled requires a storage backend "
+                    + "that clients can reach with presigned URLs, which the filesystem backend is not");
+        }
+        this.directUploadRepository = directUploadRepository;
+        this.userEntityRepository = userEntityRepository;
+        this.storageAdapter = storageAdapter;
+        this.fileService = fileService;
+    }
+
+    /**
+     * Reserves an object for the file and returns the URL the client uploads it to.
+     *
+     * @throws DirectTransferException if the file is too large for a single PUT.
+     */
+    public DirectUploadDto createUpload(String filename, long size, AuthenticatedUser user) {
+        if (size > MAX_SINGLE_PUT_SIZE) {
+            throw new DirectTransferException("Files larger than " + MAX_SINGLE_PUT_SIZE
+                    + " bytes cannot be uploaded directly; use an upload session instead.");
+        }
+        String objectName = UUID.randomUUID() + "_" + filename;
+        // The staging object is copied inside storage, so it goes to the shard of the file's object.
+        String shard = storageAdapter.chooseBucket(objectName);
+        Instant urlExpiresAt = Instant.now().plus(urlTtl);
+        String url = storageAdapter.presignPutObject(shard, stagingObjectName(objectName), urlTtl);
+
+        DirectUploadEntity upload = DirectUploadEntity.builder()
+                .user(userEntityRepository.getReferenceById(user.userId()))
+                .filename(filename)
+                .objectName(objectName)
+                .shard(shard)
+                .sizeBytes(size)
+                .createdAt(Instant.now())
+                .expiresAt(urlExpiresAt.plus(completionTimeout))
+                .build();
+        upload = directUploadRepository.save(upload);
+
+        logger.info("Direct upload {} of file {} ({} bytes) created for user {}.",
+                upload.getId(), filename, size, user.username());
+        return new DirectUploadDto(upload.getId().toString(), url, urlExpiresAt);
+    }
+
+    /**
+     * Records the uploaded object as a file. The object must exist and have the announced
+     * size; an object of the wrong size is deleted, and the client may upload it again until
+     * the upload expires.
+     *
+     * @throws FileNotFoundException if the upload does not exist, has expired or was completed.
+     * @throws DirectTransferException if nothing was uploaded yet, or the size does not match.
+     */
+    @Transactional
+    public void completeUpload(UUID uploadId, AuthenticatedUser user) throws FileNotFoundException {
+        DirectUploadEntity upload = lockUpload(uploadId, user);
+        String stagingObjectName = stagingObjectName(upload.getObjectName());
+        // The size is checked on the copy, which the client has no URL for.
+        if (!storageAdapter.copyObject(upload.getShard(), stagingObjectName, upload.getObjectName())) {
+            throw new DirectTransferException("Nothing has been uploaded for direct upload " + uploadId + " yet.");
+        }
+        long storedSize = storageAdapter.statObject(upload.getShard(), upload.getObjectName())
+                .map(StorageObjectStat::size)
+                .orElse(0L);
+        if (storedSize != upload.getSizeBytes()) {
+            fileService.deleteQuietly(upload.getShard(), upload.getObjectName());
+            fileService.deleteQuietly(upload.getShard(), stagingObjectName);
+            throw new DirectTransferException("Uploaded file has " + storedSize
+                    + " bytes, but " + upload.getSizeBytes() + " were announced.");
+        }
+
+        // The content never passed through this server, so its hash is left to the backfill job.
+        fileService.saveFileEntity(upload.getFilename(), upload.getSizeBytes(), null,
+                upload.getObjectName(), upload.getShard(), user);
+        fileService.deleteQuietly(upload.getShard(), stagingObjectName);
+        // Kept until it expires, so that anything put to the URL after this is removed as well.
+        upload.setCompletedAt(Instant.now());
+        directUploadRepository.save(upload);
+
+        logger.info("Direct upload {} completed as file {} ({} bytes) for user {}.",
+                uploadId, upload.getFilename(), upload.getSizeBytes(), user.username());
+    }
+
+    /**
+     * Returns a URL the client downloads the file's content from.
+     *
+     * @throws FileNotFoundException if the file is not found.
+     * @throws DirectTransferException if the file is stored compressed or packed into a segment.
+     */
+    public DirectDownloadDto createDownload(String filename, AuthenticatedUser user) throws FileNotFoundException {
+        FileDownload download = fileService.getFile(filename, user);
+        StorageObjectResource resource = download.resource();
+        if (resource.getCodec() != StorageCodec.NONE) {
+            throw new DirectTransferException("File " + filename
+                    + " is stored compressed and cannot be downloaded directly; use GET /file instead.");
+        }
+        // A URL for the segment would expose the other files packed into it.
+        if (resource.isPacked()) {
+            throw new DirectTransferException("File " + filename
+                    + " is packed with other files and cannot be downloaded directly; use GET /file instead.");
+        }
+        Instant expiresAt = Instant.now().plus(urlTtl);
+        String url = storageAdapter.presignGetObject(resource.getBucket(), resource.getObjectName(), urlTtl, download.filename());
+        return new DirectDownloadDto(url, download.hash(), expiresAt);
+    }
+
+    /**
+     * Removes expired uploads and their staging objects, and the objects of uploads that were
+     * never completed. If the objects cannot be deleted, the uploads are kept and retried on
+     * the next run.
+     */
+    @Scheduled(initialDelayString = "${app.storage.direct-transfer.cleanup-interval:15m}",
+            fixedDelayString = "${app.storage.direct-transfer.cleanup-interval:15m}")
+    public void removeExpiredUploads() {
+        List<DirectUploadEntity> expired = directUploadRepository.findByExpiresAtBefore(
+                Instant.now(), PageRequest.of(0, cleanupBatchSize));
+        if (expired.isEmpty()) {
+            return;
+        }
+        // Objects by shard; a null shard is the default one.
+        Map<String, List<String>> objectNamesByShard = new LinkedHashMap<>();
+        for (DirectUploadEntity upload : expired) {
+            List<String> objectNames = objectNamesByShard.computeIfAbsent(upload.getShard(), shard -> new ArrayList<>());
+            objectNames.add(stagingObjectName(upload.getObjectName()));
+            if (upload.getCompletedAt() == null) {
+                objectNames.add(upload.getObjectName());
+            }
+        }
+        try {
+            for (Map.Entry<String, List<String>> entry : objectNamesByShard.entrySet()) {
+                storageAdapter.deleteObjects(entry.getKey(), entry.getValue());
+            }
+        } catch (StorageException e) {
+            logger.error("Failed to delete the objects of {} expired direct uploads; retrying on the next run.",
+                    expired.size(), e);
+            return;
+        }
+        directUploadRepository.deleteAllInBatch(expired);
+        logger.info("Removed {} expired direct uploads.", expired.size());
+    }
+
+    /**
+     * Locks the upload until the transaction ends, so that of two concurrent completions the
+     * second one only sees the upload after the first has recorded the file, and is rejected.
+     */
+    private DirectUploadEntity lockUpload(UUID uploadId, AuthenticatedUser user) throws FileNotFoundException {
+        DirectUploadEntity upload = directUploadRepository.findForUpdateByIdAndUserId(uploadId, user.userId())
+                .orElseThrow(() -> new FileNotFoundException("Direct upload not found: " + uploadId));
+        if (upload.getExpiresAt().isBefore(Instant.now())) {
+            throw new FileNotFoundException("Direct upload expired: " + uploadId);
+        }
+        if (upload.getCompletedAt() != null) {
+            throw new FileNotFoundException("Direct upload already completed: " + uploadId);
+        }
+        return upload;
+    }
+
+    static String stagingObjectName(String objectName) {
+        return STAGING_PREFIX + objectName;
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.cloudservice.service;
+
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.springframework.lang.Nullable;
+
+/**
+ * A file prepared for download: its stored hash, used as the entity tag,
+ * and a resource that streams the content from storage when read.
+ */
+public record FileDownload(String filename, @Nullable String hash, StorageObjectResource resource) {
+}
@@ -0,0 +1,156 @@
+package org.example.cloudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.repository.FileEntityRepository;
+import org.example.cloudservice.repository.FileEntityRepository.PurgeCandidate;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Permanently removes files that were soft-deleted longer ago than the retention period.
+ * <p>
+ * Files are purged in batches. Each batch locks its rows with {@code FOR UPDATE SKIP LOCKED},
+ * deletes their objects with one bulk request and deletes the rows, all in one transaction,
+ * so several nodes can purge at once without overlapping. If the objects cannot be deleted,
+ * the transaction rolls back and the rows are retried on the next run; deleting an object
+ * twice is harmless. The job pauses between batches to limit the load on the database and storage.
+ * <p>
+ * Files whose content is a shared blob released their reference when they were soft-deleted,
+ * and the blob deletes its object itself, so only their rows are removed here. The same goes
+ * for files packed into a segment: their bytes are reclaimed when the segment is compacted.
+ * <p>
+ * Enabled with {@code app.purge.enabled}, since it deletes user data for good.
+ */
+@Service
+@ConditionalOnProperty(name = "app.purge.enabled", havingValue = "true")
+public class FilePurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePurgeService.class);
+
+    private final FileEntityRepository fileEntityRepository;
+    private final StorageAdapter storageAdapter;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter purgedFiles;
+
+    /** Soft-deleted files are kept, and could be restored, for this long. */
+    @Value("${app.purge.retention:30d}")
+    @Setter
+    @Getter
+    private Duration retention;
+
+    @Value("${app.purge.batch-size:500}")
+    @Setter
+    @Getter
+    private int batchSize;
+
+    /** Pause between two batches of the same run. */
+    @Value("${app.purge.batch-pause:500ms}")
+    @Setter
+    @Getter
+    private Duration batchPause;
+
+    /** Bounds the work done by one run; the rest is left to the next run. */
+    @Value("${app.purge.max-batches-per-run:100}")
+    @Setter
+    @Getter
+    private int maxBatchesPerRun;
+
+    public FilePurgeService(FileEntityRepository fileEntityRepository,
+                            StorageAdapter storageAdapter,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.fileEntityRepository = fileEntityRepository;
+        this.storageAdapter = storageAdapter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgedFiles = Counter.builder("files.purged")
+                .description("Soft-deleted files permanently removed after the retention period")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.purge.initial-delay:5m}", fixedDelayString = "${app.purge.interval:1h}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int purged;
+            try {
+                purged = purgeBatch(cutoff);
+            } catch (StorageException e) {
+                logger.error("Purge of soft-deleted files stopped after {} files; retrying on the next run.", total, e);
+                break;
+            }
+            total += purged;
+            if (purged < batchSize || !pause()) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Purged {} files deleted before {}.", total, cutoff);
+        }
+    }
+
+    /**
+     * Purges one batch of files deleted before the cutoff.
+     *
+     * @return the number of files purged.
+     */
+    int purgeBatch(Instant cutoff) {
+        Integer purged = transactionTemplate.execute(status -> {
+            List<PurgeCandidate> candidates = fileEntityRepository.lockPurgeCandidates(cutoff, batchSize);
+            if (candidates.isEmpty()) {
+                return 0;
+            }
+
+            // Objects of their own, by shard; a null shard is the default one.
+            Map<String, List<String>> objectNamesByShard = new LinkedHashMap<>();
+            int objectCount = 0;
+            for (PurgeCandidate candidate : candidates) {
+                if (candidate.getBlobDigest() == null && candidate.getSegmentId() == null) {
+                    objectNamesByShard.computeIfAbsent(candidate.getShard(), shard -> new ArrayList<>())
+                            .add(candidate.getS3Link());
+                    objectCount++;
+                }
+            }
+            objectNamesByShard.forEach(storageAdapter::deleteObjects);
+
+            fileEntityRepository.deleteAllByIdInBatch(candidates.stream().map(PurgeCandidate::getId).toList());
+            logger.debug("Purged {} files and {} objects.", candidates.size(), objectCount);
+            return candidates.size();
+        });
+        int count = Objects.requireNonNull(purged);
+        purgedFiles.increment(count);
+        return count;
+    }
+
+    /**
+     * @return false if the thread was interrupted, for example because the application is shutting down.
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
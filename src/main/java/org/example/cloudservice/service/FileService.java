@@ -1,30 +1,46 @@
 package org.example.cloudservice.service;
 
+import lombok.Getter;
+import lombok.Setter;
 import org.example.cloudservice.dto.FilenameUpdateRequestDto;
 import org.example.cloudservice.dto.FileDto;
 import org.example.cloudservice.entity.FileEntity;
-import org.example.cloudservice.entity.UserEntity;
 import org.example.cloudservice.repository.FileEntityRepository;
 import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.ContentCompressor;
 import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
 import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.example.cloudservice.util.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HexFormat;
 import java.util.UUID;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,112 +51,355 @@ public class FileService {
     private final FileEntityRepository fileEntityRepository;
     private final UserEntityRepository userEntityRepository;
     private final StorageAdapter storageAdapter;
+    private final BlobService blobService;
+    private final ContentCompressor contentCompressor;
+    @Nullable
+    private final SegmentWriter segmentWriter;
+
+    /**
+     * When enabled, uploads are keyed by a SHA-256 digest computed while they are stored,
+     * and files with identical content share one object.
+     */
+    @Value("${app.storage.dedup.enabled:false}")
+    @Setter
+    @Getter
+    private boolean dedupEnabled;
+
+    @Value("${app.upload.streaming.max-file-size:10GB}")
+    @Setter
+    @Getter
+    private DataSize maxStreamingFileSize;
 
     public FileService(FileEntityRepository fileEntityRepository,
                        UserEntityRepository userEntityRepository,
-                       StorageAdapter storageAdapter) {
+                       StorageAdapter storageAdapter,
+                       BlobService blobService,
+                       ContentCompressor contentCompressor,
+                       @Nullable SegmentWriter segmentWriter) {
         this.fileEntityRepository = fileEntityRepository;
         this.userEntityRepository = userEntityRepository;
         this.storageAdapter = storageAdapter;
+        this.blobService = blobService;
+        this.contentCompressor = contentCompressor;
+        this.segmentWriter = segmentWriter;
     }
 
-    public void uploadFile(String filename, MultipartFile file, String hash, String username) {
+    public void uploadFile(String filename, MultipartFile file, String hash, AuthenticatedUser user) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File is empty.");
         }
 
-        String uniqueFileName = UUID.randomUUID() + "_" + filename;
+        StoredObject storedObject;
 
         // Try to perform the upload. Wrap IOExceptions in a StorageException.
         try (InputStream inputStream = file.getInputStream()) {
-            storageAdapter.uploadObject(uniqueFileName, inputStream, file.getSize(), file.getContentType());
+            storedObject = store(filename, inputStream, file.getSize(), file.getContentType(), hash);
         } catch (IOException e) {
-            logger.error("Error during file upload operation for user {} with filename {}", username, filename, e);
+            logger.error("Error during file upload operation for user {} with filename {}",
+                    user.username(), filename, e);
             throw new StorageException("Error uploading file to storage", e);
         }
 
-        // Look up the user and build FileEntity metadata.
-        UserEntity userEntity = userEntityRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        saveFileEntity(filename, file.getSize(), storedObject.hash(), storedObject.objectName(), storedObject.shard(),
+                storedObject.blobDigest(), storedObject.codec(), storedObject.segment(), user);
+    }
 
-        FileEntity fileEntity = FileEntity.builder()
-                .user(userEntity)
-                .filename(filename)
-                .filesizeBytes(file.getSize())
-                .hash(hash)
-                .s3Link(uniqueFileName)
-                .deleted(false)
-                .createdAt(Instant.now())
-                .build();
+    /**
+     * Uploads a file whose size is not known up front, piping the stream to storage
+     * in a single pass. The caller remains responsible for closing the stream.
+     *
+     * @throws MaxUploadSizeExceededException if the stream is longer than the streaming upload limit.
+     */
+    public void uploadFile(String filename, InputStream inputStream, @Nullable String contentType,
+                           @Nullable String hash, AuthenticatedUser user) {
+        long maxSize = maxStreamingFileSize.toBytes();
+        CountingInputStream countingStream = new CountingInputStream(inputStream, maxSize);
+        StoredObject storedObject;
 
-        fileEntityRepository.save(fileEntity);
+        try {
+            // Peek at the first byte so an empty upload is rejected before anything is stored.
+            PushbackInputStream content = new PushbackInputStream(countingStream, 1);
+            int firstByte = content.read();
+            if (firstByte == -1) {
+                throw new IllegalArgumentException("File is empty.");
+            }
+            content.unread(firstByte);
+            storedObject = store(filename, content, -1, contentType, hash);
+        } catch (IOException | StorageException e) {
+            if (countingStream.isLimitExceeded()) {
+                throw new MaxUploadSizeExceededException(maxSize, e);
+            }
+            logger.error("Error during streaming upload for user {} with filename {}", user.username(), filename, e);
+            throw (e instanceof StorageException storageException)
+                    ? storageException
+                    : new StorageException("Error uploading file to storage", e);
+        }
 
-        logger.info("File {} uploaded successfully for user {}.", filename, username);
+        saveFileEntity(filename, countingStream.getCount(), storedObject.hash(), storedObject.objectName(),
+                storedObject.shard(), storedObject.blobDigest(), storedObject.codec(), storedObject.segment(), user);
+    }
+
+    /**
+     * Creates a file from content that is already stored, identified by its SHA-256 and size,
+     * so the client does not have to send it again. Only content held as a shared blob
+     * qualifies: its digest was computed by the server, and its reference count keeps the
+     * object alive for as long as any file uses it. Outside dedup mode nothing qualifies.
+     * <p>
+     * A hash is no proof that the caller holds the content, so only content the user already
+     * has in one of their own files is linked; otherwise anyone who learned a hash and size
+     * could copy another user's file, or find out whether anyone stores it.
+     *
+     * @return true if the file was created, false if the content must be uploaded.
+     */
+    @Transactional
+    public boolean uploadFileByHash(String filename, String hash, long size, AuthenticatedUser user) {
+        if (!dedupEnabled) {
+            return false;
+        }
+        String digest = hash.strip().toLowerCase(Locale.ROOT);
+        if (!fileEntityRepository.existsByUserIdAndBlobDigestAndDeletedFalse(user.userId(), digest)) {
+            logger.debug("User {} has no file with hash {}; file {} must be uploaded.",
+                    user.username(), digest, filename);
+            return false;
+        }
+        Optional<BlobService.StoredBlob> blob = blobService.reference(digest, size);
+        if (blob.isEmpty()) {
+            logger.debug("No stored content with hash {} and size {} for file {}.", digest, size, filename);
+            return false;
+        }
+        saveFileEntity(filename, size, digest, blob.get().objectName(), null, digest, blob.get().codec(), null, user);
+        return true;
     }
 
-    public void deleteFile(String filename, String username) throws FileNotFoundException {
-        List<FileEntity> fileEntities = getFileEntities(filename, username);
+    /**
+     * Soft-deletes the file. A shared blob loses the file's reference in the same
+     * transaction and is removed from storage once nothing references it.
+     */
+    @Transactional
+    public void deleteFile(String filename, AuthenticatedUser user) throws FileNotFoundException {
+        List<FileEntity> fileEntities = getFileEntities(filename, user);
         for (FileEntity fileEntity : fileEntities) {
             fileEntity.setDeleted(true);
             fileEntity.setDeletedAt(Instant.now());
             fileEntityRepository.save(fileEntity);
+            if (fileEntity.getBlobDigest() != null) {
+                blobService.release(fileEntity.getBlobDigest());
+            }
         }
-        logger.info("File(s) {} deleted successfully for user {}.", filename, username);
+        logger.info("File(s) {} deleted successfully for user {}.", filename, user.username());
     }
 
-    public void updateFilename(String filename, FilenameUpdateRequestDto filenameUpdateRequestDto, String username) throws FileNotFoundException {
-        List<FileEntity> fileEntities = getFileEntities(filename, username);
+    public void updateFilename(String filename, FilenameUpdateRequestDto filenameUpdateRequestDto, AuthenticatedUser user) throws FileNotFoundException {
+        List<FileEntity> fileEntities = getFileEntities(filename, user);
         String newFilename = filenameUpdateRequestDto.getFilename();
         for (FileEntity fileEntity : fileEntities) {
             fileEntity.setFilename(newFilename);
             fileEntityRepository.save(fileEntity);
         }
-        logger.info("Filename {} updated to {} successfully for user {}.", filename, newFilename, username);
+        logger.info("Filename {} updated to {} successfully for user {}.", filename, newFilename, user.username());
     }
 
-    public File getFile(String filename, String username) throws FileNotFoundException {
-        FileEntity fileEntity = getFileEntities(filename, username).getFirst();
-        File tempFile;
-        // Attempt to download the file and copy it to a temporary file.
-        try (InputStream inputStream = storageAdapter.getObject(fileEntity.getS3Link())) {
-            tempFile = File.createTempFile("download_", "_" + fileEntity.getFilename());
-            Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            logger.error("Error during file download operation for user {} with filename {}", username, filename, e);
-            throw new StorageException("Error downloading file from storage", e);
-        }
-        logger.info("File {} downloaded successfully for user {}.", filename, username);
-        return tempFile;
+    /**
+     * Returns the file hash together with a resource that streams the content directly
+     * from storage. Nothing is fetched until the resource is read, and the caller that
+     * reads it must close the stream.
+     */
+    public FileDownload getFile(String filename, AuthenticatedUser user) throws FileNotFoundException {
+        FileEntity fileEntity = getFileEntities(filename, user).getFirst();
+        logger.info("File {} prepared for streaming download for user {}.", filename, user.username());
+        StorageObjectResource resource = ((fileEntity.getSegmentId() != null)
+                ? new StorageObjectResource(storageAdapter, fileEntity.getS3Link(), fileEntity.getFilename(),
+                        fileEntity.getCodec(), fileEntity.getFilesizeBytes(),
+                        fileEntity.getSegmentOffset(), fileEntity.getSegmentLength())
+                : new StorageObjectResource(storageAdapter, fileEntity.getS3Link(), fileEntity.getFilename(),
+                        fileEntity.getCodec(), fileEntity.getFilesizeBytes()))
+                .inBucket(fileEntity.getShard());
+        return new FileDownload(fileEntity.getFilename(), fileEntity.getHash(), resource);
     }
 
-    public String getFileHash(String filename, String username) throws FileNotFoundException {
-        FileEntity fileEntity = getFileEntities(filename, username).getFirst();
+    public String getFileHash(String filename, AuthenticatedUser user) throws FileNotFoundException {
+        FileEntity fileEntity = getFileEntities(filename, user).getFirst();
         return fileEntity.getHash();
     }
 
-    public List<FileDto> listFiles(int limit, String username) {
-        UserEntity userEntity = userEntityRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-
+    public List<FileDto> listFiles(int limit, AuthenticatedUser user) {
         Pageable pageable = PageRequest.of(0, limit);
-        List<FileEntity> fileEntities = fileEntityRepository.findAllByUserAndDeletedFalse(userEntity, pageable);
+        List<FileEntity> fileEntities = fileEntityRepository.findAllByUserIdAndDeletedFalse(user.userId(), pageable);
 
         List<FileDto> fileDtos = fileEntities.stream()
                 .map(fe -> new FileDto(fe.getFilename(), fe.getFilesizeBytes()))
                 .collect(Collectors.toList());
 
-        logger.info("Listed {} files for user {}.", fileDtos.size(), username);
+        logger.info("Listed {} files for user {}.", fileDtos.size(), user.username());
         return fileDtos;
     }
 
-    private List<FileEntity> getFileEntities(String filename, String username) throws FileNotFoundException {
-        UserEntity userEntity = userEntityRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        List<FileEntity> fileEntityList = fileEntityRepository.findByUserAndFilenameAndDeletedFalse(userEntity, filename);
+    /**
+     * Uploads the content under a new unique name. The content is hashed with SHA-256 on its
+     * way to storage, so the digest costs no second read, and a hash supplied by the client
+     * is verified against it. Compressible content is compressed after hashing, see
+     * {@link ContentCompressor}. In dedup mode the upload is then exchanged for the shared blob
+     * with the same digest. If recording the file fails afterwards, the blob keeps one
+     * reference too many, which wastes space but can never delete content that is still in use.
+     * <p>
+     * The stream is only read until this method returns. Small files are packed into a shared
+     * segment instead, see {@link #storePacked}. Objects of their own are stored on the shard the
+     * storage adapter chooses for them; shared blobs stay on the default shard.
+     *
+     * @throws HashMismatchException if {@code expectedHash} does not match the content; nothing is kept.
+     * @throws IOException if the content cannot be read to choose a codec.
+     */
+    private StoredObject store(String filename, InputStream inputStream, long size, @Nullable String contentType,
+                               @Nullable String expectedHash) throws IOException {
+        if (segmentWriter != null && !dedupEnabled && size > 0 && segmentWriter.accepts(size)) {
+            return storePacked(inputStream, size, contentType, expectedHash);
+        }
+
+        String uniqueFileName = UUID.randomUUID() + "_" + filename;
+        String shard = dedupEnabled ? null : storageAdapter.chooseBucket(uniqueFileName);
+        MessageDigest sha256 = newSha256();
+        CountingInputStream countingStream = new CountingInputStream(new DigestInputStream(inputStream, sha256));
+        ContentCompressor.Encoded encoded = contentCompressor.encode(countingStream, contentType);
+        // The compressed size is only known once the upload has finished.
+        long storedSize = (encoded.codec() == StorageCodec.NONE) ? size : -1;
+
+        storageAdapter.uploadObject(shard, uniqueFileName, encoded.stream(), storedSize, contentType);
+
+        String digest = HexFormat.of().formatHex(sha256.digest());
+        try {
+            verifyHash(expectedHash, digest);
+        } catch (HashMismatchException e) {
+            deleteQuietly(shard, uniqueFileName);
+            throw e;
+        }
+
+        if (!dedupEnabled) {
+            return new StoredObject(uniqueFileName, shard, digest, null, encoded.codec(), null);
+        }
+        BlobService.StoredBlob blob = blobService.acquire(digest, countingStream.getCount(), uniqueFileName,
+                encoded.codec());
+        return new StoredObject(blob.objectName(), null, digest, digest, blob.codec(), null);
+    }
+
+    /**
+     * Appends small content to a shared segment rather than giving it an object of its own.
+     * The content is read into memory, which the packing size limit bounds, and is only
+     * appended once its hash has been verified, so a rejected upload
+     * leaves nothing behind.
+     */
+    private StoredObject storePacked(InputStream inputStream, long size, @Nullable String contentType,
+                                     @Nullable String expectedHash) throws IOException {
+        byte[] content = inputStream.readNBytes(Math.toIntExact(size));
+        if (content.length != size) {
+            throw new StorageException("Upload ended after " + content.length + " of " + size + " bytes");
+        }
+        String digest = HexFormat.of().formatHex(newSha256().digest(content));
+        verifyHash(expectedHash, digest);
+
+        ContentCompressor.Encoded encoded = contentCompressor.encode(new ByteArrayInputStream(content), contentType);
+        byte[] stored;
+        try (InputStream encodedStream = encoded.stream()) {
+            stored = encodedStream.readAllBytes();
+        }
+        SegmentWriter.PackedEntry entry = segmentWriter.append(stored);
+        return new StoredObject(entry.objectName(), null, digest, null, encoded.codec(), entry);
+    }
+
+    /**
+     * Computes the SHA-256 of an object on the given shard by reading it back from storage.
+     * Only for content that never passed through this server in order, such as chunked
+     * uploads, and which is therefore stored without a codec.
+     */
+    String hashObject(@Nullable String shard, String objectName) {
+        MessageDigest sha256 = newSha256();
+        try (InputStream inputStream = new DigestInputStream(storageAdapter.getObject(shard, objectName), sha256)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new StorageException("Error reading object " + objectName + " from storage", e);
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    /**
+     * Checks a client-supplied hash against the digest computed by the server.
+     * Hex digits are compared case-insensitively; a missing hash is not checked.
+     *
+     * @throws HashMismatchException if the hashes differ.
+     */
+    static void verifyHash(@Nullable String expectedHash, String digest) {
+        if (expectedHash != null && !expectedHash.isBlank() && !expectedHash.strip().equalsIgnoreCase(digest)) {
+            throw new HashMismatchException("File hash " + expectedHash + " does not match the uploaded content.");
+        }
+    }
+
+    /** Deletes an object that will not be recorded; a failure only leaves an orphaned object. */
+    void deleteQuietly(@Nullable String shard, String objectName) {
+        try {
+            storageAdapter.deleteObject(shard, objectName);
+        } catch (StorageException e) {
+            logger.error("Failed to delete rejected object {}.", objectName, e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Records an object of its own that is already in storage as a file of the given user.
+     *
+     * @param shard the shard holding the object, or null for the default shard.
+     */
+    void saveFileEntity(String filename, long size, @Nullable String hash, String objectName,
+                        @Nullable String shard, AuthenticatedUser user) {
+        saveFileEntity(filename, size, hash, objectName, shard, null, StorageCodec.NONE, null, user);
+    }
+
+    private void saveFileEntity(String filename, long size, @Nullable String hash, String objectName,
+                                @Nullable String shard, @Nullable String blobDigest, StorageCodec codec,
+                                @Nullable SegmentWriter.PackedEntry segment, AuthenticatedUser user) {
+        // Build FileEntity metadata. The user is referenced by id, without loading it.
+        FileEntity fileEntity = FileEntity.builder()
+                .user(userEntityRepository.getReferenceById(user.userId()))
+                .filename(filename)
+                .filesizeBytes(size)
+                .hash(hash)
+                .s3Link(objectName)
+                .shard(shard)
+                .blobDigest(blobDigest)
+                .codec(codec)
+                .segmentId((segment != null) ? segment.segmentId() : null)
+                .segmentOffset((segment != null) ? segment.offset() : null)
+                .segmentLength((segment != null) ? segment.length() : null)
+                .deleted(false)
+                .createdAt(Instant.now())
+                .build();
+
+        fileEntityRepository.save(fileEntity);
+
+        logger.info("File {} uploaded successfully for user {}.", filename, user.username());
+    }
+
+    private List<FileEntity> getFileEntities(String filename, AuthenticatedUser user) throws FileNotFoundException {
+        List<FileEntity> fileEntityList =
+                fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(user.userId(), filename);
         if (fileEntityList.isEmpty()) {
             throw new FileNotFoundException("File not found: " + filename);
         }
         logger.info("Total {} files of {} name located in the repository", fileEntityList.size(), filename);
         return fileEntityList;
     }
+
+    /**
+     * The object holding an upload's content, its shard, the SHA-256 of the content, the digest of the
+     * shared blob if the object is one, the codec of the stored bytes, and the position of the
+     * bytes if the object is a segment.
+     */
+    private record StoredObject(String objectName, @Nullable String shard, String hash, @Nullable String blobDigest,
+                                StorageCodec codec, @Nullable SegmentWriter.PackedEntry segment) {
+    }
 }
@@ -0,0 +1,221 @@
+package org.example.cloudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills in the SHA-256 of files stored before hashes were computed on upload.
+ * <p>
+ * Files are read in pages ordered by id, starting after the id recorded in
+ * {@code cloud.job_checkpoints}, so the job resumes where it stopped after a restart. The objects
+ * of a page are hashed on a small fixed pool of workers, the hashes are written back in one JDBC
+ * batch, and the checkpoint is advanced. The job pauses between pages so that it does not compete
+ * with live traffic for storage and the database.
+ * <p>
+ * Objects that cannot be read are logged and skipped. Once a pass is complete the checkpoint is
+ * reset, so the next run retries them; files that got their hash are not read again.
+ * <p>
+ * Enabled with {@code app.backfill.hash.enabled}; it only needs to run on one node.
+ */
+@Service
+@ConditionalOnProperty(name = "app.backfill.hash.enabled", havingValue = "true")
+public class HashBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashBackfillService.class);
+
+    static final String JOB_NAME = "file-hash-backfill";
+
+    static final String SELECT_CHECKPOINT = "SELECT last_id FROM cloud.job_checkpoints WHERE job_name = ?";
+
+    static final String SAVE_CHECKPOINT = """
+            INSERT INTO cloud.job_checkpoints (job_name, last_id)
+            VALUES (?, ?)
+            ON CONFLICT (job_name) DO UPDATE SET last_id = EXCLUDED.last_id, updated_at = CURRENT_TIMESTAMP
+            """;
+
+    static final String COUNT_PENDING = """
+            SELECT count(*) FROM cloud.files
+            WHERE hash IS NULL AND deleted = FALSE AND id > ?
+            """;
+
+    static final String SELECT_PAGE = """
+            SELECT id, s3_link, shard FROM cloud.files
+            WHERE hash IS NULL AND deleted = FALSE AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    static final String UPDATE_HASH = "UPDATE cloud.files SET hash = ? WHERE id = ? AND hash IS NULL";
+
+    private static final RowMapper<PendingFile> PENDING_FILE_MAPPER =
+            (rs, rowNum) -> new PendingFile(rs.getInt("id"), rs.getString("s3_link"), rs.getString("shard"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FileService fileService;
+    private final Counter hashedFiles;
+    private final Counter failedFiles;
+
+    @Value("${app.backfill.hash.page-size:200}")
+    @Setter
+    @Getter
+    private int pageSize;
+
+    /** Number of objects read and hashed at the same time. */
+    @Value("${app.backfill.hash.parallelism:4}")
+    @Setter
+    @Getter
+    private int parallelism;
+
+    @Value("${app.backfill.hash.page-pause:1s}")
+    @Setter
+    @Getter
+    private Duration pagePause;
+
+    public HashBackfillService(JdbcTemplate jdbcTemplate, FileService fileService, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fileService = fileService;
+        this.hashedFiles = backfillCounter(meterRegistry, "success");
+        this.failedFiles = backfillCounter(meterRegistry, "failure");
+    }
+
+    @Scheduled(initialDelayString = "${app.backfill.hash.initial-delay:1m}",
+            fixedDelayString = "${app.backfill.hash.interval:1h}")
+    public void run() {
+        int lastId = loadCheckpoint();
+        long pending = countPending(lastId);
+        if (pending == 0 && lastId > 0) {
+            // A pass ended without resetting the checkpoint; retry the files it skipped.
+            lastId = 0;
+            jdbcTemplate.update(SAVE_CHECKPOINT, JOB_NAME, lastId);
+            pending = countPending(lastId);
+        }
+        if (pending == 0) {
+            return;
+        }
+        logger.info("Backfilling hashes of {} files, starting after id {}.", pending, lastId);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "hash-backfill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long processed = 0;
+        try {
+            while (true) {
+                List<PendingFile> page = jdbcTemplate.query(SELECT_PAGE, PENDING_FILE_MAPPER, lastId, pageSize);
+                if (page.isEmpty()) {
+                    // The pass is complete; the next run starts over with the files that failed.
+                    jdbcTemplate.update(SAVE_CHECKPOINT, JOB_NAME, 0);
+                    break;
+                }
+                processPage(page, workers);
+                lastId = page.getLast().id();
+                boolean complete = page.size() < pageSize;
+                jdbcTemplate.update(SAVE_CHECKPOINT, JOB_NAME, complete ? 0 : lastId);
+                processed += page.size();
+                logger.info("Hash backfill: {} of {} files processed, checkpoint at id {}.",
+                        processed, pending, complete ? 0 : lastId);
+
+                if (complete || !pause()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Hash backfill interrupted at id {}; it resumes from there on the next run.", lastId);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Hashes the objects of one page in parallel and writes the hashes in one batch.
+     * A row that was given a hash in the meantime, for example by a re-upload, is left alone.
+     */
+    private void processPage(List<PendingFile> page, ExecutorService workers) throws InterruptedException {
+        List<Callable<String>> tasks = new ArrayList<>(page.size());
+        for (PendingFile file : page) {
+            tasks.add(() -> hash(file));
+        }
+        List<Future<String>> results = workers.invokeAll(tasks);
+
+        List<Object[]> updates = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            String digest = results.get(i).resultNow();
+            if (digest != null) {
+                updates.add(new Object[]{digest, page.get(i).id()});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_HASH, updates);
+        }
+        hashedFiles.increment(updates.size());
+        failedFiles.increment(page.size() - updates.size());
+    }
+
+    /**
+     * @return the hex SHA-256 of the file's object, or null if it could not be read.
+     */
+    private String hash(PendingFile file) {
+        try {
+            return fileService.hashObject(file.shard(), file.objectName());
+        } catch (RuntimeException e) {
+            logger.warn("Could not hash object {} of file {}; skipping it.", file.objectName(), file.id(), e);
+            return null;
+        }
+    }
+
+    private long countPending(int lastId) {
+        Long pending = jdbcTemplate.queryForObject(COUNT_PENDING, Long.class, lastId);
+        return pending != null ? pending : 0;
+    }
+
+    private int loadCheckpoint() {
+        List<Integer> lastIds = jdbcTemplate.queryForList(SELECT_CHECKPOINT, Integer.class, JOB_NAME);
+        return lastIds.isEmpty() ? 0 : lastIds.getFirst();
+    }
+
+    /**
+     * @return false if the thread was interrupted, for example because the application is shutting down.
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(pagePause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Counter backfillCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("files.hash.backfill")
+                .description("Files whose missing hash was computed by the backfill job")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    record PendingFile(int id, String objectName, @Nullable String shard) {
+    }
+}
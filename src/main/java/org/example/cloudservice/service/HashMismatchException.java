@@ -0,0 +1,12 @@
+package org.example.cloudservice.service;
+
+/**
+ * Thrown when the hash supplied with an upload does not match the SHA-256
+ * computed by the server from the stored content.
+ */
+public class HashMismatchException extends RuntimeException {
+
+    public HashMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.cloudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.entity.FileEntity;
+import org.example.cloudservice.entity.SegmentEntity;
+import org.example.cloudservice.repository.FileEntityRepository;
+import org.example.cloudservice.repository.SegmentRepository;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rewrites segments that are mostly taken up by bytes no file refers to any more, because the
+ * files were purged or their upload never completed.
+ * <p>
+ * Each run locks a batch of such segments with {@code FOR UPDATE SKIP LOCKED}, together with the
+ * files packed into them, copies the bytes of those files into new, full segments and points
+ * the files there, all in one transaction. Soft-deleted files are copied too, as they can still
+ * be restored. The old segments are only marked as retired, because downloads that looked a file
+ * up before it moved may still be reading them; their objects are deleted after a grace period.
+ * <p>
+ * If the transaction fails after new segments were written, their objects are orphaned but
+ * harmless. Runs only when packing is enabled, and is safe to run on several nodes at once.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.packing.enabled", havingValue = "true")
+public class SegmentCompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentCompactionService.class);
+
+    private final SegmentRepository segmentRepository;
+    private final FileEntityRepository fileEntityRepository;
+    private final SegmentWriter segmentWriter;
+    private final StorageAdapter storageAdapter;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter compactedSegments;
+
+    /** Segments whose files take up less than this share of them are rewritten. */
+    @Value("${app.storage.packing.compaction.live-ratio:0.5}")
+    @Setter
+    @Getter
+    private double liveRatio;
+
+    /** Younger segments are left alone, as files may still be recorded for them. */
+    @Value("${app.storage.packing.compaction.min-age:1h}")
+    @Setter
+    @Getter
+    private Duration minAge;
+
+    /** Number of segments rewritten together in one transaction. */
+    @Value("${app.storage.packing.compaction.batch-size:10}")
+    @Setter
+    @Getter
+    private int batchSize;
+
+    /** Bounds the work done by one run; the rest is left to the next run. */
+    @Value("${app.storage.packing.compaction.max-batches-per-run:10}")
+    @Setter
+    @Getter
+    private int maxBatchesPerRun;
+
+    /** How long the object of a retired segment is kept for downloads already under way. */
+    @Value("${app.storage.packing.compaction.retired-grace:1h}")
+    @Setter
+    @Getter
+    private Duration retiredGrace;
+
+    public SegmentCompactionService(SegmentRepository segmentRepository,
+                                    FileEntityRepository fileEntityRepository,
+                                    SegmentWriter segmentWriter,
+                                    StorageAdapter storageAdapter,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry) {
+        this.segmentRepository = segmentRepository;
+        this.fileEntityRepository = fileEntityRepository;
+        this.segmentWriter = segmentWriter;
+        this.storageAdapter = storageAdapter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.compactedSegments = Counter.builder("segments.compacted")
+                .description("Segments rewritten because most of their bytes were no longer referenced")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.storage.packing.compaction.initial-delay:10m}",
+            fixedDelayString = "${app.storage.packing.compaction.interval:1h}")
+    public void run() {
+        try {
+            deleteRetiredSegments();
+            Instant cutoff = Instant.now().minus(minAge);
+            int total = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                int compacted = compactBatch(cutoff);
+                total += compacted;
+                if (compacted < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                logger.info("Compacted {} segments.", total);
+            }
+        } catch (StorageException e) {
+            logger.error("Segment compaction stopped; retrying on the next run.", e);
+        }
+    }
+
+    /**
+     * Rewrites one batch of segments created before the cutoff.
+     *
+     * @return the number of segments retired.
+     */
+    int compactBatch(Instant cutoff) {
+        Integer compacted = transactionTemplate.execute(status -> {
+            List<SegmentEntity> segments = segmentRepository.lockCompactionCandidates(cutoff, liveRatio, batchSize);
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            List<FileEntity> files = fileEntityRepository.findBySegmentIdInOrderBySegmentIdAscSegmentOffsetAsc(
+                    segments.stream().map(SegmentEntity::getId).toList());
+            moveFiles(segments, files);
+
+            Instant now = Instant.now();
+            for (SegmentEntity segment : segments) {
+                segment.setRetiredAt(now);
+            }
+            segmentRepository.saveAll(segments);
+            logger.debug("Retired {} segments after moving {} files.", segments.size(), files.size());
+            return segments.size();
+        });
+        int count = Objects.requireNonNull(compacted);
+        compactedSegments.increment(count);
+        return count;
+    }
+
+    /**
+     * Copies the bytes of the files into new segments of up to the segment size and updates
+     * the files' positions. Each old segment is read once, in full; segments are small.
+     */
+    private void moveFiles(List<SegmentEntity> segments, List<FileEntity> files) {
+        Map<Long, byte[]> contents = new HashMap<>();
+        for (SegmentEntity segment : segments) {
+            contents.put(segment.getId(), read(segment));
+        }
+
+        long segmentSize = segmentWriter.getSegmentSize().toBytes();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        List<FileEntity> pending = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (FileEntity file : files) {
+            byte[] content = contents.get(file.getSegmentId());
+            offsets.add((long) buffer.size());
+            buffer.write(content, Math.toIntExact(file.getSegmentOffset()), Math.toIntExact(file.getSegmentLength()));
+            pending.add(file);
+            if (buffer.size() >= segmentSize) {
+                writeAndMove(buffer, pending, offsets);
+            }
+        }
+        if (!pending.isEmpty()) {
+            writeAndMove(buffer, pending, offsets);
+        }
+    }
+
+    private void writeAndMove(ByteArrayOutputStream buffer, List<FileEntity> files, List<Long> offsets) {
+        SegmentEntity segment = segmentWriter.writeSegment(buffer.toByteArray());
+        for (int i = 0; i < files.size(); i++) {
+            FileEntity file = files.get(i);
+            file.setSegmentId(segment.getId());
+            file.setSegmentOffset(offsets.get(i));
+            file.setS3Link(segment.getObjectName());
+        }
+        fileEntityRepository.saveAll(files);
+        buffer.reset();
+        files.clear();
+        offsets.clear();
+    }
+
+    private byte[] read(SegmentEntity segment) {
+        try (InputStream inputStream = storageAdapter.getObject(segment.getObjectName())) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new StorageException("Error reading segment " + segment.getId() + " from storage", e);
+        }
+    }
+
+    /** Deletes the objects and rows of segments retired longer ago than the grace period. */
+    void deleteRetiredSegments() {
+        List<SegmentEntity> retired = segmentRepository.findByRetiredAtBefore(
+                Instant.now().minus(retiredGrace), PageRequest.of(0, batchSize * maxBatchesPerRun));
+        if (retired.isEmpty()) {
+            return;
+        }
+        storageAdapter.deleteObjects(null, retired.stream().map(SegmentEntity::getObjectName).toList());
+        segmentRepository.deleteAllInBatch(retired);
+        logger.info("Deleted {} retired segments.", retired.size());
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.cloudservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.entity.SegmentEntity;
+import org.example.cloudservice.repository.SegmentRepository;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs the content of small files into shared segment objects, so that each of them does not
+ * cost an object of its own.
+ * <p>
+ * Appended content is collected into a batch in memory. The batch is written as one object once
+ * it reaches the segment size or, at the latest, when the linger time has passed, and only then
+ * does every caller waiting on it return. An upload is therefore acknowledged only once its bytes
+ * are in storage, at the price of up to the linger time of latency. The segment is recorded in
+ * {@code cloud.segments} before the callers record their files; bytes whose file is never
+ * recorded are dropped when the segment is compacted, see {@link SegmentCompactionService}.
+ * <p>
+ * Enabled with {@code app.storage.packing.enabled}. Not used in dedup mode, where content is
+ * already shared through blobs.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.packing.enabled", havingValue = "true")
+public class SegmentWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentWriter.class);
+
+    private static final String SEGMENT_CONTENT_TYPE = "application/octet-stream";
+
+    private final StorageAdapter storageAdapter;
+    private final SegmentRepository segmentRepository;
+    private final ScheduledExecutorService lingerTimer;
+
+    private final Object lock = new Object();
+
+    /** The batch new content is appended to; guarded by {@link #lock}. */
+    private Batch current;
+
+    /** Files up to this size are packed; larger files get an object of their own. */
+    @Value("${app.storage.packing.max-file-size:64KB}")
+    @Setter
+    @Getter
+    private DataSize maxFileSize;
+
+    /** A batch is written as soon as it reaches this size. */
+    @Value("${app.storage.packing.segment-size:8MB}")
+    @Setter
+    @Getter
+    private DataSize segmentSize;
+
+    /** Longest time content waits for more content to share its segment with. */
+    @Value("${app.storage.packing.linger:20ms}")
+    @Setter
+    @Getter
+    private Duration linger;
+
+    public SegmentWriter(StorageAdapter storageAdapter, SegmentRepository segmentRepository) {
+        this.storageAdapter = storageAdapter;
+        this.segmentRepository = segmentRepository;
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "segment-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return whether content of the given size is packed; content of unknown size is not.
+     */
+    public boolean accepts(long size) {
+        return size >= 0 && size <= maxFileSize.toBytes();
+    }
+
+    /**
+     * Appends the stored bytes of one file to the next segment and waits until that segment
+     * has been written.
+     *
+     * @return where the bytes were stored.
+     * @throws StorageException if the segment could not be written.
+     */
+    public PackedEntry append(byte[] content) {
+        Batch batch;
+        long offset;
+        boolean full;
+        synchronized (lock) {
+            if (current == null) {
+                Batch created = new Batch();
+                current = created;
+                // The timer only hands the write to a virtual thread, so slow writes do not hold it up.
+                lingerTimer.schedule(() -> Thread.ofVirtual().name("segment-flush").start(() -> flush(created)),
+                        linger.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            batch = current;
+            offset = batch.append(content);
+            full = batch.size() >= segmentSize.toBytes();
+        }
+        if (full) {
+            flush(batch);
+        }
+
+        SegmentEntity segment;
+        try {
+            segment = batch.written.join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            throw (cause instanceof RuntimeException runtimeException)
+                    ? runtimeException
+                    : new StorageException("Error writing segment to storage", cause);
+        }
+        return new PackedEntry(segment.getId(), segment.getObjectName(), offset, content.length);
+    }
+
+    /**
+     * Stores the given bytes as a new segment object and records it. The record joins the
+     * caller's transaction, if there is one.
+     */
+    public SegmentEntity writeSegment(byte[] content) {
+        String objectName = "segments/" + UUID.randomUUID();
+        storageAdapter.uploadObject(null, objectName, new ByteArrayInputStream(content), content.length,
+                SEGMENT_CONTENT_TYPE);
+        SegmentEntity segment = SegmentEntity.builder()
+                .objectName(objectName)
+                .sizeBytes((long) content.length)
+                .createdAt(Instant.now())
+                .build();
+        return segmentRepository.save(segment);
+    }
+
+    /**
+     * Writes the batch unless it is already being written. Once taken here, the batch no
+     * longer accepts content, so its bytes can be read without the lock.
+     */
+    private void flush(Batch batch) {
+        synchronized (lock) {
+            if (batch.flushing) {
+                return;
+            }
+            batch.flushing = true;
+            if (current == batch) {
+                current = null;
+            }
+        }
+        try {
+            SegmentEntity segment = writeSegment(batch.buffer.toByteArray());
+            logger.debug("Segment {} written with {} files ({} bytes).", segment.getId(), batch.entries, batch.size());
+            batch.written.complete(segment);
+        } catch (RuntimeException e) {
+            logger.error("Failed to write a segment of {} files.", batch.entries, e);
+            batch.written.completeExceptionally(e);
+        }
+    }
+
+    /** Writes whatever is still waiting, so no caller is left blocked on shutdown. */
+    @PreDestroy
+    public void shutdown() {
+        Batch pending;
+        synchronized (lock) {
+            pending = current;
+        }
+        if (pending != null) {
+            flush(pending);
+        }
+        lingerTimer.shutdownNow();
+    }
+
+    /**
+     * Where the stored bytes of a packed file are: {@code length} bytes at {@code offset}
+     * in the object of segment {@code segmentId}.
+     */
+    public record PackedEntry(long segmentId, String objectName, long offset, long length) {
+    }
+
+    private static final class Batch {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CompletableFuture<SegmentEntity> written = new CompletableFuture<>();
+        private int entries;
+        private boolean flushing;
+
+        /** @return the offset of the appended content. */
+        private long append(byte[] content) {
+            long offset = buffer.size();
+            buffer.writeBytes(content);
+            entries++;
+            return offset;
+        }
+
+        private long size() {
+            return buffer.size();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.example.cloudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.storage.ShardedStorageAdapter;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StorageObjectStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Moves file objects to the shard the storage adapter places them on now, after shards were
+ * added or their weights changed.
+ * <p>
+ * Files are read in pages ordered by id, starting after the id recorded in
+ * {@code cloud.job_checkpoints}, like {@link HashBackfillService}. An object on the wrong shard
+ * is copied to the right one, and the file is then pointed at the copy, but only if it still
+ * points at the original; otherwise the copy is deleted again. The original is recorded in
+ * {@code cloud.shard_moves} and deleted after a grace period, because downloads that looked the
+ * file up before it moved may still be reading it. A pass that reaches the last file starts over
+ * on the next run, so files placed by later weight changes are picked up as well.
+ * <p>
+ * Shared blobs and segments are not sharded and stay where they are. Enabled with
+ * {@code app.storage.rebalance.enabled}; it only needs to run on one node.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.rebalance.enabled", havingValue = "true")
+public class ShardRebalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceService.class);
+
+    static final String JOB_NAME = "shard-rebalance";
+
+    static final String SELECT_CHECKPOINT = "SELECT last_id FROM cloud.job_checkpoints WHERE job_name = ?";
+
+    static final String SAVE_CHECKPOINT = """
+            INSERT INTO cloud.job_checkpoints (job_name, last_id)
+            VALUES (?, ?)
+            ON CONFLICT (job_name) DO UPDATE SET last_id = EXCLUDED.last_id, updated_at = CURRENT_TIMESTAMP
+            """;
+
+    static final String SELECT_PAGE = """
+            SELECT id, s3_link, shard FROM cloud.files
+            WHERE blob_digest IS NULL AND segment_id IS NULL AND deleted = FALSE AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    static final String UPDATE_SHARD = "UPDATE cloud.files SET shard = ? WHERE id = ? AND shard IS NOT DISTINCT FROM ?";
+
+    static final String INSERT_MOVE = "INSERT INTO cloud.shard_moves (object_name, shard) VALUES (?, ?)";
+
+    /**
+     * Originals past the grace period, and whether a file points at them again because a later
+     * weight change moved it back, in which case the object must be kept. The check is an index
+     * lookup on {@code s3_link} (migration 020).
+     */
+    static final String SELECT_DUE_MOVES = """
+            SELECT m.id, m.object_name, m.shard,
+                   EXISTS (SELECT 1 FROM cloud.files f
+                           WHERE f.s3_link = m.object_name AND COALESCE(f.shard, 'default') = m.shard) AS in_use
+            FROM cloud.shard_moves m
+            WHERE m.moved_at < ?
+            ORDER BY m.id
+            LIMIT ?
+            """;
+
+    static final String DELETE_MOVE = "DELETE FROM cloud.shard_moves WHERE id = ?";
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final RowMapper<ShardedFile> SHARDED_FILE_MAPPER =
+            (rs, rowNum) -> new ShardedFile(rs.getInt("id"), rs.getString("s3_link"), rs.getString("shard"));
+
+    private static final RowMapper<MovedObject> MOVED_OBJECT_MAPPER =
+            (rs, rowNum) -> new MovedObject(rs.getLong("id"), rs.getString("object_name"), rs.getString("shard"),
+                    rs.getBoolean("in_use"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageAdapter storageAdapter;
+    private final Counter movedFiles;
+
+    @Value("${app.storage.rebalance.page-size:100}")
+    @Setter
+    @Getter
+    private int pageSize;
+
+    @Value("${app.storage.rebalance.page-pause:1s}")
+    @Setter
+    @Getter
+    private Duration pagePause;
+
+    /** How long the original of a moved object is kept for downloads already under way. */
+    @Value("${app.storage.rebalance.source-grace:1h}")
+    @Setter
+    @Getter
+    private Duration sourceGrace;
+
+    public ShardRebalanceService(JdbcTemplate jdbcTemplate, StorageAdapter storageAdapter, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageAdapter = storageAdapter;
+        this.movedFiles = Counter.builder("files.shard.moved")
+                .description("File objects moved to another storage shard by rebalancing")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.storage.rebalance.initial-delay:10m}",
+            fixedDelayString = "${app.storage.rebalance.interval:1h}")
+    public void run() {
+        int lastId = loadCheckpoint();
+        try {
+            deleteMovedSources();
+            long moved = 0;
+            while (true) {
+                List<ShardedFile> page = jdbcTemplate.query(SELECT_PAGE, SHARDED_FILE_MAPPER, lastId, pageSize);
+                if (page.isEmpty()) {
+                    // The pass is complete; the next run starts over.
+                    jdbcTemplate.update(SAVE_CHECKPOINT, JOB_NAME, 0);
+                    break;
+                }
+                for (ShardedFile file : page) {
+                    if (move(file)) {
+                        moved++;
+                    }
+                }
+                lastId = page.getLast().id();
+                boolean complete = page.size() < pageSize;
+                jdbcTemplate.update(SAVE_CHECKPOINT, JOB_NAME, complete ? 0 : lastId);
+
+                if (complete || !pause()) {
+                    break;
+                }
+            }
+            if (moved > 0) {
+                logger.info("Moved {} file objects to their shard, checkpoint at id {}.", moved, lastId);
+            }
+        } catch (StorageException e) {
+            logger.error("Shard rebalancing stopped at id {}; it resumes from there on the next run.", lastId, e);
+        }
+    }
+
+    /**
+     * Moves the file's object if it is not on the shard it is placed on now.
+     *
+     * @return true if the object was moved.
+     */
+    boolean move(ShardedFile file) {
+        String target = storageAdapter.chooseBucket(file.objectName());
+        String current = (file.shard() != null) ? file.shard() : ShardedStorageAdapter.DEFAULT_SHARD;
+        if (target == null || target.equals(current)) {
+            return false;
+        }
+
+        Optional<StorageObjectStat> stat = storageAdapter.statObject(current, file.objectName());
+        if (stat.isEmpty()) {
+            logger.warn("Object {} of file {} does not exist on shard '{}'; skipping it.",
+                    file.objectName(), file.id(), current);
+            return false;
+        }
+        // Filesystem shards keep no Content-Type.
+        String contentType = (stat.get().contentType() != null) ? stat.get().contentType() : DEFAULT_CONTENT_TYPE;
+        try (InputStream inputStream = storageAdapter.getObject(current, file.objectName())) {
+            storageAdapter.uploadObject(target, file.objectName(), inputStream, stat.get().size(), contentType);
+        } catch (IOException e) {
+            throw new StorageException("Error copying object '" + file.objectName() + "' to shard '" + target + "'", e);
+        }
+
+        if (jdbcTemplate.update(UPDATE_SHARD, target, file.id(), file.shard()) == 0) {
+            // The file was purged in the meantime.
+            storageAdapter.deleteObject(target, file.objectName());
+            return false;
+        }
+        jdbcTemplate.update(INSERT_MOVE, file.objectName(), current);
+        movedFiles.increment();
+        logger.debug("Moved object {} of file {} from shard '{}' to '{}'.", file.objectName(), file.id(), current, target);
+        return true;
+    }
+
+    /** Deletes the originals of objects moved longer ago than the grace period. */
+    void deleteMovedSources() {
+        List<MovedObject> due = jdbcTemplate.query(SELECT_DUE_MOVES, MOVED_OBJECT_MAPPER,
+                Timestamp.from(Instant.now().minus(sourceGrace)), pageSize);
+        Map<String, List<String>> objectNamesByShard = new LinkedHashMap<>();
+        for (MovedObject moved : due) {
+            if (moved.inUse()) {
+                logger.warn("Object {} on shard '{}' is still in use; keeping it.", moved.objectName(), moved.shard());
+            } else {
+                objectNamesByShard.computeIfAbsent(moved.shard(), shard -> new ArrayList<>()).add(moved.objectName());
+            }
+        }
+        objectNamesByShard.forEach(storageAdapter::deleteObjects);
+
+        if (!due.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_MOVE, due.stream().map(moved -> new Object[]{moved.id()}).toList());
+            logger.info("Deleted {} objects left behind by shard moves.", due.size());
+        }
+    }
+
+    private int loadCheckpoint() {
+        List<Integer> lastIds = jdbcTemplate.queryForList(SELECT_CHECKPOINT, Integer.class, JOB_NAME);
+        return lastIds.isEmpty() ? 0 : lastIds.getFirst();
+    }
+
+    /**
+     * @return false if the thread was interrupted, for example because the application is shutting down.
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(pagePause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    record ShardedFile(int id, String objectName, @Nullable String shard) {
+    }
+
+    private record MovedObject(long id, String objectName, String shard, boolean inUse) {
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.cloudservice.service;
+
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies self-contained tokens that carry the user and the expiry, signed with
+ * HMAC-SHA256, so a request can be authenticated without any I/O.
+ * <p>
+ * A token is {@code payload.signature}, both base64url; the payload holds a format version,
+ * the user id, the expiry in epoch seconds, 16 random bytes that make every token unique, and
+ * the username. Random tokens issued before signed tokens were enabled contain no dot, so
+ * both kinds can be told apart and keep working side by side.
+ * <p>
+ * Enabled with {@code app.auth.signed-tokens.enabled}; every node needs the same
+ * {@code app.auth.signed-tokens.secret}, a base64 key of at least 32 bytes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.signed-tokens.enabled", havingValue = "true")
+public class SignedTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int NONCE_LENGTH = 16;
+    private static final int MIN_KEY_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public SignedTokenCodec(@Value("${app.auth.signed-tokens.secret}") String secret) {
+        byte[] keyBytes = Base64.getDecoder().decode(secret);
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new IllegalStateException("app.auth.signed-tokens.secret must be at least "
+                    + MIN_KEY_LENGTH + " bytes, got " + keyBytes.length);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public String encode(AuthenticatedUser user) {
+        byte[] username = user.username().getBytes(StandardCharsets.UTF_8);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        byte[] payload = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + NONCE_LENGTH + username.length)
+                .put(VERSION)
+                .putInt(user.userId())
+                .putLong(user.expiresAt().getEpochSecond())
+                .put(nonce)
+                .put(username)
+                .array();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * @return the user of a correctly signed, unexpired token; empty otherwise.
+     */
+    public Optional<AuthenticatedUser> decode(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            if (buffer.get() != VERSION) {
+                return Optional.empty();
+            }
+            int userId = buffer.getInt();
+            Instant expiresAt = Instant.ofEpochSecond(buffer.getLong());
+            buffer.position(buffer.position() + NONCE_LENGTH);
+            String username = StandardCharsets.UTF_8.decode(buffer).toString();
+            if (Instant.now().isAfter(expiresAt)) {
+                return Optional.empty();
+            }
+            return Optional.of(new AuthenticatedUser(userId, username, expiresAt));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the token has the signed format, regardless of whether its signature is valid.
+     */
+    public static boolean isSigned(String token) {
+        return token.indexOf('.') > 0;
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            // Mac instances are not thread-safe, and creating one is cheap compared to a request.
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.cloudservice.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses a multipart/form-data upload incrementally and pipes the file part
+ * straight into storage, without Spring or the servlet container buffering
+ * the request body first.
+ * <p>
+ * Parts are read in the order they arrive, so a {@code hash} part is only
+ * honoured when it precedes the {@code file} part.
+ */
+@Service
+public class StreamingUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadService.class);
+
+    static final String FILE_PART = "file";
+    static final String HASH_PART = "hash";
+    static final String FILENAME_PARAMETER = "filename";
+
+    private static final int MAX_HASH_LENGTH = 1024;
+
+    private final FileService fileService;
+
+    public StreamingUploadService(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    public void uploadFile(HttpServletRequest request, AuthenticatedUser user) throws IOException {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new IllegalArgumentException("Request is not multipart/form-data.");
+        }
+
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        // Opening the iterator claims the request input stream. This must happen before any
+        // request parameter is read, otherwise the container would parse and spool the body.
+        FileItemInputIterator items = upload.getItemIterator(request);
+
+        String filename = request.getParameter(FILENAME_PARAMETER);
+        if (filename == null || filename.isBlank()) {
+            throw new IllegalArgumentException("Filename must not be blank");
+        }
+
+        String hash = null;
+        boolean fileReceived = false;
+        while (items.hasNext()) {
+            FileItemInput item = items.next();
+            String fieldName = item.getFieldName();
+
+            if (HASH_PART.equals(fieldName)) {
+                if (fileReceived) {
+                    logger.warn("Ignoring '{}' part sent after the file part for user {}", HASH_PART, user.username());
+                    continue;
+                }
+                hash = readField(item);
+            } else if (FILE_PART.equals(fieldName)) {
+                if (fileReceived) {
+                    throw new IllegalArgumentException("Only one file part is allowed.");
+                }
+                try (InputStream inputStream = item.getInputStream()) {
+                    fileService.uploadFile(filename, inputStream, item.getContentType(), hash, user);
+                }
+                fileReceived = true;
+            } else {
+                logger.debug("Skipping unexpected part '{}'", fieldName);
+            }
+        }
+
+        if (!fileReceived) {
+            throw new IllegalArgumentException("Required part '" + FILE_PART + "' is not present.");
+        }
+    }
+
+    private static String readField(FileItemInput item) throws IOException {
+        try (InputStream inputStream = item.getInputStream()) {
+            byte[] value = inputStream.readNBytes(MAX_HASH_LENGTH + 1);
+            if (value.length > MAX_HASH_LENGTH) {
+                throw new IllegalArgumentException("Part '" + item.getFieldName() + "' is too long.");
+            }
+            return new String(value, StandardCharsets.UTF_8).trim();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.cloudservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of validated tokens, keyed by their {@link TokenHashes hash}, so
+ * authenticating a request does not query the database. An entry expires with its token, and after {@code app.auth.token-cache.max-ttl}
+ * at the latest, which bounds how long a token revoked on another node is still accepted here.
+ * Tokens that did not validate are not cached. Hits and misses are published as {@code cache.*}
+ * metrics tagged {@code cache=tokens}.
+ */
+@Component
+public class TokenCache {
+
+    private final Cache<UUID, AuthenticatedUser> cache;
+
+    public TokenCache(@Value("${app.auth.token-cache.max-size:100000}") long maxSize,
+                      @Value("${app.auth.token-cache.max-ttl:5m}") Duration maxTtl,
+                      MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry(maxTtl.toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tokens");
+    }
+
+    /**
+     * @param loader validates a token missing from the cache; returns null if it is not valid.
+     * @return the user the token authenticates, or null if it is not valid.
+     */
+    @Nullable
+    AuthenticatedUser get(UUID tokenHash, Function<UUID, AuthenticatedUser> loader) {
+        return cache.get(tokenHash, loader);
+    }
+
+    void evict(UUID tokenHash) {
+        cache.invalidate(tokenHash);
+    }
+
+    /** Keeps an entry until its token expires or the maximum time to live passed, whichever is first. */
+    private record UntilTokenExpiry(long maxTtlNanos) implements Expiry<UUID, AuthenticatedUser> {
+
+        @Override
+        public long expireAfterCreate(UUID tokenHash, AuthenticatedUser user, long currentTime) {
+            long untilExpiry = Duration.between(Instant.now(), user.expiresAt()).toNanos();
+            return Math.max(0, Math.min(maxTtlNanos, untilExpiry));
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID tokenHash, AuthenticatedUser user, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(UUID tokenHash, AuthenticatedUser user, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
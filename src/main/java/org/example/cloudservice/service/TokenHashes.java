@@ -0,0 +1,30 @@
+package org.example.cloudservice.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Derives the key a token is stored and looked up by: the first 16 bytes of its SHA-256,
+ * as a {@link UUID}. The key is fixed-width whatever the token format, and cannot be turned
+ * back into a token, so it is also what gets logged. Migration 017 computes the same value
+ * in SQL for the tokens that existed before.
+ */
+public final class TokenHashes {
+
+    private TokenHashes() {
+    }
+
+    public static UUID of(String token) {
+        try {
+            // MessageDigest instances are not thread-safe, and creating one is cheap.
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.cloudservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes expired tokens, so that {@code cloud.tokens} does not grow with every login.
+ * <p>
+ * The table is partitioned by the day tokens expire on, in UTC. Each run creates the partitions
+ * of the coming days ahead of time and drops those of days that ended longer than the retention
+ * ago, which removes their tokens without touching any row. A partition is first detached
+ * concurrently, which does not block logins and token lookups the way dropping it from the table
+ * would, and then dropped on its own. Tokens past the retention in partitions that cannot be
+ * dropped yet are deleted in batches, with a pause in between to limit the load on the database.
+ * Revoked tokens are kept until they expire, because the revocation filter of signed tokens is
+ * loaded from them.
+ * <p>
+ * There is no default partition, since a table with one cannot detach partitions concurrently.
+ * Partitions must therefore be created further ahead than the token validity: a token that
+ * expires on a day without a partition cannot be stored, and its login fails. They are created
+ * at startup and on every run even when the reaper is disabled, which only keeps expired tokens,
+ * and the lookahead must exceed the token validity for the application to start. Safe to run on
+ * several nodes at once.
+ * <p>
+ * Tokens are looked up by hash alone, without their expiry, so a lookup probes the primary key
+ * index of every partition, one per day from the retention to the lookahead. Keep both short.
+ */
+@Service
+public class TokenReaperService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenReaperService.class);
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Pattern PARTITION_NAME = Pattern.compile("tokens_p(\\d{8})");
+
+    static final String CREATE_PARTITION = """
+            CREATE TABLE IF NOT EXISTS cloud.%s PARTITION OF cloud.tokens
+            FOR VALUES FROM ('%s') TO ('%s')
+            """;
+
+    /** Also finds partitions that were detached but not dropped, whose detach flag is null. */
+    static final String SELECT_PARTITIONS = """
+            SELECT c.relname, i.inhdetachpending FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            LEFT JOIN pg_inherits i ON i.inhrelid = c.oid
+            WHERE n.nspname = 'cloud' AND c.relkind = 'r' AND c.relname LIKE 'tokens_p%'
+            """;
+
+    /** Cannot run inside a transaction; waits for the queries that still see the partition. */
+    static final String DETACH_PARTITION = "ALTER TABLE cloud.tokens DETACH PARTITION cloud.%s CONCURRENTLY";
+
+    /** Completes a concurrent detach that was interrupted, for example by a restart. */
+    static final String FINALIZE_DETACH = "ALTER TABLE cloud.tokens DETACH PARTITION cloud.%s FINALIZE";
+
+    static final String DROP_PARTITION = "DROP TABLE IF EXISTS cloud.%s";
+
+    static final String DELETE_EXPIRED = """
+            DELETE FROM cloud.tokens
+            WHERE (token_hash, expires_at) IN (
+                SELECT token_hash, expires_at FROM cloud.tokens
+                WHERE expires_at < ?
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter reapedTokens;
+
+    /** Whether expired tokens are removed; partitions are created either way. */
+    @Getter
+    private final boolean enabled;
+
+    /** Number of days after today whose partitions are created ahead of time. */
+    @Getter
+    private final int lookaheadDays;
+
+    /** Expired tokens are kept for this long, for example to look into a past session. */
+    @Value("${app.auth.token-reaper.retention:1d}")
+    @Setter
+    @Getter
+    private Duration retention;
+
+    @Value("${app.auth.token-reaper.batch-size:1000}")
+    @Setter
+    @Getter
+    private int batchSize;
+
+    /** Pause between two batches of the same run. */
+    @Value("${app.auth.token-reaper.batch-pause:100ms}")
+    @Setter
+    @Getter
+    private Duration batchPause;
+
+    /** Bounds the work done by one run; the rest is left to the next run. */
+    @Value("${app.auth.token-reaper.max-batches-per-run:100}")
+    @Setter
+    @Getter
+    private int maxBatchesPerRun;
+
+    public TokenReaperService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${app.auth.token-reaper.enabled:true}") boolean enabled,
+                              @Value("${app.auth.token-reaper.lookahead-days:7}") int lookaheadDays,
+                              @Value("${app.auth.token-validity-seconds}") long tokenValiditySeconds) {
+        if (Duration.ofDays(lookaheadDays).compareTo(Duration.ofSeconds(tokenValiditySeconds)) <= 0) {
+            throw new IllegalStateException("app.auth.token-reaper.lookahead-days must exceed "
+                    + "app.auth.token-validity-seconds, or tokens expire on days without a partition and logins fail");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.lookaheadDays = lookaheadDays;
+        this.reapedTokens = Counter.builder("tokens.reaped")
+                .description("Expired tokens deleted in batches, not counting dropped partitions")
+                .register(meterRegistry);
+    }
+
+    /** Creates the partitions before the first login, which may come after a long downtime. */
+    @PostConstruct
+    void init() {
+        createPartitions();
+    }
+
+    @Scheduled(initialDelayString = "${app.auth.token-reaper.initial-delay:1m}",
+            fixedDelayString = "${app.auth.token-reaper.interval:1h}")
+    public void run() {
+        createPartitions();
+        if (!enabled) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        dropPartitions(cutoff);
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int deleted = jdbcTemplate.update(DELETE_EXPIRED, Timestamp.from(cutoff), batchSize);
+            total += deleted;
+            if (deleted < batchSize || !pause()) {
+                break;
+            }
+        }
+        reapedTokens.increment(total);
+        if (total > 0) {
+            logger.info("Deleted {} tokens expired before {}.", total, cutoff);
+        }
+    }
+
+    /** Creates the partitions of today and the coming days that do not exist yet. */
+    void createPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (int i = 0; i <= lookaheadDays; i++) {
+            LocalDate day = today.plusDays(i);
+            try {
+                jdbcTemplate.execute(CREATE_PARTITION.formatted(partitionName(day),
+                        day.atStartOfDay(ZoneOffset.UTC).toInstant(),
+                        day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+            } catch (DataAccessException e) {
+                // Retried on the next run, in time unless creation keeps failing for the lookahead less the validity.
+                logger.error("Could not create token partition for {}; tokens expiring that day cannot be stored.",
+                        day, e);
+            }
+        }
+    }
+
+    /** Detaches and drops the partitions of days that ended before the cutoff. */
+    void dropPartitions(Instant cutoff) {
+        List<Partition> partitions = jdbcTemplate.query(SELECT_PARTITIONS,
+                (rs, rowNum) -> new Partition(rs.getString(1), rs.getObject(2) != null, rs.getBoolean(2)));
+        for (Partition partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition.name());
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate day = LocalDate.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                if (partition.attached()) {
+                    jdbcTemplate.execute((partition.detachPending() ? FINALIZE_DETACH : DETACH_PARTITION)
+                            .formatted(partition.name()));
+                }
+                jdbcTemplate.execute(DROP_PARTITION.formatted(partition.name()));
+                logger.info("Dropped token partition {}.", partition.name());
+            } catch (DataAccessException e) {
+                logger.warn("Could not drop token partition {}; retrying on the next run.", partition.name(), e);
+            }
+        }
+    }
+
+    record Partition(String name, boolean attached, boolean detachPending) {
+    }
+
+    static String partitionName(LocalDate day) {
+        return "tokens_p" + PARTITION_SUFFIX.format(day);
+    }
+
+    /**
+     * @return false if the thread was interrupted, for example because the application is shutting down.
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
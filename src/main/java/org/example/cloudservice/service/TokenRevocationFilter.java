@@ -0,0 +1,112 @@
+package org.example.cloudservice.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The set of revoked signed tokens that have not expired yet, kept in memory so that checking
+ * a token does not query the database. Tokens are held by their {@link TokenHashes hash}, as stored.
+ * <p>
+ * A Bloom filter answers for the great majority of tokens, which were never revoked, without
+ * hashing them into the exact set; the exact set, which maps each revoked token to its expiry,
+ * settles the rare false positives. Revocations on this node are added right away; those on
+ * other nodes are loaded from {@code cloud.tokens} every {@code app.auth.signed-tokens.revocation-refresh},
+ * which bounds how long a token logged out elsewhere is still accepted here. Expired tokens are
+ * dropped on refresh, and the Bloom filter is rebuilt without them, so the set stays as small as
+ * the number of tokens revoked within one token lifetime.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.signed-tokens.enabled", havingValue = "true")
+public class TokenRevocationFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationFilter.class);
+
+    static final String SELECT_REVOKED = """
+            SELECT token_hash, expires_at, revoked_at FROM cloud.tokens
+            WHERE revoked_at > ? AND expires_at > ?
+            """;
+
+    /** Revocations are reloaded from this far before the last one seen, to cover clock skew between nodes. */
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final Funnel<UUID> UUID_FUNNEL =
+            (uuid, sink) -> sink.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<UUID, Instant> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter<UUID> bloomFilter = newBloomFilter(0);
+    private Instant lastRevokedAt = Instant.EPOCH;
+
+    public TokenRevocationFilter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isRevoked(UUID tokenHash) {
+        return bloomFilter.mightContain(tokenHash) && revoked.containsKey(tokenHash);
+    }
+
+    /**
+     * Takes effect on this node right away; other nodes learn of it on their next refresh.
+     */
+    public synchronized void revoke(UUID tokenHash, Instant expiresAt) {
+        revoked.put(tokenHash, expiresAt);
+        bloomFilter.put(tokenHash);
+        if (bloomFilter.expectedFpp() > FALSE_POSITIVE_RATE) {
+            rebuild();
+        }
+    }
+
+    /** Loads the revocations before the first request is authenticated. */
+    @PostConstruct
+    void load() {
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "${app.auth.signed-tokens.revocation-refresh:10s}",
+            fixedDelayString = "${app.auth.signed-tokens.revocation-refresh:10s}")
+    public synchronized void refresh() {
+        Instant now = Instant.now();
+        Instant since = lastRevokedAt.minus(OVERLAP);
+        jdbcTemplate.query(SELECT_REVOKED, (RowCallbackHandler) rs -> {
+            Instant revokedAt = rs.getTimestamp("revoked_at").toInstant();
+            revoked.put(rs.getObject("token_hash", UUID.class), rs.getTimestamp("expires_at").toInstant());
+            if (revokedAt.isAfter(lastRevokedAt)) {
+                lastRevokedAt = revokedAt;
+            }
+        }, Timestamp.from(since.isBefore(Instant.EPOCH) ? Instant.EPOCH : since), Timestamp.from(now));
+
+        revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        rebuild();
+        logger.debug("Revocation filter refreshed: {} revoked tokens.", revoked.size());
+    }
+
+    /** Replaces the Bloom filter with one sized for, and holding, exactly the revoked tokens. */
+    private void rebuild() {
+        BloomFilter<UUID> rebuilt = newBloomFilter(revoked.size());
+        revoked.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+
+    private static BloomFilter<UUID> newBloomFilter(int size) {
+        return BloomFilter.create(UUID_FUNNEL,
+                Math.max(MIN_CAPACITY, 2L * size), FALSE_POSITIVE_RATE);
+    }
+}
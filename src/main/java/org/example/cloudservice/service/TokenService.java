@@ -6,13 +6,16 @@ import org.example.cloudservice.entity.TokenEntity;
 import org.example.cloudservice.entity.UserEntity;
 import org.example.cloudservice.repository.TokenEntityRepository;
 import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -23,26 +26,50 @@ public class TokenService {
 
     private final TokenEntityRepository tokenEntityRepository;
     private final UserEntityRepository userEntityRepository;
+    private final TokenCache tokenCache;
+    @Nullable
+    private final SignedTokenCodec signedTokenCodec;
+    @Nullable
+    private final TokenRevocationFilter revocationFilter;
 
     @Value("${app.auth.token-validity-seconds}")
     @Setter
     @Getter
     private long tokenValiditySeconds;
 
+    /** Active tokens a user may hold at once, as with several devices; 0 for no limit. */
+    @Value("${app.auth.max-tokens-per-user:0}")
+    @Setter
+    @Getter
+    private int maxTokensPerUser;
+
     public TokenService(TokenEntityRepository tokenEntityRepository,
-                        UserEntityRepository userEntityRepository) {
+                        UserEntityRepository userEntityRepository,
+                        TokenCache tokenCache,
+                        @Nullable SignedTokenCodec signedTokenCodec,
+                        @Nullable TokenRevocationFilter revocationFilter) {
         this.tokenEntityRepository = tokenEntityRepository;
         this.userEntityRepository = userEntityRepository;
+        this.tokenCache = tokenCache;
+        this.signedTokenCodec = signedTokenCodec;
+        this.revocationFilter = revocationFilter;
     }
 
+    /**
+     * Issues a token for the user. With signed tokens enabled, the token carries the user and
+     * its expiry itself; it is still recorded, so that it can be revoked on every node.
+     * If the user then holds more active tokens than allowed, the oldest ones are revoked.
+     */
     public String generateToken(String username) {
         UserEntity userEntity = userEntityRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        final String token = UUID.randomUUID().toString();
         final Instant issuedAt = Instant.now();
         final Instant expiresAt = issuedAt.plus(tokenValiditySeconds, ChronoUnit.SECONDS);
+        final String token = (signedTokenCodec != null)
+                ? signedTokenCodec.encode(new AuthenticatedUser(userEntity.getId(), username, expiresAt))
+                : UUID.randomUUID().toString();
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(userEntity)
                 .issuedAt(issuedAt)
                 .expiresAt(expiresAt)
@@ -50,43 +77,92 @@ public class TokenService {
                 .build();
         tokenEntityRepository.save(tokenEntity);
         logger.info("Generated token for user {}: expires at {}", username, expiresAt);
+        if (maxTokensPerUser > 0) {
+            revokeExcessTokens(userEntity, issuedAt);
+        }
         return token;
     }
 
-    public boolean validateToken(String token) {
-        Optional<TokenEntity> tokenEntityOpt = tokenEntityRepository.findByToken(token);
+    private void revokeExcessTokens(UserEntity userEntity, Instant now) {
+        List<TokenEntity> active =
+                tokenEntityRepository.findByUserAndRevokedFalseAndExpiresAtAfterOrderByIssuedAtDesc(userEntity, now);
+        if (active.size() <= maxTokensPerUser) {
+            return;
+        }
+        List<TokenEntity> excess = active.subList(maxTokensPerUser, active.size());
+        for (TokenEntity tokenEntity : excess) {
+            revoke(tokenEntity);
+        }
+        logger.info("Revoked the {} oldest tokens of user {} over the limit of {}.",
+                excess.size(), userEntity.getUsername(), maxTokensPerUser);
+    }
+
+    /**
+     * Validates the token and returns the user it was issued to, in a single lookup by the
+     * token's {@link TokenHashes hash}. Signed tokens are verified in memory against their signature and the revocation filter;
+     * other valid tokens are served from the {@link TokenCache} until they expire.
+     *
+     * @return the authenticated user, or empty if the token is unknown, expired or revoked.
+     */
+    public Optional<AuthenticatedUser> authenticate(String token) {
+        if (signedTokenCodec != null && SignedTokenCodec.isSigned(token)) {
+            Optional<AuthenticatedUser> user = signedTokenCodec.decode(token);
+            if (user.isPresent() && revocationFilter != null && revocationFilter.isRevoked(TokenHashes.of(token))) {
+                logger.warn("Token is revoked for user {}", user.get().username());
+                return Optional.empty();
+            }
+            return user;
+        }
+        UUID tokenHash = TokenHashes.of(token);
+        AuthenticatedUser user = tokenCache.get(tokenHash, this::loadToken);
+        if (user != null && Instant.now().isAfter(user.expiresAt())) {
+            tokenCache.evict(tokenHash);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(user);
+    }
+
+    @Nullable
+    private AuthenticatedUser loadToken(UUID tokenHash) {
+        Optional<TokenEntity> tokenEntityOpt = tokenEntityRepository.findByTokenHash(tokenHash);
         if (tokenEntityOpt.isEmpty()) {
-            logger.warn("Token not found: {}", token);
-            return false;
+            logger.warn("Token not found: {}", tokenHash);
+            return null;
         }
 
         TokenEntity tokenEntity = tokenEntityOpt.get();
         if (Instant.now().isAfter(tokenEntity.getExpiresAt())) {
-            logger.warn("Token expired for user {}: {}", tokenEntity.getUser().getUsername(), token);
-            return false;
+            logger.warn("Token expired for user {}: {}", tokenEntity.getUser().getUsername(), tokenHash);
+            return null;
         }
         if (tokenEntity.isRevoked()) {
-            logger.warn("Token is revoked for user {}: {}", tokenEntity.getUser().getUsername(), token);
-            return false;
+            logger.warn("Token is revoked for user {}: {}", tokenEntity.getUser().getUsername(), tokenHash);
+            return null;
         }
-        return true;
+        UserEntity user = tokenEntity.getUser();
+        return new AuthenticatedUser(user.getId(), user.getUsername(), tokenEntity.getExpiresAt());
     }
 
     public void invalidateToken(String token) {
-        Optional<TokenEntity> tokenEntityOpt = tokenEntityRepository.findByToken(token);
+        UUID tokenHash = TokenHashes.of(token);
+        Optional<TokenEntity> tokenEntityOpt = tokenEntityRepository.findByTokenHash(tokenHash);
         if (tokenEntityOpt.isEmpty()) {
-            logger.warn("Token for invalidation not found: {}", token);
+            logger.warn("Token for invalidation not found: {}", tokenHash);
         } else {
-            TokenEntity tokenEntity = tokenEntityOpt.get();
-            tokenEntity.setRevoked(true);
-            tokenEntityRepository.save(tokenEntity);
-            logger.info("Token invalidated: {}", token);
+            revoke(tokenEntityOpt.get());
+            logger.info("Token invalidated: {}", tokenHash);
         }
+        tokenCache.evict(tokenHash);
     }
 
-    public String getUsernameFromToken(String token) {
-        TokenEntity tokenEntity = tokenEntityRepository.findByToken(token)
-                .orElseThrow(() -> new RuntimeException("Token not found in the storage: " + token));
-        return tokenEntity.getUser().getUsername();
+    private void revoke(TokenEntity tokenEntity) {
+        tokenEntity.setRevoked(true);
+        tokenEntity.setRevokedAt(Instant.now());
+        tokenEntityRepository.save(tokenEntity);
+        if (revocationFilter != null) {
+            revocationFilter.revoke(tokenEntity.getTokenHash(), tokenEntity.getExpiresAt());
+        }
+        // After the save, so the next lookup reads the token as revoked.
+        tokenCache.evict(tokenEntity.getTokenHash());
     }
 }
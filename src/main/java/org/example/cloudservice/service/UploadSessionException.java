@@ -0,0 +1,12 @@
+package org.example.cloudservice.service;
+
+/**
+ * Thrown when a request does not fit the state of an upload session,
+ * e.g. a chunk of the wrong size or a commit with chunks missing.
+ */
+public class UploadSessionException extends RuntimeException {
+
+    public UploadSessionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.cloudservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.cloudservice.dto.UploadSessionDto;
+import org.example.cloudservice.entity.UploadSessionEntity;
+import org.example.cloudservice.entity.UploadSessionPartEntity;
+import org.example.cloudservice.repository.UploadSessionPartRepository;
+import org.example.cloudservice.repository.UploadSessionRepository;
+import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StoragePart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a client opens a session, uploads the file as numbered chunks in any order,
+ * re-sending any chunk that failed, and commits once every chunk has arrived.
+ * <p>
+ * Each chunk is written straight to storage as one part of a multipart upload, and the committed
+ * object is assembled from those parts by storage, so no chunk is copied or re-uploaded. The
+ * shard of the object is chosen when the session is created, since all parts go to one upload.
+ * Sessions that are never committed are aborted, and their parts removed, after they expire.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+
+    /** Storage limit on the number of parts of a single upload. */
+    static final int MAX_CHUNKS = 10_000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final UserEntityRepository userEntityRepository;
+    private final StorageAdapter storageAdapter;
+    private final FileService fileService;
+    private final TransactionTemplate transactionTemplate;
+
+    /** Every chunk but the last must be at least this large; S3 and MinIO reject smaller parts. */
+    @Value("${app.upload.sessions.min-chunk-size:5MB}")
+    @Setter
+    @Getter
+    private DataSize minChunkSize;
+
+    /** Chunks are buffered while being signed for storage, so their size is capped. */
+    @Value("${app.upload.sessions.max-chunk-size:64MB}")
+    @Setter
+    @Getter
+    private DataSize maxChunkSize;
+
+    @Value("${app.upload.sessions.ttl:24h}")
+    @Setter
+    @Getter
+    private Duration sessionTtl;
+
+    @Value("${app.upload.sessions.cleanup-batch-size:100}")
+    @Setter
+    @Getter
+    private int cleanupBatchSize;
+
+    public UploadSessionService(UploadSessionRepository uploadSessionRepository,
+                                UploadSessionPartRepository uploadSessionPartRepository,
+                                UserEntityRepository userEntityRepository,
+                                StorageAdapter storageAdapter,
+                                FileService fileService,
+                                PlatformTransactionManager transactionManager) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadSessionPartRepository = uploadSessionPartRepository;
+        this.userEntityRepository = userEntityRepository;
+        this.storageAdapter = storageAdapter;
+        this.fileService = fileService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public UploadSessionDto createSession(String filename, @Nullable String contentType,
+                                          @Nullable String hash, AuthenticatedUser user) {
+        String objectName = UUID.randomUUID() + "_" + filename;
+        String shard = storageAdapter.chooseBucket(objectName);
+        String uploadId = storageAdapter.createMultipartUpload(shard, objectName, contentType);
+
+        UploadSessionEntity session = UploadSessionEntity.builder()
+                .user(userEntityRepository.getReferenceById(user.userId()))
+                .filename(filename)
+                .contentType(contentType)
+                .hash(hash)
+                .objectName(objectName)
+                .shard(shard)
+                .uploadId(uploadId)
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plus(sessionTtl))
+                .build();
+        session = uploadSessionRepository.save(session);
+
+        logger.info("Upload session {} for file {} created for user {}.", session.getId(), filename, user.username());
+        return toDto(session, List.of());
+    }
+
+    /**
+     * Stores one chunk of the file. A chunk that was already received is replaced,
+     * so a client can safely retry a chunk whose response it never saw.
+     */
+    public UploadSessionDto uploadChunk(UUID sessionId, int chunkNumber, InputStream stream, long size,
+                                        AuthenticatedUser user) throws FileNotFoundException {
+        if (chunkNumber < 1 || chunkNumber > MAX_CHUNKS) {
+            throw new UploadSessionException("Chunk number must be between 1 and " + MAX_CHUNKS + ".");
+        }
+        if (size <= 0) {
+            throw new UploadSessionException("Chunk must have a positive Content-Length.");
+        }
+        if (size > maxChunkSize.toBytes()) {
+            throw new UploadSessionException("Chunk must not be larger than " + maxChunkSize + ".");
+        }
+
+        UploadSessionEntity session = getSession(sessionId, user);
+        if (session.getCompletedAt() != null) {
+            throw new UploadSessionException("Upload session is being committed; no more chunks can be uploaded.");
+        }
+        StoragePart part = storageAdapter.uploadPart(session.getShard(), session.getObjectName(), session.getUploadId(),
+                chunkNumber, stream, size);
+
+        UploadSessionPartEntity partEntity = uploadSessionPartRepository
+                .findBySessionAndPartNumber(session, chunkNumber)
+                .orElseGet(() -> UploadSessionPartEntity.builder()
+                        .session(session)
+                        .partNumber(chunkNumber)
+                        .build());
+        partEntity.setSizeBytes(part.size());
+        partEntity.setEtag(part.etag());
+        uploadSessionPartRepository.save(partEntity);
+
+        logger.debug("Chunk {} ({} bytes) of upload session {} received.", chunkNumber, size, sessionId);
+        return toDto(session, uploadSessionPartRepository.findBySessionOrderByPartNumber(session));
+    }
+
+    public UploadSessionDto getSessionStatus(UUID sessionId, AuthenticatedUser user) throws FileNotFoundException {
+        UploadSessionEntity session = getSession(sessionId, user);
+        return toDto(session, uploadSessionPartRepository.findBySessionOrderByPartNumber(session));
+    }
+
+    /**
+     * Assembles the received chunks into the final object and registers it as a file.
+     * Chunks must be numbered 1..n without gaps, and every chunk but the last must be
+     * at least the minimum chunk size.
+     * <p>
+     * Chunks arrive out of order, possibly on different nodes, so the SHA-256 of the file
+     * cannot be computed as they stream in; the assembled object is read back once instead.
+     * That read takes as long as a download of the file, so it happens outside any transaction,
+     * and only recording the file and removing the session are done in one.
+     * If the content does not match the hash given when the session was created, the object
+     * and the session are discarded.
+     * <p>
+     * Once storage has assembled the object, the session is marked as completed, so that a
+     * commit that fails after that can be retried without assembling the object again, and a
+     * session that is never committed has its object removed when it expires.
+     *
+     * @throws HashMismatchException if the content does not match the session's hash.
+     */
+    public void commitSession(UUID sessionId, AuthenticatedUser user) throws FileNotFoundException {
+        UploadSessionEntity session = getSession(sessionId, user);
+        List<UploadSessionPartEntity> parts = uploadSessionPartRepository.findBySessionOrderByPartNumber(session);
+        if (parts.isEmpty()) {
+            throw new UploadSessionException("Upload session has no chunks.");
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            UploadSessionPartEntity part = parts.get(i);
+            if (part.getPartNumber() != i + 1) {
+                throw new UploadSessionException("Chunk " + (i + 1) + " is missing.");
+            }
+            boolean last = (i == parts.size() - 1);
+            if (!last && part.getSizeBytes() < minChunkSize.toBytes()) {
+                throw new UploadSessionException("Chunk " + part.getPartNumber()
+                        + " is smaller than " + minChunkSize + "; only the last chunk may be smaller.");
+            }
+        }
+        long totalSize = parts.stream().mapToLong(UploadSessionPartEntity::getSizeBytes).sum();
+
+        if (session.getCompletedAt() == null) {
+            List<StoragePart> storageParts = parts.stream()
+                    .map(part -> new StoragePart(part.getPartNumber(), part.getEtag(), part.getSizeBytes()))
+                    .toList();
+            storageAdapter.completeMultipartUpload(session.getShard(), session.getObjectName(),
+                    session.getUploadId(), storageParts);
+            session.setCompletedAt(Instant.now());
+            uploadSessionRepository.save(session);
+        }
+
+        String digest = fileService.hashObject(session.getShard(), session.getObjectName());
+        try {
+            FileService.verifyHash(session.getHash(), digest);
+        } catch (HashMismatchException e) {
+            fileService.deleteQuietly(session.getShard(), session.getObjectName());
+            uploadSessionRepository.delete(session);
+            throw e;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // The object is assembled by storage under its own name, so it is not deduplicated.
+            fileService.saveFileEntity(session.getFilename(), totalSize, digest,
+                    session.getObjectName(), session.getShard(), user);
+            // Parts are removed with the session by the ON DELETE CASCADE constraint.
+            uploadSessionRepository.delete(session);
+        });
+
+        logger.info("Upload session {} committed as file {} ({} bytes) for user {}.",
+                sessionId, session.getFilename(), totalSize, user.username());
+    }
+
+    public void abortSession(UUID sessionId, AuthenticatedUser user) throws FileNotFoundException {
+        UploadSessionEntity session = getSession(sessionId, user);
+        discardStorage(session);
+        uploadSessionRepository.delete(session);
+        logger.info("Upload session {} aborted for user {}.", sessionId, user.username());
+    }
+
+    /**
+     * Removes what expired sessions left in storage, see {@link #discardStorage}, and deletes
+     * the sessions. A session whose storage cannot be cleaned up is kept and retried on the
+     * next run, and skipped for the rest of this one.
+     */
+    @Scheduled(initialDelayString = "${app.upload.sessions.cleanup-interval:1h}",
+            fixedDelayString = "${app.upload.sessions.cleanup-interval:1h}")
+    public void removeExpiredSessions() {
+        Instant cutoff = Instant.now();
+        int removed = 0;
+        int failed = 0;
+        while (true) {
+            // Removed sessions are gone, so the sessions kept so far are exactly the ones to skip.
+            List<UploadSessionEntity> expired = uploadSessionRepository.findExpired(cutoff, failed, cleanupBatchSize);
+            if (expired.isEmpty()) {
+                break;
+            }
+            List<UploadSessionEntity> discarded = new ArrayList<>(expired.size());
+            for (UploadSessionEntity session : expired) {
+                try {
+                    discardStorage(session);
+                    discarded.add(session);
+                } catch (StorageException e) {
+                    failed++;
+                    logger.error("Failed to clean up the upload of expired session {}; retrying on the next run.",
+                            session.getId(), e);
+                }
+            }
+            // Parts are removed with the sessions by the ON DELETE CASCADE constraint.
+            uploadSessionRepository.deleteAllInBatch(discarded);
+            removed += discarded.size();
+            if (expired.size() < cleanupBatchSize) {
+                break;
+            }
+        }
+        if (removed > 0 || failed > 0) {
+            logger.info("Removed {} expired upload sessions; {} are kept for the next run.", removed, failed);
+        }
+    }
+
+    /**
+     * Aborts the session's multipart upload, which removes its parts, and deletes the object
+     * it was assembled into, if any. The object is deleted even if the session was not marked
+     * as completed, since a commit may have failed right after storage assembled it.
+     */
+    private void discardStorage(UploadSessionEntity session) {
+        if (session.getCompletedAt() == null) {
+            storageAdapter.abortMultipartUpload(session.getShard(), session.getObjectName(), session.getUploadId());
+        }
+        storageAdapter.deleteObject(session.getShard(), session.getObjectName());
+    }
+
+    private UploadSessionEntity getSession(UUID sessionId, AuthenticatedUser user) throws FileNotFoundException {
+        UploadSessionEntity session = uploadSessionRepository.findByIdAndUserId(sessionId, user.userId())
+                .orElseThrow(() -> new FileNotFoundException("Upload session not found: " + sessionId));
+        if (session.getExpiresAt().isBefore(Instant.now())) {
+            throw new FileNotFoundException("Upload session expired: " + sessionId);
+        }
+        return session;
+    }
+
+    private UploadSessionDto toDto(UploadSessionEntity session, List<UploadSessionPartEntity> parts) {
+        long receivedBytes = parts.stream().mapToLong(UploadSessionPartEntity::getSizeBytes).sum();
+        List<Integer> receivedChunks = parts.stream().map(UploadSessionPartEntity::getPartNumber).toList();
+        return new UploadSessionDto(session.getId().toString(), session.getFilename(),
+                receivedBytes, receivedChunks, session.getExpiresAt());
+    }
+}
@@ -0,0 +1,481 @@
+package org.example.cloudservice.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of objects on local disk, in front of another {@link StorageAdapter}.
+ * <p>
+ * A hit is served from the cached file. A miss is served straight from the wrapped adapter,
+ * and the bytes are copied into the cache as the reader consumes them, so storage is read
+ * once; the copy is kept only if the reader gets to the end. A ranged miss cannot be copied
+ * that way, so a background task fetches the whole object instead, after checking its size.
+ * Only one copy of an object is made at a time.
+ * <p>
+ * Objects larger than {@code max-object-size} are remembered, so later misses neither copy
+ * them nor fetch them again in the background.
+ * <p>
+ * The total size is bounded by a Caffeine cache weighted by file size, which evicts by
+ * W-TinyLFU and deletes the evicted file. Objects are immutable because every upload gets a
+ * unique name, so entries only need to be dropped when the object is deleted.
+ */
+public class CachingStorageAdapter extends DelegatingStorageAdapter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStorageAdapter.class);
+
+    /** Entries are weighed in KiB so objects larger than 2GB fit in Caffeine's int weights. */
+    private static final long WEIGHT_UNIT = 1024;
+
+    /** How many objects too large to cache are remembered. */
+    private static final long MAX_TOO_LARGE_ENTRIES = 10_000;
+
+    private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}(\\.part)?");
+
+    private final Path directory;
+    private final long maxObjectSize;
+    private final Cache<String, CachedObject> cache;
+    private final Cache<String, Boolean> tooLarge;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor populateExecutor;
+
+    private final Counter populated;
+    private final Counter populateFailed;
+    private final Counter populateSkipped;
+
+    public CachingStorageAdapter(StorageAdapter delegate, StorageProperties.Cache properties, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.directory = properties.getDirectory();
+        this.maxObjectSize = properties.getMaxObjectSize().toBytes();
+        prepareDirectory(directory);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, properties.getMaxSize().toBytes() / WEIGHT_UNIT))
+                .weigher((String key, CachedObject object) -> (int) Math.min(Integer.MAX_VALUE,
+                        Math.max(1, (object.size() + WEIGHT_UNIT - 1) / WEIGHT_UNIT)))
+                .removalListener((String key, CachedObject object, RemovalCause cause) -> {
+                    if (object != null) {
+                        deleteQuietly(object.path());
+                    }
+                })
+                .recordStats()
+                .build();
+        this.tooLarge = Caffeine.newBuilder()
+                .maximumSize(MAX_TOO_LARGE_ENTRIES)
+                .build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.populateExecutor = new ThreadPoolExecutor(
+                properties.getPopulateThreads(), properties.getPopulateThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getPopulateQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-cache-populate-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        // Hits, misses, evictions and size are published as cache.* metrics tagged cache=storage.
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "storage");
+        Gauge.builder("storage.cache.bytes", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L)
+                                * WEIGHT_UNIT)
+                .description("Approximate size of the objects in the local storage cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.populated = populateCounter(meterRegistry, "success");
+        this.populateFailed = populateCounter(meterRegistry, "failure");
+        this.populateSkipped = populateCounter(meterRegistry, "skipped");
+
+        logger.info("Local storage cache enabled in {} with a limit of {}", directory, properties.getMaxSize());
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        String key = key(bucket, objectName);
+        CachedObject cached = cache.getIfPresent(key);
+        if (cached != null) {
+            try {
+                return Files.newInputStream(cached.path());
+            } catch (NoSuchFileException e) {
+                cache.invalidate(key);
+            } catch (IOException e) {
+                logger.warn("Could not read cached object '{}'; falling back to storage", objectName, e);
+            }
+        }
+
+        return cacheWhileReading(objectName, key, delegate.getObject(bucket, objectName));
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        String key = key(bucket, objectName);
+        CachedObject cached = cache.getIfPresent(key);
+        if (cached != null) {
+            try {
+                FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ);
+                try {
+                    channel.position(offset);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                return ByteStreams.limit(Channels.newInputStream(channel), length);
+            } catch (NoSuchFileException e) {
+                cache.invalidate(key);
+            } catch (IOException e) {
+                logger.warn("Could not read cached object '{}'; falling back to storage", objectName, e);
+            }
+        }
+
+        // A ranged read usually means a resumed download of a file worth caching as a whole.
+        populateAsync(bucket, objectName, key);
+        return delegate.getObject(bucket, objectName, offset, length);
+    }
+
+    @Override
+    public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
+        invalidate(key(bucket, objectName));
+        delegate.uploadObject(bucket, objectName, stream, size, contentType);
+    }
+
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        invalidate(key(bucket, objectName));
+        return delegate.copyObject(bucket, sourceObjectName, objectName);
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        invalidate(key(bucket, objectName));
+        delegate.deleteObject(bucket, objectName);
+    }
+
+    @Override
+    public void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        for (String objectName : objectNames) {
+            invalidate(key(bucket, objectName));
+        }
+        delegate.deleteObjects(bucket, objectNames);
+    }
+
+    @Override
+    public void close() {
+        populateExecutor.shutdownNow();
+        cache.invalidateAll();
+    }
+
+    private void invalidate(String key) {
+        cache.invalidate(key);
+        tooLarge.invalidate(key);
+    }
+
+    /**
+     * Wraps a stream served on a miss so that it also fills the cache, unless the object is
+     * known to be too large or is already being copied. The stream is returned unchanged when
+     * the cache file cannot be created.
+     */
+    private InputStream cacheWhileReading(String objectName, String key, InputStream stream) {
+        if (tooLarge.getIfPresent(key) != null) {
+            return stream;
+        }
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, task) != null) {
+            return stream;
+        }
+
+        Path target = directory.resolve(UUID.randomUUID().toString());
+        Path temp = directory.resolve(target.getFileName() + ".part");
+        try {
+            return new CopyingInputStream(stream, objectName, key, task, Files.newOutputStream(temp), temp, target);
+        } catch (IOException e) {
+            inFlight.remove(key, task);
+            task.complete(null);
+            populateFailed.increment();
+            logger.warn("Could not cache object '{}'", objectName, e);
+            return stream;
+        }
+    }
+
+    /**
+     * Starts copying the object into the cache unless a copy is already under way.
+     * When every populate thread is busy and the queue is full, the miss is simply not cached.
+     */
+    private void populateAsync(@Nullable String bucket, String objectName, String key) {
+        if (tooLarge.getIfPresent(key) != null) {
+            return;
+        }
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, task) != null) {
+            return;
+        }
+        try {
+            populateExecutor.execute(() -> {
+                try {
+                    populate(bucket, objectName, key);
+                    task.complete(null);
+                } catch (Exception e) {
+                    populateFailed.increment();
+                    logger.warn("Could not cache object '{}'", objectName, e);
+                    task.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, task);
+            populateSkipped.increment();
+        }
+    }
+
+    private void populate(@Nullable String bucket, String objectName, String key) throws IOException {
+        if (cache.getIfPresent(key) != null) {
+            return;
+        }
+        // Checking the size first avoids downloading an object only to throw it away.
+        Optional<StorageObjectStat> stat = delegate.statObject(bucket, objectName);
+        if (stat.isPresent() && stat.get().size() > maxObjectSize) {
+            skipTooLarge(objectName, key);
+            return;
+        }
+
+        Path target = directory.resolve(UUID.randomUUID().toString());
+        Path temp = directory.resolve(target.getFileName() + ".part");
+        long size;
+        try (InputStream in = delegate.getObject(bucket, objectName);
+             OutputStream out = Files.newOutputStream(temp)) {
+            // Copy one byte more than allowed to detect objects that are too large.
+            size = ByteStreams.copy(ByteStreams.limit(in, maxObjectSize + 1), out);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+
+        if (size > maxObjectSize) {
+            deleteQuietly(temp);
+            skipTooLarge(objectName, key);
+            return;
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        cache.put(key, new CachedObject(target, size));
+        populated.increment();
+        logger.debug("Cached object '{}' ({} bytes)", objectName, size);
+    }
+
+    private void skipTooLarge(String objectName, String key) {
+        tooLarge.put(key, Boolean.TRUE);
+        populateSkipped.increment();
+        logger.debug("Object '{}' is larger than {} bytes and is not cached", objectName, maxObjectSize);
+    }
+
+    private static String key(@Nullable String bucket, String objectName) {
+        return (bucket != null ? bucket : "") + "/" + objectName;
+    }
+
+    private static Counter populateCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("storage.cache.populations")
+                .description("Copies of missed objects into the local storage cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The cache index lives in memory only, so files left by a previous run are unknown
+     * and are removed. Only files named like cache entries are touched, in case the
+     * directory is shared with anything else.
+     */
+    private static void prepareDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> CACHE_FILE_NAME.matcher(file.getFileName().toString()).matches())
+                        .forEach(CachingStorageAdapter::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not prepare storage cache directory " + directory, e);
+        }
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            logger.debug("Could not close cache file", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete cache file {}", path, e);
+        }
+    }
+
+    private record CachedObject(Path path, long size) {
+    }
+
+    /**
+     * Passes the object through to the reader while writing it to a cache file. The copy is
+     * abandoned once the object turns out to be too large or the reader skips ahead, and is
+     * added to the cache on close only if the reader saw the whole object.
+     */
+    private class CopyingInputStream extends FilterInputStream {
+
+        private final String objectName;
+        private final String key;
+        private final CompletableFuture<Void> task;
+        private final Path temp;
+        private final Path target;
+        @Nullable
+        private OutputStream out;
+        private long size;
+        private boolean complete;
+        private boolean closed;
+
+        CopyingInputStream(InputStream in, String objectName, String key, CompletableFuture<Void> task,
+                           OutputStream out, Path temp, Path target) {
+            super(in);
+            this.objectName = objectName;
+            this.key = key;
+            this.task = task;
+            this.out = out;
+            this.temp = temp;
+            this.target = target;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                complete = true;
+            } else {
+                copy(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read < 0) {
+                complete = true;
+            } else {
+                copy(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private void copy(byte[] buffer, int offset, int length) {
+            if (out == null) {
+                return;
+            }
+            size += length;
+            if (size > maxObjectSize) {
+                abandon();
+                skipTooLarge(objectName, key);
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+            } catch (IOException e) {
+                abandon();
+                populateFailed.increment();
+                logger.warn("Could not cache object '{}'", objectName, e);
+            }
+        }
+
+        private void abandon() {
+            if (out != null) {
+                closeQuietly(out);
+                out = null;
+            }
+            deleteQuietly(temp);
+        }
+
+        private void finish() {
+            try {
+                if (out == null) {
+                    return;
+                }
+                if (!complete) {
+                    abandon();
+                    return;
+                }
+                try {
+                    out.close();
+                    out = null;
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    cache.put(key, new CachedObject(target, size));
+                    populated.increment();
+                    logger.debug("Cached object '{}' ({} bytes)", objectName, size);
+                } catch (IOException e) {
+                    abandon();
+                    populateFailed.increment();
+                    logger.warn("Could not cache object '{}'", objectName, e);
+                }
+            } finally {
+                inFlight.remove(key, task);
+                task.complete(null);
+            }
+        }
+    }
+}
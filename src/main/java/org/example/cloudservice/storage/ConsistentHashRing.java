@@ -0,0 +1,49 @@
+package org.example.cloudservice.storage;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to named nodes by consistent hashing. Every node is placed on the ring at a number
+ * of points proportional to its weight, and a key belongs to the first node at or after its
+ * own hash. Adding a node therefore only moves the keys that now fall to it, about its share
+ * of the total weight, and leaves every other key where it was.
+ */
+final class ConsistentHashRing {
+
+    /** Points per unit of weight; enough for an even spread across a handful of nodes. */
+    static final int POINTS_PER_WEIGHT = 128;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    /**
+     * @param weights the weight of each node; nodes with a weight of zero get no keys.
+     * @throws IllegalArgumentException if no node has a positive weight.
+     */
+    ConsistentHashRing(Map<String, Integer> weights) {
+        weights.forEach((node, weight) -> {
+            for (int i = 0; i < weight * POINTS_PER_WEIGHT; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        });
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("At least one node needs a positive weight");
+        }
+    }
+
+    String locate(String key) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return (point != null) ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.cloudservice.storage;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Decides whether content is compressed before it is stored, and wraps the upload stream
+ * accordingly. Content types listed in {@code app.storage.compression.content-types} are always
+ * compressed. For other content, a sample from the start of the stream is compressed first and
+ * the content is only compressed if the sample shrinks enough, so already compressed formats
+ * such as images, archives and video are stored as they are.
+ */
+@Component
+public class ContentCompressor {
+
+    private final boolean enabled;
+    private final List<MimeType> contentTypes;
+    private final int level;
+    private final int sampleSize;
+    private final double sampleRatio;
+
+    public ContentCompressor(StorageProperties storageProperties) {
+        StorageProperties.Compression properties = storageProperties.getCompression();
+        this.enabled = properties.isEnabled();
+        this.contentTypes = properties.getContentTypes().stream().map(MimeTypeUtils::parseMimeType).toList();
+        this.level = properties.getLevel();
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE - 8, properties.getSampleSize().toBytes());
+        this.sampleRatio = properties.getSampleRatio();
+    }
+
+    /**
+     * Returns the stream to store and the codec it is encoded with. The content is
+     * compressed while it is read, so the size of the stored stream is not known up front.
+     *
+     * @throws IOException if the sample cannot be read.
+     */
+    public Encoded encode(InputStream content, @Nullable String contentType) throws IOException {
+        if (!enabled) {
+            return new Encoded(content, StorageCodec.NONE);
+        }
+        if (isListed(contentType)) {
+            return new Encoded(StorageCodec.DEFLATE.encode(content, level), StorageCodec.DEFLATE);
+        }
+        if (sampleSize <= 0) {
+            return new Encoded(content, StorageCodec.NONE);
+        }
+
+        BufferedInputStream buffered = new BufferedInputStream(content, sampleSize);
+        buffered.mark(sampleSize);
+        byte[] sample = buffered.readNBytes(sampleSize);
+        buffered.reset();
+        StorageCodec codec = (sample.length > 0 && compressedSize(sample) <= sample.length * sampleRatio)
+                ? StorageCodec.DEFLATE
+                : StorageCodec.NONE;
+        return new Encoded(codec.encode(buffered, level), codec);
+    }
+
+    private boolean isListed(@Nullable String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+            return contentTypes.stream().anyMatch(listed -> listed.includes(mimeType));
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+    }
+
+    private int compressedSize(byte[] sample) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(buffer);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** The stream to store, and how it is encoded. */
+    public record Encoded(InputStream stream, StorageCodec codec) {
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.cloudservice.storage;
+
+import org.springframework.lang.Nullable;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for {@link StorageAdapter} decorators. Every call is forwarded to the
+ * wrapped adapter; subclasses override only the calls they add behaviour to.
+ */
+public abstract class DelegatingStorageAdapter implements StorageAdapter {
+
+    protected final StorageAdapter delegate;
+
+    protected DelegatingStorageAdapter(StorageAdapter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    @Nullable
+    public String chooseBucket(String objectName) {
+        return delegate.chooseBucket(objectName);
+    }
+
+    @Override
+    public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
+        delegate.uploadObject(bucket, objectName, stream, size, contentType);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        return delegate.getObject(bucket, objectName);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        return delegate.getObject(bucket, objectName, offset, length);
+    }
+
+    @Override
+    public Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName) {
+        return delegate.statObject(bucket, objectName);
+    }
+
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        return delegate.copyObject(bucket, sourceObjectName, objectName);
+    }
+
+    @Override
+    public boolean supportsPresignedUrls() {
+        return delegate.supportsPresignedUrls();
+    }
+
+    @Override
+    public String presignGetObject(@Nullable String bucket, String objectName, Duration expiry,
+                                   @Nullable String downloadFilename) {
+        return delegate.presignGetObject(bucket, objectName, expiry, downloadFilename);
+    }
+
+    @Override
+    public String presignPutObject(@Nullable String bucket, String objectName, Duration expiry) {
+        return delegate.presignPutObject(bucket, objectName, expiry);
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        delegate.deleteObject(bucket, objectName);
+    }
+
+    @Override
+    public void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        delegate.deleteObjects(bucket, objectNames);
+    }
+
+    @Override
+    public String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType) {
+        return delegate.createMultipartUpload(bucket, objectName, contentType);
+    }
+
+    @Override
+    public StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                                  int partNumber, InputStream stream, long size) {
+        return delegate.uploadPart(bucket, objectName, uploadId, partNumber, stream, size);
+    }
+
+    @Override
+    public void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts) {
+        delegate.completeMultipartUpload(bucket, objectName, uploadId, parts);
+    }
+
+    @Override
+    public void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId) {
+        delegate.abortMultipartUpload(bucket, objectName, uploadId);
+    }
+}
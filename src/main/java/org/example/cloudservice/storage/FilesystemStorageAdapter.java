@@ -0,0 +1,346 @@
+package org.example.cloudservice.storage;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Stores objects as files below {@code app.storage.filesystem.root}, for single-node
+ * deployments and tests that should not depend on MinIO.
+ * <p>
+ * Each bucket is a directory. An object is stored under the SHA-256 of its name, sharded
+ * by the first two byte pairs of that digest ({@code bucket/ab/cd/abcd...}), so directories
+ * stay small and object names never have to be valid or safe file names.
+ * Data is moved with {@link FileChannel} transfers, and writes go to a temporary file that
+ * is synced and atomically renamed, so readers never see a partial object.
+ */
+@Component
+@Qualifier(StorageConfig.BACKEND)
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "filesystem")
+public class FilesystemStorageAdapter implements StorageAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilesystemStorageAdapter.class);
+
+    /** S3 bucket naming rules, which also rule out path separators and "..". */
+    private static final Pattern BUCKET_NAME = Pattern.compile("[a-z0-9][a-z0-9.-]{1,61}[a-z0-9]");
+
+    private static final String UPLOADS_DIRECTORY = ".uploads";
+
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Path root;
+    private final String defaultBucket;
+
+    public FilesystemStorageAdapter(StorageProperties storageProperties) {
+        this.root = storageProperties.getFilesystem().getRoot().toAbsolutePath().normalize();
+        this.defaultBucket = storageProperties.getFilesystem().getBucket();
+        try {
+            Files.createDirectories(bucketDirectory(defaultBucket));
+        } catch (IOException e) {
+            throw new StorageException("Could not create storage directory " + root, e);
+        }
+        logger.info("Filesystem storage initialised in {}", root);
+    }
+
+    @Override
+    public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
+        Path target = objectPath(bucket, objectName);
+        logger.debug("Uploading object '{}' to {}", objectName, target);
+
+        try {
+            long written = writeAtomically(target, Channels.newChannel(stream));
+            if (size >= 0 && written != size) {
+                Files.deleteIfExists(target);
+                throw new StorageException("Object '" + objectName + "' has " + written + " bytes, expected " + size);
+            }
+            logger.info("Successfully uploaded object '{}' ({} bytes)", objectName, written);
+        } catch (IOException e) {
+            logger.error("Error uploading object '{}' to {}", objectName, target, e);
+            throw new StorageException("Error uploading file to filesystem storage", e);
+        }
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        return openChannel(bucket, objectName, 0, -1);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        return openChannel(bucket, objectName, offset, length);
+    }
+
+    /** The Content-Type is not kept on the filesystem. */
+    @Override
+    public Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName) {
+        Path path = objectPath(bucket, objectName);
+        try {
+            return Optional.of(new StorageObjectStat(Files.size(path), null));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.error("Error reading attributes of object '{}' at {}", objectName, path, e);
+            throw new StorageException("Error reading file attributes from filesystem storage", e);
+        }
+    }
+
+    /** Writes the copy like an upload, so a reader of the target never sees a partial copy. */
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        Path source = objectPath(bucket, sourceObjectName);
+        Path target = objectPath(bucket, objectName);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long written = writeAtomically(target, in);
+            logger.info("Successfully copied object '{}' to '{}' ({} bytes)", sourceObjectName, objectName, written);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            logger.error("Error copying object '{}' to '{}'", sourceObjectName, objectName, e);
+            throw new StorageException("Error copying file in filesystem storage", e);
+        }
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        Path path = objectPath(bucket, objectName);
+        try {
+            Files.deleteIfExists(path);
+            logger.info("Successfully deleted object '{}'", objectName);
+        } catch (IOException e) {
+            logger.error("Error deleting object '{}' at {}", objectName, path, e);
+            throw new StorageException("Error deleting file from filesystem storage", e);
+        }
+    }
+
+    /**
+     * Parts are kept as separate files in {@code bucket/.uploads/<uploadId>} until the upload
+     * is completed or aborted.
+     */
+    @Override
+    public String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType) {
+        String uploadId = UUID.randomUUID().toString();
+        try {
+            Files.createDirectories(uploadDirectory(bucket, uploadId));
+        } catch (IOException e) {
+            throw new StorageException("Error starting multipart upload in filesystem storage", e);
+        }
+        return uploadId;
+    }
+
+    @Override
+    public StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                                  int partNumber, InputStream stream, long size) {
+        Path uploadDirectory = existingUploadDirectory(bucket, uploadId);
+        MessageDigest md5 = newMd5();
+        try {
+            long written = writeAtomically(uploadDirectory.resolve("part-" + partNumber),
+                    Channels.newChannel(new DigestInputStream(stream, md5)));
+            if (written != size) {
+                throw new StorageException("Part " + partNumber + " of object '" + objectName + "' has "
+                        + written + " bytes, expected " + size);
+            }
+            String etag = HexFormat.of().formatHex(md5.digest());
+            Files.writeString(uploadDirectory.resolve("part-" + partNumber + ".etag"), etag, StandardCharsets.US_ASCII);
+            return new StoragePart(partNumber, etag, written);
+        } catch (IOException e) {
+            throw new StorageException("Error uploading part to filesystem storage", e);
+        }
+    }
+
+    /**
+     * Concatenates the part files with {@link FileChannel#transferTo}, which the kernel can
+     * perform without copying the data through user space.
+     */
+    @Override
+    public void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts) {
+        Path uploadDirectory = existingUploadDirectory(bucket, uploadId);
+        Path target = objectPath(bucket, objectName);
+        Path temp = temporaryFile(target);
+        try {
+            Files.createDirectories(target.getParent());
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (StoragePart part : parts) {
+                    Path partFile = uploadDirectory.resolve("part-" + part.partNumber());
+                    String etag = Files.readString(uploadDirectory.resolve("part-" + part.partNumber() + ".etag"),
+                            StandardCharsets.US_ASCII);
+                    if (!etag.equals(part.etag())) {
+                        throw new StorageException("Part " + part.partNumber() + " of object '" + objectName
+                                + "' has changed since it was listed");
+                    }
+                    try (FileChannel in = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                        transfer(in, out);
+                    }
+                }
+                out.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileSystemUtils.deleteRecursively(uploadDirectory);
+            logger.info("Completed multipart upload '{}' of object '{}' from {} parts", uploadId, objectName, parts.size());
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new StorageException("Error completing multipart upload in filesystem storage", e);
+        } catch (StorageException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId) {
+        try {
+            FileSystemUtils.deleteRecursively(uploadDirectory(bucket, uploadId));
+        } catch (IOException e) {
+            throw new StorageException("Error aborting multipart upload in filesystem storage", e);
+        }
+    }
+
+    private InputStream openChannel(@Nullable String bucket, String objectName, long offset, long length) {
+        Path path = objectPath(bucket, objectName);
+        logger.debug("Retrieving object '{}' from {}", objectName, path);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            channel.position(offset);
+            InputStream in = Channels.newInputStream(channel);
+            return (length >= 0) ? ByteStreams.limit(in, length) : in;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            logger.error("Error retrieving object '{}' from {}", objectName, path, e);
+            // A missing object stays missing when read again.
+            if (e instanceof NoSuchFileException) {
+                throw new StorageException("Object '" + objectName + "' does not exist", e, false);
+            }
+            throw new StorageException("Error downloading file from filesystem storage", e);
+        }
+    }
+
+    /**
+     * Writes the source to a temporary file next to the target and renames it into place.
+     *
+     * @return the number of bytes written.
+     */
+    private long writeAtomically(Path target, ReadableByteChannel source) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = temporaryFile(target);
+        try {
+            long written = 0;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = out.transferFrom(source, written, TRANSFER_CHUNK)) > 0) {
+                    written += transferred;
+                }
+                out.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return written;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    private Path objectPath(@Nullable String bucket, String objectName) {
+        String digest = HexFormat.of().formatHex(sha256(objectName));
+        return bucketDirectory(bucket)
+                .resolve(digest.substring(0, 2))
+                .resolve(digest.substring(2, 4))
+                .resolve(digest);
+    }
+
+    private Path bucketDirectory(@Nullable String bucket) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        if (!BUCKET_NAME.matcher(targetBucket).matches() || targetBucket.contains("..")) {
+            throw new StorageException("Invalid bucket name '" + targetBucket + "'");
+        }
+        Path directory = root.resolve(targetBucket).normalize();
+        if (!directory.getParent().equals(root)) {
+            throw new StorageException("Invalid bucket name '" + targetBucket + "'");
+        }
+        return directory;
+    }
+
+    private Path uploadDirectory(@Nullable String bucket, String uploadId) {
+        // Upload ids are generated here; parsing rejects anything that could escape the directory.
+        return bucketDirectory(bucket).resolve(UPLOADS_DIRECTORY).resolve(UUID.fromString(uploadId).toString());
+    }
+
+    private Path existingUploadDirectory(@Nullable String bucket, String uploadId) {
+        Path directory = uploadDirectory(bucket, uploadId);
+        if (!Files.isDirectory(directory)) {
+            throw new StorageException("Multipart upload '" + uploadId + "' does not exist");
+        }
+        return directory;
+    }
+
+    private static Path temporaryFile(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary file {}", path, e);
+        }
+    }
+
+    private static void closeQuietly(@Nullable FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close file channel", e);
+            }
+        }
+    }
+}
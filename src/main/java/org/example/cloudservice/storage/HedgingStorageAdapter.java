@@ -0,0 +1,256 @@
+package org.example.cloudservice.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValuePercentile;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cuts the tail latency of downloads from MinIO by hedging and retrying reads.
+ * <p>
+ * A read that has not responded within the configured percentile of recent response times
+ * is sent a second time, and whichever request responds first is used; the other response is
+ * closed when it arrives. A read that failed with a transient error, such as a dropped
+ * connection or a {@code SlowDown} from MinIO, is retried a bounded number of times. Errors
+ * that would only repeat, such as a missing object, are not retried.
+ * <p>
+ * Extra requests are paid for from a budget that grows by {@code max-extra-load} with every
+ * read, so hedges and retries together never add more than that share of the reads, even
+ * when MinIO is slow across the board. Only reads are hedged, as they are idempotent.
+ * <p>
+ * Response times are published as the {@code storage.get.latency} histogram, together with
+ * the {@code storage.get.hedged}, {@code storage.get.hedge.wins} and
+ * {@code storage.get.retried} counters.
+ */
+public class HedgingStorageAdapter extends DelegatingStorageAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingStorageAdapter.class);
+
+    /** How long a computed hedging delay is reused before the percentile is read again. */
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Requests the budget can save up while MinIO is healthy. */
+    private static final double MAX_BUDGET = 10;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final double maxExtraLoad;
+
+    private final Timer latency;
+    private final Counter hedged;
+    private final Counter hedgeWins;
+    private final Counter retried;
+
+    private double budget;
+    private volatile long delayNanos;
+    private volatile long delayComputedAt;
+
+    public HedgingStorageAdapter(StorageAdapter delegate, MinioProperties.Hedging properties, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.percentile = properties.getPercentile();
+        this.minDelayNanos = properties.getMinDelay().toNanos();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.maxRetries = properties.getMaxRetries();
+        this.retryBackoff = properties.getRetryBackoff();
+        this.maxExtraLoad = properties.getMaxExtraLoad();
+        this.delayNanos = minDelayNanos;
+        this.delayComputedAt = System.nanoTime();
+
+        this.latency = Timer.builder("storage.get.latency")
+                .description("Time until MinIO responded to a single read request")
+                .publishPercentiles(percentile)
+                .publishPercentileHistogram()
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(meterRegistry);
+        this.hedged = Counter.builder("storage.get.hedged")
+                .description("Reads sent a second time because the first request was slow")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("storage.get.hedge.wins")
+                .description("Hedged reads answered by the second request first")
+                .register(meterRegistry);
+        this.retried = Counter.builder("storage.get.retried")
+                .description("Reads retried after a transient error")
+                .register(meterRegistry);
+
+        logger.info("Hedged reads enabled at the p{} response time, retries={}, max extra load={}",
+                Math.round(percentile * 100), maxRetries, maxExtraLoad);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        return read(() -> delegate.getObject(bucket, objectName));
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        return read(() -> delegate.getObject(bucket, objectName, offset, length));
+    }
+
+    private InputStream read(Supplier<InputStream> request) {
+        earn();
+        int attempt = 0;
+        while (true) {
+            try {
+                return hedged(request);
+            } catch (StorageException e) {
+                if (attempt >= maxRetries || !isRetryable(e) || !spend()) {
+                    throw e;
+                }
+                attempt++;
+                retried.increment();
+                logger.debug("Retrying read after a transient error (retry {} of {})", attempt, maxRetries, e);
+                pause(retryBackoff.multipliedBy(attempt));
+            }
+        }
+    }
+
+    /**
+     * Sends the request and, if it has not responded within the hedging delay, sends it once
+     * more. The result is the first response, or the last failure if both requests failed.
+     */
+    private InputStream hedged(Supplier<InputStream> request) {
+        CompletableFuture<InputStream> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        send(request, result, outstanding, false);
+        try {
+            return result.get(currentDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!spend()) {
+                return await(result);
+            }
+            // Counted before the check, so a first request failing from here on leaves the result to the hedge.
+            outstanding.incrementAndGet();
+            if (result.isDone()) {
+                refund();
+                return await(result);
+            }
+            hedged.increment();
+            send(request, result, outstanding, true);
+            return await(result);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for MinIO", e);
+        }
+    }
+
+    private void send(Supplier<InputStream> request, CompletableFuture<InputStream> result,
+                      AtomicInteger outstanding, boolean hedge) {
+        Thread.ofVirtual().name("storage-read").start(() -> {
+            long start = System.nanoTime();
+            try {
+                InputStream stream = request.get();
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (result.complete(stream)) {
+                    if (hedge) {
+                        hedgeWins.increment();
+                    }
+                } else {
+                    closeQuietly(stream);
+                }
+            } catch (Throwable e) {
+                if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The hedging delay, derived from the recent response times and bounded by the
+     * configured minimum and maximum.
+     */
+    private long currentDelayNanos() {
+        long now = System.nanoTime();
+        if (now - delayComputedAt < DELAY_REFRESH_NANOS) {
+            return delayNanos;
+        }
+        long observed = 0;
+        for (ValuePercentile value : latency.takeSnapshot().percentileValues()) {
+            observed = (long) value.value(TimeUnit.NANOSECONDS);
+        }
+        long delay = Math.min(maxDelayNanos, Math.max(minDelayNanos, observed));
+        delayNanos = delay;
+        delayComputedAt = now;
+        return delay;
+    }
+
+    private synchronized void earn() {
+        budget = Math.min(MAX_BUDGET, budget + maxExtraLoad);
+    }
+
+    private synchronized boolean spend() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    private synchronized void refund() {
+        budget = Math.min(MAX_BUDGET, budget + 1);
+    }
+
+    /**
+     * Whether the read may succeed when sent again. Reads that storage is not even attempting,
+     * because it is overloaded or failing, are not retried either.
+     */
+    private static boolean isRetryable(StorageException e) {
+        return e.isTransient() && !(e instanceof StorageUnavailableException);
+    }
+
+    private static InputStream await(CompletableFuture<InputStream> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for MinIO", e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return (cause instanceof RuntimeException runtimeException)
+                ? runtimeException
+                : new StorageException("Error downloading file from MinIO", cause);
+    }
+
+    private static void pause(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting to retry a read", e);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            logger.debug("Could not close the response of a slower read", e);
+        }
+    }
+}
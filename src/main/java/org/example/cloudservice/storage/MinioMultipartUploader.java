@@ -0,0 +1,198 @@
+package org.example.cloudservice.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.messages.Part;
+import org.example.cloudservice.infrastructure.minio.ExtendedMinioAsyncClient;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads large objects to MinIO as a multipart upload whose parts are sent concurrently.
+ * <p>
+ * The input stream is read sequentially on the calling thread, one part-sized buffer at a time,
+ * while up to {@code minio.multipart.parallelism} parts are in flight on the shared HTTP client.
+ * If any part fails, no further parts are read and the upload is aborted, so no partial object
+ * or orphaned parts are left behind.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioMultipartUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioMultipartUploader.class);
+
+    /** S3 limit on the number of parts of a single upload. */
+    static final int MAX_PARTS = 10_000;
+
+    private final ExtendedMinioAsyncClient minioAsyncClient;
+    private final long partSize;
+    private final int parallelism;
+
+    private final Timer uploadTimer;
+    private final DistributionSummary throughput;
+    private final Counter uploadedBytes;
+    private final Counter uploadedParts;
+    private final Counter abortedUploads;
+
+    public MinioMultipartUploader(ExtendedMinioAsyncClient minioAsyncClient,
+                                  MinioProperties minioProperties,
+                                  MeterRegistry meterRegistry) {
+        this.minioAsyncClient = minioAsyncClient;
+        this.partSize = minioProperties.getMultipart().getPartSize().toBytes();
+        this.parallelism = Math.max(1, minioProperties.getMultipart().getParallelism());
+
+        this.uploadTimer = Timer.builder("storage.multipart.upload.duration")
+                .description("Duration of multipart uploads to MinIO")
+                .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("storage.multipart.upload.throughput")
+                .description("Throughput of completed multipart uploads")
+                .baseUnit("bytes/s")
+                .register(meterRegistry);
+        this.uploadedBytes = Counter.builder("storage.multipart.upload.bytes")
+                .description("Bytes uploaded in multipart upload parts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.uploadedParts = Counter.builder("storage.multipart.upload.parts")
+                .description("Multipart upload parts uploaded")
+                .register(meterRegistry);
+        this.abortedUploads = Counter.builder("storage.multipart.upload.aborted")
+                .description("Multipart uploads aborted after a failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Uploads the stream as a multipart object.
+     *
+     * @param size the size of the stream, or -1 if unknown.
+     * @throws StorageException if any part fails; the multipart upload is aborted first.
+     */
+    public void upload(String bucket, String objectName, InputStream stream, long size, @Nullable String contentType) {
+        long effectivePartSize = partSizeFor(size);
+        long start = System.nanoTime();
+
+        String uploadId;
+        try {
+            uploadId = minioAsyncClient.startMultipartUpload(bucket, objectName, contentType).join();
+        } catch (CompletionException e) {
+            throw MinioStorageAdapter.minioError("Error starting multipart upload of object '" + objectName + "'",
+                    unwrap(e));
+        }
+        logger.debug("Started multipart upload {} for object '{}' (part size {} bytes, parallelism {})",
+                uploadId, objectName, effectivePartSize, parallelism);
+
+        Map<Integer, String> etags = new ConcurrentSkipListMap<>();
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        Semaphore permits = new Semaphore(parallelism);
+        long totalBytes = 0;
+
+        try {
+            int partNumber = 1;
+            while (true) {
+                permits.acquire();
+                // Stop reading as soon as a part has failed; the join below reports the failure.
+                if (inFlight.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    permits.release();
+                    break;
+                }
+                byte[] buffer = stream.readNBytes(Math.toIntExact(effectivePartSize));
+                if (buffer.length == 0 && partNumber > 1) {
+                    permits.release();
+                    break;
+                }
+                if (partNumber > MAX_PARTS) {
+                    permits.release();
+                    throw new StorageException("Object '" + objectName + "' exceeds " + MAX_PARTS + " parts");
+                }
+
+                int currentPart = partNumber++;
+                totalBytes += buffer.length;
+                inFlight.add(minioAsyncClient.putPart(bucket, objectName, uploadId, currentPart, buffer, buffer.length)
+                        .thenAccept(etag -> {
+                            etags.put(currentPart, etag);
+                            uploadedParts.increment();
+                            uploadedBytes.increment(buffer.length);
+                        })
+                        .whenComplete((ignored, error) -> permits.release()));
+
+                if (buffer.length < effectivePartSize) {
+                    break;
+                }
+            }
+
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+
+            if (size >= 0 && totalBytes != size) {
+                throw new StorageException("Stream for object '" + objectName + "' ended after "
+                        + totalBytes + " of " + size + " bytes");
+            }
+
+            Part[] parts = etags.entrySet().stream()
+                    .map(entry -> new Part(entry.getKey(), entry.getValue()))
+                    .toArray(Part[]::new);
+            minioAsyncClient.finishMultipartUpload(bucket, objectName, uploadId, parts).join();
+        } catch (Exception e) {
+            abort(bucket, objectName, uploadId, inFlight);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = unwrap(e);
+            throw (cause instanceof StorageException storageException)
+                    ? storageException
+                    : MinioStorageAdapter.minioError("Error uploading object '" + objectName + "' in parts", cause);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        uploadTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        double bytesPerSecond = totalBytes / Math.max(elapsedNanos / 1_000_000_000.0, 1e-9);
+        throughput.record(bytesPerSecond);
+        logger.info("Multipart upload of '{}' completed: {} bytes in {} parts, {} MB/s",
+                objectName, totalBytes, etags.size(), String.format("%.1f", bytesPerSecond / (1024 * 1024)));
+    }
+
+    /**
+     * Part size for an object of the given size, raised when needed so the
+     * object fits into the maximum number of parts.
+     */
+    long partSizeFor(long size) {
+        if (size <= 0) {
+            return partSize;
+        }
+        long minimum = (size + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, minimum);
+    }
+
+    /** The failure of an asynchronous call, so that callers can classify it by the storage error. */
+    private static Throwable unwrap(Throwable error) {
+        return (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+    }
+
+    private void abort(String bucket, String objectName, String uploadId, List<CompletableFuture<Void>> inFlight) {
+        abortedUploads.increment();
+        // Let in-flight parts settle first so none of them lands after the abort.
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .exceptionally(error -> null)
+                    .join();
+            minioAsyncClient.cancelMultipartUpload(bucket, objectName, uploadId).join();
+            logger.warn("Aborted multipart upload {} for object '{}'", uploadId, objectName);
+        } catch (Exception abortError) {
+            logger.error("Error aborting multipart upload {} for object '{}'", uploadId, objectName, abortError);
+        }
+    }
+}
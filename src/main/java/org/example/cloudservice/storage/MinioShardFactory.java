@@ -0,0 +1,101 @@
+package org.example.cloudservice.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.BucketExistsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import okhttp3.OkHttpClient;
+import org.example.cloudservice.infrastructure.minio.ExtendedMinioAsyncClient;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the {@link ShardedStorageAdapter} for the shards configured under {@code minio.shards}.
+ * Every shard gets clients of its own on the shared HTTP client, and its bucket is created if
+ * it does not exist yet.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioShardFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioShardFactory.class);
+
+    private final MinioProperties properties;
+    private final OkHttpClient minioHttpClient;
+    private final MeterRegistry meterRegistry;
+
+    public MinioShardFactory(MinioProperties properties, OkHttpClient minioHttpClient, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.minioHttpClient = minioHttpClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param defaultShard the adapter of the configured endpoint and bucket.
+     */
+    public ShardedStorageAdapter create(StorageAdapter defaultShard) {
+        Map<String, StorageAdapter> shards = new LinkedHashMap<>();
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        shards.put(ShardedStorageAdapter.DEFAULT_SHARD, defaultShard);
+        weights.put(ShardedStorageAdapter.DEFAULT_SHARD, properties.getDefaultShardWeight());
+        for (MinioProperties.Shard shard : properties.getShards()) {
+            if (shard.getName() == null || shard.getName().isBlank() || shards.containsKey(shard.getName())) {
+                throw new IllegalStateException("Every MinIO shard needs a unique name, got '" + shard.getName() + "'");
+            }
+            shards.put(shard.getName(), createShard(shard));
+            weights.put(shard.getName(), shard.getWeight());
+        }
+        return new ShardedStorageAdapter(shards, weights);
+    }
+
+    private StorageAdapter createShard(MinioProperties.Shard shard) {
+        String accessKey = (shard.getAccessKey() != null) ? shard.getAccessKey() : properties.getAccessKey();
+        String secretKey = (shard.getSecretKey() != null) ? shard.getSecretKey() : properties.getSecretKey();
+        String publicEndpoint = (shard.getPublicEndpoint() != null && !shard.getPublicEndpoint().isBlank())
+                ? shard.getPublicEndpoint()
+                : shard.getEndpoint();
+
+        MinioClient client = MinioClient.builder()
+                .endpoint(shard.getEndpoint())
+                .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
+                .build();
+        MinioClient presignClient = MinioClient.builder()
+                .endpoint(publicEndpoint)
+                .region(properties.getRegion())
+                .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
+                .build();
+        ExtendedMinioAsyncClient asyncClient = new ExtendedMinioAsyncClient(MinioAsyncClient.builder()
+                .endpoint(shard.getEndpoint())
+                .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
+                .build());
+        createBucketIfMissing(client, shard);
+
+        logger.info("MinIO shard '{}' at {} uses bucket '{}' with weight {}",
+                shard.getName(), shard.getEndpoint(), shard.getBucket(), shard.getWeight());
+        return new MinioStorageAdapter(client, presignClient, asyncClient,
+                new MinioMultipartUploader(asyncClient, properties, meterRegistry),
+                shard.getBucket(), properties.getMultipart().getThreshold().toBytes());
+    }
+
+    private static void createBucketIfMissing(MinioClient client, MinioProperties.Shard shard) {
+        try {
+            if (!client.bucketExists(BucketExistsArgs.builder().bucket(shard.getBucket()).build())) {
+                client.makeBucket(MakeBucketArgs.builder().bucket(shard.getBucket()).build());
+                logger.info("Bucket '{}' of MinIO shard '{}' created.", shard.getBucket(), shard.getName());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to initialize bucket '" + shard.getBucket()
+                    + "' of MinIO shard '" + shard.getName() + "'", e);
+        }
+    }
+}
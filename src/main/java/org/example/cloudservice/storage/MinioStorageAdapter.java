@@ -1,46 +1,102 @@
 package org.example.cloudservice.storage;
 
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
 import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Part;
+import org.example.cloudservice.infrastructure.minio.ExtendedMinioAsyncClient;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Component
+@Qualifier(StorageConfig.BACKEND)
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "minio", matchIfMissing = true)
 public class MinioStorageAdapter implements StorageAdapter {
 
     private static final Logger logger = LoggerFactory.getLogger(MinioStorageAdapter.class);
 
-    @Value("${minio.endpoint}")
-    private String minioEndpoint;
+    /** S3 error codes that describe a passing condition of the server rather than of the request. */
+    private static final Set<String> TRANSIENT_ERROR_CODES =
+            Set.of("InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "XMinioServerNotInitialized");
 
-    @Value("${minio.access-key}")
-    private String minioAccessKey;
+    private final MinioClient minioClient;
+    private final MinioClient presignClient;
+    private final ExtendedMinioAsyncClient minioAsyncClient;
+    private final MinioMultipartUploader multipartUploader;
+    private final String defaultBucket;
+    private final long multipartThreshold;
 
-    @Value("${minio.secret-key}")
-    private String minioSecretKey;
+    @Autowired
+    public MinioStorageAdapter(MinioClient minioClient,
+                               @Qualifier("minioPresignClient") MinioClient presignClient,
+                               ExtendedMinioAsyncClient minioAsyncClient,
+                               MinioMultipartUploader multipartUploader,
+                               MinioProperties minioProperties) {
+        this(minioClient, presignClient, minioAsyncClient, multipartUploader, minioProperties.getBucket(),
+                minioProperties.getMultipart().getThreshold().toBytes());
+    }
 
-    @Value("${minio.bucket}")
-    private String defaultBucket;
+    /**
+     * An adapter for another endpoint or bucket than the configured one, such as a storage shard.
+     */
+    public MinioStorageAdapter(MinioClient minioClient,
+                               MinioClient presignClient,
+                               ExtendedMinioAsyncClient minioAsyncClient,
+                               MinioMultipartUploader multipartUploader,
+                               String defaultBucket,
+                               long multipartThreshold) {
+        this.minioClient = minioClient;
+        this.presignClient = presignClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.multipartUploader = multipartUploader;
+        this.defaultBucket = defaultBucket;
+        this.multipartThreshold = multipartThreshold;
+    }
 
     @Override
     public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
         String targetBucket = (bucket != null) ? bucket : defaultBucket;
         logger.debug("Uploading object '{}' to bucket '{}'", objectName, targetBucket);
 
-        // Create a new client instance.
-        MinioClient client = MinioClient.builder()
-                .endpoint(minioEndpoint)
-                .credentials(minioAccessKey, minioSecretKey)
-                .build();
+        // Large objects, and objects of unknown size, are sent as parallel multipart uploads.
+        if (size < 0 || size >= multipartThreshold) {
+            multipartUploader.upload(targetBucket, objectName, stream, size, contentType);
+            return;
+        }
 
         try {
-            client.putObject(PutObjectArgs.builder()
+            minioClient.putObject(PutObjectArgs.builder()
                     .bucket(targetBucket)
                     .object(objectName)
                     .stream(stream, size, -1)
@@ -49,7 +105,7 @@ public class MinioStorageAdapter implements StorageAdapter {
             logger.info("Successfully uploaded object '{}' to bucket '{}'", objectName, targetBucket);
         } catch (Exception e) {
             logger.error("Error uploading object '{}' to bucket '{}'", objectName, targetBucket, e);
-            throw new StorageException("Error uploading file to MinIO", e);
+            throw minioError("Error uploading file to MinIO", e);
         }
     }
 
@@ -58,24 +114,275 @@ public class MinioStorageAdapter implements StorageAdapter {
         String targetBucket = (bucket != null) ? bucket : defaultBucket;
         logger.debug("Retrieving object '{}' from bucket '{}'", objectName, targetBucket);
 
-        // Create a new client instance.
-        MinioClient client = MinioClient.builder()
-                .endpoint(minioEndpoint)
-                .credentials(minioAccessKey, minioSecretKey)
-                .build();
+        return getObject(GetObjectArgs.builder()
+                .bucket(targetBucket)
+                .object(objectName)
+                .build());
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        logger.debug("Retrieving {} bytes at offset {} of object '{}' from bucket '{}'",
+                length, offset, objectName, targetBucket);
 
+        // MinIO turns offset and length into a Range header, so only the requested bytes are transferred.
+        return getObject(GetObjectArgs.builder()
+                .bucket(targetBucket)
+                .object(objectName)
+                .offset(offset)
+                .length(length)
+                .build());
+    }
+
+    @Override
+    public Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
         try {
-            InputStream inputStream = client.getObject(
-                    GetObjectArgs.builder()
+            StatObjectResponse response = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(targetBucket)
+                    .object(objectName)
+                    .build());
+            return Optional.of(new StorageObjectStat(response.size(), response.contentType()));
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                return Optional.empty();
+            }
+            logger.error("Error reading metadata of object '{}' in bucket '{}'", objectName, targetBucket, e);
+            throw minioError("Error reading file metadata from MinIO", e);
+        } catch (Exception e) {
+            logger.error("Error reading metadata of object '{}' in bucket '{}'", objectName, targetBucket, e);
+            throw minioError("Error reading file metadata from MinIO", e);
+        }
+    }
+
+    /**
+     * Copies with a single server-side CopyObject request, which S3 limits to objects of 5GB.
+     */
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        try {
+            minioClient.copyObject(CopyObjectArgs.builder()
+                    .bucket(targetBucket)
+                    .object(objectName)
+                    .source(CopySource.builder()
                             .bucket(targetBucket)
-                            .object(objectName)
-                            .build()
-            );
-            logger.info("Successfully retrieved object '{}' from bucket '{}'", objectName, targetBucket);
+                            .object(sourceObjectName)
+                            .build())
+                    .build());
+            logger.info("Copied object '{}' to '{}' in bucket '{}'", sourceObjectName, objectName, targetBucket);
+            return true;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                return false;
+            }
+            logger.error("Error copying object '{}' to '{}' in bucket '{}'", sourceObjectName, objectName, targetBucket, e);
+            throw minioError("Error copying file in MinIO", e);
+        } catch (Exception e) {
+            logger.error("Error copying object '{}' to '{}' in bucket '{}'", sourceObjectName, objectName, targetBucket, e);
+            throw minioError("Error copying file in MinIO", e);
+        }
+    }
+
+    /**
+     * The URL asks MinIO to send the file name as the Content-Disposition, so browsers save
+     * the download under the file's name rather than the object name.
+     */
+    @Override
+    public boolean supportsPresignedUrls() {
+        return true;
+    }
+
+    @Override
+    public String presignGetObject(@Nullable String bucket, String objectName, Duration expiry,
+                                   @Nullable String downloadFilename) {
+        GetPresignedObjectUrlArgs.Builder args = GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket((bucket != null) ? bucket : defaultBucket)
+                .object(objectName)
+                .expiry(Math.toIntExact(expiry.toSeconds()));
+        if (downloadFilename != null) {
+            args.extraQueryParams(Map.of("response-content-disposition", ContentDisposition.attachment()
+                    .filename(downloadFilename, StandardCharsets.UTF_8)
+                    .build()
+                    .toString()));
+        }
+        return presign(args.build());
+    }
+
+    @Override
+    public String presignPutObject(@Nullable String bucket, String objectName, Duration expiry) {
+        return presign(GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket((bucket != null) ? bucket : defaultBucket)
+                .object(objectName)
+                .expiry(Math.toIntExact(expiry.toSeconds()))
+                .build());
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        logger.debug("Deleting object '{}' from bucket '{}'", objectName, targetBucket);
+
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(targetBucket)
+                    .object(objectName)
+                    .build());
+            logger.info("Successfully deleted object '{}' from bucket '{}'", objectName, targetBucket);
+        } catch (Exception e) {
+            logger.error("Error deleting object '{}' from bucket '{}'", objectName, targetBucket, e);
+            throw minioError("Error deleting file from MinIO", e);
+        }
+    }
+
+    /**
+     * Sends the names in multi-object delete requests of up to 1000 objects each, instead of
+     * one request per object. Objects that do not exist are not reported as errors by MinIO.
+     */
+    @Override
+    public void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        logger.debug("Deleting {} objects from bucket '{}'", objectNames.size(), targetBucket);
+
+        List<String> failed = new ArrayList<>();
+        try {
+            // The results are lazy: the delete requests are only sent while they are iterated.
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(targetBucket)
+                    .objects(objectNames.stream().map(DeleteObject::new).toList())
+                    .build());
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                logger.error("Error deleting object '{}' from bucket '{}': {}",
+                        error.objectName(), targetBucket, error.message());
+                failed.add(error.objectName());
+            }
+        } catch (Exception e) {
+            logger.error("Error deleting {} objects from bucket '{}'", objectNames.size(), targetBucket, e);
+            throw minioError("Error deleting files from MinIO", e);
+        }
+        if (!failed.isEmpty()) {
+            throw new StorageException("Could not delete " + failed.size() + " of " + objectNames.size()
+                    + " objects from MinIO");
+        }
+        logger.info("Successfully deleted {} objects from bucket '{}'", objectNames.size(), targetBucket);
+    }
+
+    @Override
+    public String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        String uploadId = join(minioAsyncClient.startMultipartUpload(targetBucket, objectName, contentType),
+                "Error starting multipart upload in MinIO");
+        logger.info("Started multipart upload '{}' for object '{}' in bucket '{}'", uploadId, objectName, targetBucket);
+        return uploadId;
+    }
+
+    @Override
+    public StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                                  int partNumber, InputStream stream, long size) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        logger.debug("Uploading part {} ({} bytes) of object '{}' to bucket '{}'", partNumber, size, objectName, targetBucket);
+
+        // The part is buffered so MinIO can sign it; callers keep parts to a bounded size.
+        byte[] data;
+        try {
+            data = stream.readNBytes(Math.toIntExact(size));
+        } catch (IOException e) {
+            throw new StorageException("Error reading part " + partNumber + " of object '" + objectName + "'", e);
+        }
+        if (data.length != size) {
+            throw new StorageException("Part " + partNumber + " of object '" + objectName + "' ended after "
+                    + data.length + " of " + size + " bytes");
+        }
+
+        String etag = join(minioAsyncClient.putPart(targetBucket, objectName, uploadId, partNumber, data, data.length),
+                "Error uploading part to MinIO");
+        return new StoragePart(partNumber, etag, size);
+    }
+
+    @Override
+    public void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        Part[] minioParts = parts.stream()
+                .map(part -> new Part(part.partNumber(), part.etag()))
+                .toArray(Part[]::new);
+        join(minioAsyncClient.finishMultipartUpload(targetBucket, objectName, uploadId, minioParts),
+                "Error completing multipart upload in MinIO");
+        logger.info("Completed multipart upload '{}' of object '{}' in bucket '{}' from {} parts",
+                uploadId, objectName, targetBucket, parts.size());
+    }
+
+    @Override
+    public void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId) {
+        String targetBucket = (bucket != null) ? bucket : defaultBucket;
+        try {
+            minioAsyncClient.cancelMultipartUpload(targetBucket, objectName, uploadId).join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof ErrorResponseException errorResponse
+                    && "NoSuchUpload".equals(errorResponse.errorResponse().code())) {
+                logger.info("Multipart upload '{}' of object '{}' in bucket '{}' was already completed or aborted",
+                        uploadId, objectName, targetBucket);
+                return;
+            }
+            logger.error("Error aborting multipart upload in MinIO", cause);
+            throw minioError("Error aborting multipart upload in MinIO", cause);
+        }
+        logger.info("Aborted multipart upload '{}' of object '{}' in bucket '{}'", uploadId, objectName, targetBucket);
+    }
+
+    /**
+     * Wraps an error of a MinIO call. An S3 error code other than the transient ones means
+     * MinIO understood the request and rejected it, so the error is not transient.
+     */
+    static StorageException minioError(String message, Throwable cause) {
+        boolean isTransient = !(cause instanceof ErrorResponseException errorResponse)
+                || TRANSIENT_ERROR_CODES.contains(errorResponse.errorResponse().code());
+        return new StorageException(message, cause, isTransient);
+    }
+
+    private static <T> T join(CompletableFuture<T> future, String errorMessage) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            logger.error(errorMessage, cause);
+            throw minioError(errorMessage, cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+    }
+
+    private String presign(GetPresignedObjectUrlArgs args) {
+        try {
+            String url = presignClient.getPresignedObjectUrl(args);
+            logger.debug("Presigned {} of object '{}' in bucket '{}' for {}s",
+                    args.method(), args.object(), args.bucket(), args.expiry());
+            return url;
+        } catch (Exception e) {
+            logger.error("Error presigning {} of object '{}' in bucket '{}'", args.method(), args.object(), args.bucket(), e);
+            throw minioError("Error creating presigned MinIO URL", e);
+        }
+    }
+
+    private InputStream getObject(GetObjectArgs args) {
+        try {
+            InputStream inputStream = minioClient.getObject(args);
+            logger.info("Successfully retrieved object '{}' from bucket '{}'", args.object(), args.bucket());
             return inputStream;
         } catch (Exception e) {
-            logger.error("Error retrieving object '{}' from bucket '{}'", objectName, targetBucket, e);
-            throw new StorageException("Error downloading file from MinIO", e);
+            logger.error("Error retrieving object '{}' from bucket '{}'", args.object(), args.bucket(), e);
+            throw minioError("Error downloading file from MinIO", e);
         }
     }
 }
@@ -0,0 +1,286 @@
+package org.example.cloudservice.storage;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a slow or failing storage backend from taking the rest of the service down with it.
+ * <p>
+ * A bulkhead bounds the number of calls in flight; a call that finds no free slot within the
+ * configured wait is rejected instead of queueing behind the others. Calls that do not
+ * transfer content, and the start of downloads, are given up on after a timeout; the call
+ * keeps its slot until it actually returns, so abandoned calls still count against the limit.
+ * A circuit breaker opens once too many of the recent calls failed or timed out, and while it
+ * is open every call fails at once without reaching storage. Errors storage answers a valid
+ * but unsatisfiable request with, such as a missing object, are not counted as failures.
+ * <p>
+ * Rejected and abandoned calls throw {@link StorageUnavailableException}. Uploads are limited
+ * by the bulkhead and circuit breaker only; stalled transfers are ended by the backend's own
+ * I/O timeouts. Presigning is local and not guarded.
+ * <p>
+ * The state of both is published as {@code resilience4j.circuitbreaker.*} and
+ * {@code resilience4j.bulkhead.*} metrics tagged {@code name=storage}.
+ */
+public class ResilientStorageAdapter extends DelegatingStorageAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientStorageAdapter.class);
+
+    private static final String NAME = "storage";
+
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final Duration metadataTimeout;
+    private final Duration readTimeout;
+    private final Counter timedOut;
+
+    public ResilientStorageAdapter(StorageAdapter delegate, StorageProperties.Resilience properties,
+                                   MeterRegistry meterRegistry) {
+        super(delegate);
+        this.metadataTimeout = properties.getMetadataTimeout();
+        this.readTimeout = properties.getReadTimeout();
+
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                .maxWaitDuration(properties.getMaxWait())
+                .build());
+        this.bulkhead = bulkheadRegistry.bulkhead(NAME);
+
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getOpenDuration())
+                .permittedNumberOfCallsInHalfOpenState(properties.getHalfOpenCalls())
+                // A full bulkhead says the service is busy, not that storage is failing.
+                .ignoreExceptions(BulkheadFullException.class)
+                .recordException(ResilientStorageAdapter::isFailure)
+                .build());
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(NAME);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                logger.warn("Storage circuit breaker: {}", event.getStateTransition()));
+
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        this.timedOut = Counter.builder("storage.calls.timed.out")
+                .description("Storage calls given up on after their timeout")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
+        call("upload of '" + objectName + "'", null, () -> {
+            delegate.uploadObject(bucket, objectName, stream, size, contentType);
+            return null;
+        });
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        return call("download of '" + objectName + "'", readTimeout, () -> delegate.getObject(bucket, objectName));
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        return call("download of '" + objectName + "'", readTimeout,
+                () -> delegate.getObject(bucket, objectName, offset, length));
+    }
+
+    @Override
+    public Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName) {
+        return call("stat of '" + objectName + "'", metadataTimeout, () -> delegate.statObject(bucket, objectName));
+    }
+
+    /** A copy runs inside storage for as long as the object takes, so it gets no timeout. */
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        return call("copy of '" + sourceObjectName + "'", null,
+                () -> delegate.copyObject(bucket, sourceObjectName, objectName));
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        call("deletion of '" + objectName + "'", metadataTimeout, () -> {
+            delegate.deleteObject(bucket, objectName);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        call("deletion of " + objectNames.size() + " objects", metadataTimeout, () -> {
+            delegate.deleteObjects(bucket, objectNames);
+            return null;
+        });
+    }
+
+    @Override
+    public String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType) {
+        return call("start of multipart upload '" + objectName + "'", metadataTimeout,
+                () -> delegate.createMultipartUpload(bucket, objectName, contentType));
+    }
+
+    @Override
+    public StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                                  int partNumber, InputStream stream, long size) {
+        return call("upload of part " + partNumber + " of '" + objectName + "'", null,
+                () -> delegate.uploadPart(bucket, objectName, uploadId, partNumber, stream, size));
+    }
+
+    @Override
+    public void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts) {
+        call("completion of multipart upload '" + objectName + "'", metadataTimeout, () -> {
+            delegate.completeMultipartUpload(bucket, objectName, uploadId, parts);
+            return null;
+        });
+    }
+
+    @Override
+    public void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId) {
+        call("abort of multipart upload '" + objectName + "'", metadataTimeout, () -> {
+            delegate.abortMultipartUpload(bucket, objectName, uploadId);
+            return null;
+        });
+    }
+
+    /**
+     * Runs a blocking call through the circuit breaker and the bulkhead.
+     *
+     * @param timeout how long to wait for the call, or null to wait until it returns.
+     */
+    private <T> T call(String operation, @Nullable Duration timeout, Supplier<T> call) {
+        try {
+            return circuitBreaker.executeSupplier(() -> {
+                bulkhead.acquirePermission();
+                if (timeout == null) {
+                    try {
+                        return call.get();
+                    } finally {
+                        bulkhead.onComplete();
+                    }
+                }
+                return callWithTimeout(operation, timeout, call);
+            });
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw unavailable(operation, e);
+        }
+    }
+
+    /**
+     * Runs the call on a virtual thread and waits for it up to the timeout. The bulkhead slot,
+     * already taken, is released by that thread once the call returns. A result that arrives
+     * after the caller gave up is closed, so an abandoned download does not leak its connection.
+     */
+    private <T> T callWithTimeout(String operation, Duration timeout, Supplier<T> call) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        FutureTask<T> task = new FutureTask<>(() -> {
+            try {
+                T result = call.get();
+                if (!claimed.compareAndSet(false, true)) {
+                    closeQuietly(result);
+                }
+                return result;
+            } finally {
+                bulkhead.onComplete();
+            }
+        });
+        try {
+            Thread.ofVirtual().name("storage-call").start(task);
+        } catch (RuntimeException e) {
+            bulkhead.onComplete();
+            throw e;
+        }
+
+        try {
+            return task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!claimed.compareAndSet(false, true)) {
+                // The call returned just now; its result is about to be handed over.
+                return join(task);
+            }
+            task.cancel(true);
+            timedOut.increment();
+            throw new StorageUnavailableException("Storage did not complete the " + operation + " within " + timeout, e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for the " + operation, e);
+        }
+    }
+
+    /**
+     * Whether an error counts against the circuit breaker. Requests storage rejected, such as
+     * reads of a missing object, say nothing about its health; timeouts do.
+     */
+    private static boolean isFailure(Throwable error) {
+        if (error instanceof StorageException storageError) {
+            return storageError.isTransient();
+        }
+        return true;
+    }
+
+    private static StorageUnavailableException unavailable(String operation, Throwable cause) {
+        String reason = (cause instanceof CallNotPermittedException)
+                ? "storage is failing and calls are suspended for a while"
+                : "too many storage calls are in progress";
+        return new StorageUnavailableException("The " + operation + " was rejected: " + reason, cause);
+    }
+
+    private static <T> T join(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for a storage call", e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new StorageException("Storage call failed", cause);
+    }
+
+    private static void closeQuietly(Object result) {
+        if (result instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.debug("Could not close the result of an abandoned storage call", e);
+            }
+        }
+    }
+}
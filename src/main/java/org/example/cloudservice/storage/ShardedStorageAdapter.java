@@ -0,0 +1,135 @@
+package org.example.cloudservice.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Spreads objects across several storage shards, each an endpoint and bucket of its own.
+ * <p>
+ * The bucket of every call names the shard, and a null bucket means the default shard, which
+ * is where all objects stored before sharding live. {@link #chooseBucket} places new objects
+ * by consistent hashing of their name over the shards, in proportion to their weights; the
+ * caller records the returned shard and passes it back for every later call. Since objects
+ * are found by their recorded shard, not by the ring, adding a shard or changing weights does
+ * not affect where existing objects are read from. They are moved to their new place in the
+ * background, if at all, see {@code ShardRebalanceService}.
+ */
+public class ShardedStorageAdapter implements StorageAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedStorageAdapter.class);
+
+    /** Name of the shard holding objects stored without a shard. */
+    public static final String DEFAULT_SHARD = "default";
+
+    private final Map<String, StorageAdapter> shards;
+    private final ConsistentHashRing ring;
+
+    /**
+     * @param shards  the adapter of each shard by name, including {@link #DEFAULT_SHARD}; every
+     *                adapter stores into its own default bucket.
+     * @param weights the share of new objects placed on each shard; shards with a weight of zero
+     *                are only read from.
+     */
+    public ShardedStorageAdapter(Map<String, StorageAdapter> shards, Map<String, Integer> weights) {
+        if (!shards.containsKey(DEFAULT_SHARD)) {
+            throw new IllegalArgumentException("The shards must include the default shard");
+        }
+        this.shards = new LinkedHashMap<>(shards);
+        this.ring = new ConsistentHashRing(weights);
+        logger.info("Storage sharded across {} with weights {}", shards.keySet(), weights);
+    }
+
+    @Override
+    public String chooseBucket(String objectName) {
+        return ring.locate(objectName);
+    }
+
+    @Override
+    public void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType) {
+        shard(bucket).uploadObject(null, objectName, stream, size, contentType);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName) {
+        return shard(bucket).getObject(null, objectName);
+    }
+
+    @Override
+    public InputStream getObject(@Nullable String bucket, String objectName, long offset, long length) {
+        return shard(bucket).getObject(null, objectName, offset, length);
+    }
+
+    @Override
+    public Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName) {
+        return shard(bucket).statObject(null, objectName);
+    }
+
+    @Override
+    public boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        return shard(bucket).copyObject(null, sourceObjectName, objectName);
+    }
+
+    /** Presigned URLs are only supported if every shard supports them. */
+    @Override
+    public boolean supportsPresignedUrls() {
+        return shards.values().stream().allMatch(StorageAdapter::supportsPresignedUrls);
+    }
+
+    @Override
+    public String presignGetObject(@Nullable String bucket, String objectName, Duration expiry,
+                                   @Nullable String downloadFilename) {
+        return shard(bucket).presignGetObject(null, objectName, expiry, downloadFilename);
+    }
+
+    @Override
+    public String presignPutObject(@Nullable String bucket, String objectName, Duration expiry) {
+        return shard(bucket).presignPutObject(null, objectName, expiry);
+    }
+
+    @Override
+    public void deleteObject(@Nullable String bucket, String objectName) {
+        shard(bucket).deleteObject(null, objectName);
+    }
+
+    @Override
+    public void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        shard(bucket).deleteObjects(null, objectNames);
+    }
+
+    @Override
+    public String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType) {
+        return shard(bucket).createMultipartUpload(null, objectName, contentType);
+    }
+
+    @Override
+    public StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                                  int partNumber, InputStream stream, long size) {
+        return shard(bucket).uploadPart(null, objectName, uploadId, partNumber, stream, size);
+    }
+
+    @Override
+    public void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts) {
+        shard(bucket).completeMultipartUpload(null, objectName, uploadId, parts);
+    }
+
+    @Override
+    public void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId) {
+        shard(bucket).abortMultipartUpload(null, objectName, uploadId);
+    }
+
+    private StorageAdapter shard(@Nullable String bucket) {
+        StorageAdapter shard = shards.get((bucket != null) ? bucket : DEFAULT_SHARD);
+        if (shard == null) {
+            throw new StorageException("Unknown storage shard '" + bucket + "'");
+        }
+        return shard;
+    }
+}
@@ -1,6 +1,9 @@
 package org.example.cloudservice.storage;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.lang.Nullable;
 
 /**
@@ -14,7 +17,7 @@ public interface StorageAdapter {
      *
      * @param objectName  the unique name for the object.
      * @param stream      the InputStream for the object.
-     * @param size        the size of the object.
+     * @param size        the size of the object, or -1 if it is not known up front.
      * @param contentType the MIME type of the object.
      */
     default void uploadObject(String objectName, InputStream stream, long size, String contentType) {
@@ -29,11 +32,23 @@ public interface StorageAdapter {
      * @param bucket      the bucket to use, or null to use the default bucket.
      * @param objectName  the unique name for the object.
      * @param stream      the InputStream for the object.
-     * @param size        the size of the object.
+     * @param size        the size of the object, or -1 if it is not known up front.
      * @param contentType the MIME type of the object.
      */
     void uploadObject(@Nullable String bucket, String objectName, InputStream stream, long size, String contentType);
 
+    /**
+     * Chooses the bucket a new object is stored in. Callers that use it record the returned
+     * bucket and pass it to every later call for the object.
+     *
+     * @param objectName the unique name for the object.
+     * @return the bucket, or null to use the default bucket.
+     */
+    @Nullable
+    default String chooseBucket(String objectName) {
+        return null;
+    }
+
     /**
      * Retrieves an object from the default bucket.
      *
@@ -54,4 +69,163 @@ public interface StorageAdapter {
      * @return an InputStream of the object.
      */
     InputStream getObject(@Nullable String bucket, String objectName);
+
+    /**
+     * Retrieves a byte range of an object from the default bucket.
+     *
+     * @param objectName the unique name for the object.
+     * @param offset     the position of the first byte to return.
+     * @param length     the number of bytes to return.
+     * @return an InputStream of the requested range.
+     */
+    default InputStream getObject(String objectName, long offset, long length) {
+        // Delegate to the bucket-specific version with a null bucket
+        return getObject(null, objectName, offset, length);
+    }
+
+    /**
+     * Retrieves a byte range of an object from the provided bucket.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @param offset     the position of the first byte to return.
+     * @param length     the number of bytes to return.
+     * @return an InputStream of the requested range.
+     */
+    InputStream getObject(@Nullable String bucket, String objectName, long offset, long length);
+
+    /**
+     * Looks up the size and Content-Type of an object without reading it.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @return the size and Content-Type of the object, or empty if it does not exist.
+     */
+    Optional<StorageObjectStat> statObject(@Nullable String bucket, String objectName);
+
+    /**
+     * Copies an object to another name in the same bucket, inside storage, without passing
+     * its content through this server. An existing object at the target name is replaced.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket           the bucket to use, or null to use the default bucket.
+     * @param sourceObjectName the name of the object to copy.
+     * @param objectName       the unique name for the copy.
+     * @return false if the source object does not exist.
+     * @throws UnsupportedOperationException if the backend cannot copy objects by itself.
+     */
+    default boolean copyObject(@Nullable String bucket, String sourceObjectName, String objectName) {
+        throw new UnsupportedOperationException("This storage backend does not support copying objects");
+    }
+
+    /**
+     * Whether clients can be given presigned URLs to reach storage directly, see
+     * {@link #presignGetObject} and {@link #presignPutObject}.
+     */
+    default boolean supportsPresignedUrls() {
+        return false;
+    }
+
+    /**
+     * Creates a URL that lets a client download an object straight from storage until it expires.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket           the bucket to use, or null to use the default bucket.
+     * @param objectName       the unique name for the object.
+     * @param expiry           how long the URL stays valid.
+     * @param downloadFilename the file name the client should save the content as, or null.
+     * @return the presigned URL.
+     * @throws UnsupportedOperationException unless the backend {@link #supportsPresignedUrls supports presigned URLs}.
+     */
+    default String presignGetObject(@Nullable String bucket, String objectName, Duration expiry,
+                                    @Nullable String downloadFilename) {
+        throw new UnsupportedOperationException("This storage backend does not support presigned URLs");
+    }
+
+    /**
+     * Creates a URL that lets a client upload an object straight to storage, in a single
+     * PUT request, until it expires.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @param expiry     how long the URL stays valid.
+     * @return the presigned URL.
+     * @throws UnsupportedOperationException unless the backend {@link #supportsPresignedUrls supports presigned URLs}.
+     */
+    default String presignPutObject(@Nullable String bucket, String objectName, Duration expiry) {
+        throw new UnsupportedOperationException("This storage backend does not support presigned URLs");
+    }
+
+    /**
+     * Deletes an object. Deleting an object that does not exist is not an error.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     */
+    void deleteObject(@Nullable String bucket, String objectName);
+
+    /**
+     * Deletes several objects from the same bucket. Objects that do not exist are ignored.
+     * Implementations backed by S3 remove them with as few requests as possible.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket      the bucket to use, or null to use the default bucket.
+     * @param objectNames the unique names of the objects.
+     * @throws StorageException if any of the objects could not be deleted.
+     */
+    default void deleteObjects(@Nullable String bucket, List<String> objectNames) {
+        for (String objectName : objectNames) {
+            deleteObject(bucket, objectName);
+        }
+    }
+
+    /**
+     * Starts a multipart upload whose parts can be uploaded independently and later
+     * assembled into one object without copying.
+     * If {@code bucket} is null, the default bucket is used.
+     *
+     * @param bucket      the bucket to use, or null to use the default bucket.
+     * @param objectName  the unique name for the object.
+     * @param contentType the MIME type of the object, if known.
+     * @return the id of the multipart upload.
+     */
+    String createMultipartUpload(@Nullable String bucket, String objectName, @Nullable String contentType);
+
+    /**
+     * Uploads one part of a multipart upload. Uploading the same part number again replaces it.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @param uploadId   the id returned by {@link #createMultipartUpload}.
+     * @param partNumber the 1-based position of the part.
+     * @param stream     the content of the part.
+     * @param size       the exact size of the part.
+     * @return the accepted part.
+     */
+    StoragePart uploadPart(@Nullable String bucket, String objectName, String uploadId,
+                           int partNumber, InputStream stream, long size);
+
+    /**
+     * Assembles the given parts, in order, into the final object.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @param uploadId   the id returned by {@link #createMultipartUpload}.
+     * @param parts      the parts making up the object, ordered by part number.
+     */
+    void completeMultipartUpload(@Nullable String bucket, String objectName, String uploadId, List<StoragePart> parts);
+
+    /**
+     * Discards a multipart upload and every part uploaded for it. Aborting an upload that no
+     * longer exists, because it was completed or aborted already, is not an error.
+     *
+     * @param bucket     the bucket to use, or null to use the default bucket.
+     * @param objectName the unique name for the object.
+     * @param uploadId   the id returned by {@link #createMultipartUpload}.
+     */
+    void abortMultipartUpload(@Nullable String bucket, String objectName, String uploadId);
 }
@@ -0,0 +1,65 @@
+package org.example.cloudservice.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How the bytes of an object are encoded in storage. Files record the codec their object
+ * was written with, so the content can be decoded on the way out.
+ * Both directions work on streams, so no object is held in memory.
+ */
+public enum StorageCodec {
+
+    /** Bytes are stored as received. */
+    NONE {
+        @Override
+        public InputStream encode(InputStream content, int level) {
+            return content;
+        }
+
+        @Override
+        public InputStream decode(InputStream stored) {
+            return stored;
+        }
+    },
+
+    /** zlib-wrapped DEFLATE from {@link java.util.zip}. */
+    DEFLATE {
+        @Override
+        public InputStream encode(InputStream content, int level) {
+            Deflater deflater = new Deflater(level);
+            // DeflaterInputStream does not end a deflater it was given, so end it on close.
+            return new FilterInputStream(new DeflaterInputStream(content, deflater)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decode(InputStream stored) {
+            return new InflaterInputStream(stored);
+        }
+    };
+
+    /**
+     * Wraps the content in a stream that produces the encoded bytes as it is read.
+     *
+     * @param level the compression level, if the codec has one.
+     */
+    public abstract InputStream encode(InputStream content, int level);
+
+    /**
+     * Wraps the stored bytes in a stream that produces the original content as it is read.
+     */
+    public abstract InputStream decode(InputStream stored);
+}
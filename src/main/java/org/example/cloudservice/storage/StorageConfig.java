@@ -0,0 +1,46 @@
+package org.example.cloudservice.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Assembles the {@link StorageAdapter} the application uses: the backend selected by
+ * {@code app.storage.type}, wrapped in the decorators enabled under {@code app.storage.*}.
+ */
+@Configuration
+public class StorageConfig {
+
+    /** Qualifier of the backend adapter, which is the innermost adapter of the chain. */
+    public static final String BACKEND = "storageBackend";
+
+    @Bean
+    @Primary
+    public StorageAdapter storageAdapter(@Qualifier(BACKEND) StorageAdapter backend,
+                                         StorageProperties storageProperties,
+                                         MinioProperties minioProperties,
+                                         ObjectProvider<MinioShardFactory> minioShardFactory,
+                                         MeterRegistry meterRegistry) {
+        StorageAdapter adapter = backend;
+        boolean minio = storageProperties.getType() == StorageProperties.Type.MINIO;
+        if (minio && !minioProperties.getShards().isEmpty()) {
+            adapter = minioShardFactory.getObject().create(adapter);
+        }
+        // Directly around the backend, so the layers outside see one read however many requests it took.
+        if (minio && minioProperties.getHedging().isEnabled()) {
+            adapter = new HedgingStorageAdapter(adapter, minioProperties.getHedging(), meterRegistry);
+        }
+        // Inside the cache, so cached objects are still served while storage is unavailable.
+        if (storageProperties.getResilience().isEnabled()) {
+            adapter = new ResilientStorageAdapter(adapter, storageProperties.getResilience(), meterRegistry);
+        }
+        if (storageProperties.getCache().isEnabled()) {
+            adapter = new CachingStorageAdapter(adapter, storageProperties.getCache(), meterRegistry);
+        }
+        return adapter;
+    }
+}
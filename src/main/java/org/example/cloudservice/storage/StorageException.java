@@ -1,8 +1,35 @@
 package org.example.cloudservice.storage;
 
+/**
+ * Thrown when a storage call fails. The backend that raised it tells whether the failure is
+ * transient, so that decorators can retry it or count it against the health of storage
+ * without knowing the backend.
+ */
 public class StorageException extends RuntimeException {
 
+    private final boolean isTransient;
+
+    /** A failure without a cause, such as a rejected request, is not transient. */
+    public StorageException(String message) {
+        super(message);
+        this.isTransient = false;
+    }
+
+    /** A failure with a cause, such as an I/O error, is transient unless the backend says otherwise. */
     public StorageException(String message, Throwable cause) {
+        this(message, cause, true);
+    }
+
+    public StorageException(String message, Throwable cause, boolean isTransient) {
         super(message, cause);
+        this.isTransient = isTransient;
+    }
+
+    /**
+     * Whether the call may succeed when made again. Failures that would only repeat, such as
+     * a read of a missing object, are not transient.
+     */
+    public boolean isTransient() {
+        return isTransient;
     }
 }
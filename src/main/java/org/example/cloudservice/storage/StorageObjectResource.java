@@ -0,0 +1,180 @@
+package org.example.cloudservice.storage;
+
+import com.google.common.io.ByteStreams;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link org.springframework.core.io.Resource} backed by an object in storage.
+ * The object is not fetched until {@link #getInputStream()} is called, and the
+ * returned stream is handed to the response writer as-is, so content is streamed
+ * to the client without being buffered in memory or spooled to disk.
+ * Whoever reads the stream is responsible for closing it; Spring's resource
+ * message converter does so once the body is written or the client disconnects.
+ * A resource may also cover a byte range of the object; see {@link #range(long, long)}.
+ * Objects stored with a {@link StorageCodec} are decoded while they are streamed.
+ * The stored bytes may be a slice of a larger object, for files packed into a segment.
+ * The object is read from the default bucket unless another one is set with {@link #inBucket}.
+ */
+public class StorageObjectResource extends AbstractResource {
+
+    private final StorageAdapter storageAdapter;
+    @Nullable
+    private final String bucket;
+    private final String objectName;
+    private final String filename;
+    private final StorageCodec codec;
+    private final long contentLength;
+    private final long storedOffset;
+    private final long storedLength;
+    private final long offset;
+    private final boolean ranged;
+
+    public StorageObjectResource(StorageAdapter storageAdapter, String objectName, String filename, long contentLength) {
+        this(storageAdapter, objectName, filename, StorageCodec.NONE, contentLength);
+    }
+
+    /**
+     * @param contentLength the length of the decoded content.
+     */
+    public StorageObjectResource(StorageAdapter storageAdapter, String objectName, String filename,
+                                 StorageCodec codec, long contentLength) {
+        this(storageAdapter, null, objectName, filename, codec, contentLength, 0, -1, 0, false);
+    }
+
+    /**
+     * A file whose stored bytes are the {@code storedLength} bytes at {@code storedOffset} of the object.
+     *
+     * @param contentLength the length of the decoded content.
+     */
+    public StorageObjectResource(StorageAdapter storageAdapter, String objectName, String filename,
+                                 StorageCodec codec, long contentLength, long storedOffset, long storedLength) {
+        this(storageAdapter, null, objectName, filename, codec, contentLength, storedOffset, storedLength, 0, false);
+    }
+
+    private StorageObjectResource(StorageAdapter storageAdapter, @Nullable String bucket, String objectName,
+                                  String filename, StorageCodec codec, long contentLength, long storedOffset,
+                                  long storedLength, long offset, boolean ranged) {
+        this.storageAdapter = storageAdapter;
+        this.bucket = bucket;
+        this.objectName = objectName;
+        this.filename = filename;
+        this.codec = codec;
+        this.contentLength = contentLength;
+        this.storedOffset = storedOffset;
+        this.storedLength = storedLength;
+        this.offset = offset;
+        this.ranged = ranged;
+    }
+
+    /**
+     * Returns a resource covering {@code length} bytes of the same object starting at
+     * {@code offset}. Only that range is requested from storage when it is read, unless the
+     * object is encoded: offsets in the content do not map to offsets in the stored bytes,
+     * so the object is then decoded from the start and the bytes before the range are skipped.
+     *
+     * @param offset the position of the first byte, relative to the start of the content.
+     * @param length the number of bytes; must be positive.
+     */
+    public StorageObjectResource range(long offset, long length) {
+        if (offset < 0 || length <= 0) {
+            throw new IllegalArgumentException("Invalid range: offset " + offset + ", length " + length);
+        }
+        return new StorageObjectResource(storageAdapter, bucket, objectName, filename, codec, length,
+                storedOffset, storedLength, this.offset + offset, true);
+    }
+
+    /**
+     * Returns the same resource, read from the given bucket.
+     *
+     * @param bucket the bucket holding the object, or null for the default bucket.
+     */
+    public StorageObjectResource inBucket(@Nullable String bucket) {
+        return new StorageObjectResource(storageAdapter, bucket, objectName, filename, codec, contentLength,
+                storedOffset, storedLength, offset, ranged);
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() throws IOException {
+        if (codec == StorageCodec.NONE && ranged) {
+            return storageAdapter.getObject(bucket, objectName, storedOffset + offset, contentLength);
+        }
+        if (codec == StorageCodec.NONE) {
+            return getStoredBytes();
+        }
+
+        InputStream content = codec.decode(getStoredBytes());
+        if (!ranged) {
+            return content;
+        }
+        try {
+            content.skipNBytes(offset);
+        } catch (IOException e) {
+            content.close();
+            throw e;
+        }
+        return ByteStreams.limit(content, contentLength);
+    }
+
+    private InputStream getStoredBytes() {
+        return isPacked()
+                ? storageAdapter.getObject(bucket, objectName, storedOffset, storedLength)
+                : storageAdapter.getObject(bucket, objectName);
+    }
+
+    /**
+     * Always {@code true}: the metadata this resource was built from guarantees
+     * the object, and probing it would cost an extra storage request.
+     */
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Nullable
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public StorageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return whether the stored bytes are only a slice of the object, which holds other files as well.
+     */
+    public boolean isPacked() {
+        return storedLength >= 0;
+    }
+
+    @Override
+    @NonNull
+    public String getDescription() {
+        return ranged
+                ? "Storage object [" + objectName + "], bytes " + offset + "-" + (offset + contentLength - 1)
+                : "Storage object [" + objectName + "]";
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.cloudservice.storage;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * What storage knows about an object without reading it.
+ *
+ * @param size        the size of the object in bytes.
+ * @param contentType the Content-Type the object was stored with, or null if the backend keeps none.
+ */
+public record StorageObjectStat(long size, @Nullable String contentType) {
+}
@@ -0,0 +1,11 @@
+package org.example.cloudservice.storage;
+
+/**
+ * A part of a multipart upload that storage has accepted.
+ *
+ * @param partNumber the 1-based position of the part in the object.
+ * @param etag       the tag storage returned for the part; needed to complete the upload.
+ * @param size       the size of the part in bytes.
+ */
+public record StoragePart(int partNumber, String etag, long size) {
+}
@@ -0,0 +1,136 @@
+package org.example.cloudservice.storage;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Storage settings bound from the {@code app.storage.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.storage")
+public class StorageProperties {
+
+    /**
+     * Backend holding the objects.
+     */
+    private Type type = Type.MINIO;
+
+    /**
+     * Settings of the {@code filesystem} backend.
+     */
+    private Filesystem filesystem = new Filesystem();
+
+    /**
+     * Local disk cache in front of the storage backend.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Compression of file content at rest.
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * Bulkhead, timeouts and circuit breaker around the calls to the storage backend.
+     */
+    private Resilience resilience = new Resilience();
+
+    @Data
+    public static class Cache {
+
+        private boolean enabled = false;
+
+        /** Directory holding the cached objects; it is cleared on startup. */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "cloudservice-cache");
+
+        /** Upper bound for the total size of the cached objects. */
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        /** Larger objects are never cached, so a single download cannot flush the cache. */
+        private DataSize maxObjectSize = DataSize.ofMegabytes(256);
+
+        /** Number of threads fetching whole objects into the cache after a ranged miss. */
+        private int populateThreads = 2;
+
+        /** Ranged misses waiting for a populate thread; further ones are not cached. */
+        private int populateQueueSize = 64;
+    }
+
+    @Data
+    public static class Compression {
+
+        private boolean enabled = false;
+
+        /** Content types that are always compressed; a trailing {@code /*} matches a whole type. */
+        private List<String> contentTypes = List.of("text/*", "application/json", "application/xml",
+                "application/javascript", "application/x-ndjson", "application/csv", "image/svg+xml");
+
+        /** Deflate level from 1 (fastest) to 9 (smallest). */
+        private int level = 6;
+
+        /**
+         * Content of other types is compressed if a sample from its start compresses to at
+         * most {@code sampleRatio} of its size. Zero disables sampling.
+         */
+        private DataSize sampleSize = DataSize.ofKilobytes(64);
+
+        private double sampleRatio = 0.8;
+    }
+
+    @Data
+    public static class Resilience {
+
+        private boolean enabled = false;
+
+        /** Maximum number of storage calls in flight at once. */
+        private int maxConcurrentCalls = 64;
+
+        /** How long a call waits for a free slot before it is rejected. */
+        private Duration maxWait = Duration.ofMillis(100);
+
+        /** Limit for calls that do not transfer content, such as stat, delete and multipart bookkeeping. */
+        private Duration metadataTimeout = Duration.ofSeconds(10);
+
+        /** Limit for a download to start; reading the content afterwards is not limited here. */
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        /** Share of failed calls, in percent, at which the circuit opens. */
+        private float failureRateThreshold = 50;
+
+        /** Number of most recent calls the failure rate is computed over. */
+        private int slidingWindowSize = 50;
+
+        /** The failure rate is only evaluated once this many calls were recorded. */
+        private int minimumNumberOfCalls = 20;
+
+        /** How long calls fail fast once the circuit has opened. */
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        /** Trial calls let through after the open period to decide whether to close the circuit. */
+        private int halfOpenCalls = 5;
+    }
+
+    public enum Type {
+        /** MinIO or another S3-compatible service, configured under {@code minio.*}. */
+        MINIO,
+        /** A local or mounted directory. */
+        FILESYSTEM
+    }
+
+    @Data
+    public static class Filesystem {
+
+        /** Directory holding one subdirectory per bucket. */
+        private Path root = Path.of("data", "storage");
+
+        /** Bucket used when none is given. */
+        private String bucket = "cloudservice-bucket";
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.cloudservice.storage;
+
+/**
+ * Thrown when a storage call is not attempted or given up on because storage is overloaded
+ * or failing, so the caller can tell the client to retry later.
+ */
+public class StorageUnavailableException extends StorageException {
+
+    public StorageUnavailableException(String message) {
+        super(message, null, true);
+    }
+
+    public StorageUnavailableException(String message, Throwable cause) {
+        super(message, cause, true);
+    }
+}
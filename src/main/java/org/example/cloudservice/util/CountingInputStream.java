@@ -0,0 +1,81 @@
+package org.example.cloudservice.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and fails once more than {@code limit} bytes
+ * have been read, so streams of unknown length can be bounded without buffering.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+    private boolean limitExceeded;
+
+    public CountingInputStream(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    public CountingInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            add(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            add(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        add(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Marking would make the count ambiguous.
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    private void add(long n) throws IOException {
+        count += n;
+        if (count > limit) {
+            limitExceeded = true;
+            throw new IOException("Stream exceeds the limit of " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+--liquibase formatted sql
+
+--changeset yulia:7
+--comment: resumable upload sessions and the chunks received for them
+CREATE TABLE IF NOT EXISTS cloud.upload_sessions
+(
+    id           UUID PRIMARY KEY,
+    user_id      INTEGER     NOT NULL,
+    filename     TEXT        NOT NULL,
+    content_type TEXT,
+    hash         TEXT,
+    object_name  TEXT        NOT NULL,
+    upload_id    TEXT        NOT NULL,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at   TIMESTAMPTZ NOT NULL,
+    CONSTRAINT fk_upload_sessions_user FOREIGN KEY (user_id) REFERENCES cloud.users (id)
+);
+
+CREATE INDEX idx_upload_sessions_user_id ON cloud.upload_sessions (user_id);
+CREATE INDEX idx_upload_sessions_expires_at ON cloud.upload_sessions (expires_at);
+
+CREATE TABLE IF NOT EXISTS cloud.upload_session_parts
+(
+    id          BIGSERIAL PRIMARY KEY,
+    session_id  UUID    NOT NULL,
+    part_number INTEGER NOT NULL CHECK (part_number BETWEEN 1 AND 10000),
+    size_bytes  BIGINT  NOT NULL CHECK (size_bytes > 0),
+    etag        TEXT    NOT NULL,
+    CONSTRAINT fk_upload_session_parts_session FOREIGN KEY (session_id)
+        REFERENCES cloud.upload_sessions (id) ON DELETE CASCADE,
+    CONSTRAINT uq_upload_session_parts_number UNIQUE (session_id, part_number)
+);
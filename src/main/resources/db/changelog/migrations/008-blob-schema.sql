@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset yulia:8
+--comment: content-addressed blobs shared by files with identical content
+CREATE TABLE IF NOT EXISTS cloud.blobs
+(
+    digest      TEXT PRIMARY KEY,
+    object_name TEXT        NOT NULL,
+    size_bytes  BIGINT      NOT NULL CHECK (size_bytes >= 0),
+    ref_count   INTEGER     NOT NULL CHECK (ref_count >= 0),
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- No foreign key: soft-deleted files keep the digest after their reference is released.
+ALTER TABLE cloud.files
+    ADD COLUMN blob_digest TEXT;
+
+CREATE INDEX idx_files_blob_digest ON cloud.files (blob_digest);
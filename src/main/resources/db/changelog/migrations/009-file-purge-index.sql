@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset yulia:9
+--comment: lets the purge job find soft-deleted files past retention without scanning live rows
+CREATE INDEX idx_files_deleted_at ON cloud.files (deleted_at) WHERE deleted = TRUE;
@@ -0,0 +1,12 @@
+--liquibase formatted sql
+
+--changeset yulia:10
+--comment: progress of resumable background jobs, and the files still waiting for a hash
+CREATE TABLE IF NOT EXISTS cloud.job_checkpoints
+(
+    job_name   TEXT PRIMARY KEY,
+    last_id    INTEGER     NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_files_missing_hash ON cloud.files (id) WHERE hash IS NULL AND deleted = FALSE;
@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset yulia:11
+--comment: encoding of the stored bytes, so compressed objects can be decoded on download
+ALTER TABLE cloud.files
+    ADD COLUMN codec TEXT NOT NULL DEFAULT 'NONE';
+
+ALTER TABLE cloud.blobs
+    ADD COLUMN codec TEXT NOT NULL DEFAULT 'NONE';
@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset yulia:12
+--comment: uploads sent by clients straight to storage with a presigned URL, waiting for completion
+CREATE TABLE IF NOT EXISTS cloud.direct_uploads
+(
+    id          UUID PRIMARY KEY,
+    user_id     INTEGER     NOT NULL,
+    filename    TEXT        NOT NULL,
+    object_name TEXT        NOT NULL,
+    size_bytes  BIGINT      NOT NULL CHECK (size_bytes >= 0),
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at  TIMESTAMPTZ NOT NULL,
+    CONSTRAINT fk_direct_uploads_user FOREIGN KEY (user_id) REFERENCES cloud.users (id)
+);
+
+CREATE INDEX idx_direct_uploads_expires_at ON cloud.direct_uploads (expires_at);
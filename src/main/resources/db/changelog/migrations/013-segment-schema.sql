@@ -0,0 +1,25 @@
+--liquibase formatted sql
+
+--changeset yulia:13
+--comment: segment objects that small files are packed into, and the position of each packed file
+CREATE TABLE IF NOT EXISTS cloud.segments
+(
+    id          BIGSERIAL PRIMARY KEY,
+    object_name TEXT        NOT NULL,
+    size_bytes  BIGINT      NOT NULL CHECK (size_bytes >= 0),
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    retired_at  TIMESTAMPTZ
+);
+
+CREATE INDEX idx_segments_retired_at ON cloud.segments (retired_at) WHERE retired_at IS NOT NULL;
+
+ALTER TABLE cloud.files
+    ADD COLUMN segment_id     BIGINT,
+    ADD COLUMN segment_offset BIGINT,
+    ADD COLUMN segment_length BIGINT,
+    ADD CONSTRAINT fk_files_segment FOREIGN KEY (segment_id) REFERENCES cloud.segments (id),
+    ADD CONSTRAINT chk_files_segment_position CHECK (
+        (segment_id IS NULL AND segment_offset IS NULL AND segment_length IS NULL)
+        OR (segment_id IS NOT NULL AND segment_offset >= 0 AND segment_length >= 0));
+
+CREATE INDEX idx_files_segment_id ON cloud.files (segment_id) WHERE segment_id IS NOT NULL;
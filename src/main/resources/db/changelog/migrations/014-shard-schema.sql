@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset yulia:14
+--comment: storage shard holding each file's object; NULL is the default shard
+ALTER TABLE cloud.files
+    ADD COLUMN shard VARCHAR(64);
+
+-- Objects left behind on their old shard by rebalancing, deleted after a grace period
+CREATE TABLE IF NOT EXISTS cloud.shard_moves
+(
+    id          BIGSERIAL PRIMARY KEY,
+    object_name TEXT        NOT NULL,
+    shard       VARCHAR(64) NOT NULL,
+    moved_at    TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_shard_moves_moved_at ON cloud.shard_moves (moved_at);
@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+--changeset yulia:15
+--comment: lets nodes load the tokens revoked since their last refresh of the revocation filter
+ALTER TABLE cloud.tokens
+    ADD COLUMN revoked_at TIMESTAMPTZ;
+
+CREATE INDEX idx_tokens_revoked_at ON cloud.tokens (revoked_at) WHERE revoked_at IS NOT NULL;
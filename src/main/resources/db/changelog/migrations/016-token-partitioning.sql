@@ -0,0 +1,43 @@
+--liquibase formatted sql
+
+--changeset yulia:16 splitStatements:false
+--comment: partitions tokens by day of expiry, so expired tokens are removed by dropping whole partitions
+CREATE TABLE cloud.tokens_partitioned
+(
+    token      TEXT        NOT NULL,
+    user_id    INTEGER     NOT NULL,
+    issued_at  TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMPTZ NOT NULL,
+    revoked    BOOLEAN     NOT NULL DEFAULT FALSE,
+    revoked_at TIMESTAMPTZ,
+    CONSTRAINT pk_tokens PRIMARY KEY (token, expires_at),
+    CONSTRAINT fk_tokens_user FOREIGN KEY (user_id) REFERENCES cloud.users (id)
+) PARTITION BY RANGE (expires_at);
+
+-- Holds the tokens of days without a partition of their own, such as those expired before this migration.
+CREATE TABLE cloud.tokens_default PARTITION OF cloud.tokens_partitioned DEFAULT;
+
+-- Partitions are created ahead of time by TokenReaperService; these cover the first week.
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR i IN 0..7 LOOP
+        day := (now() AT TIME ZONE 'UTC')::date + i;
+        EXECUTE format('CREATE TABLE cloud.%I PARTITION OF cloud.tokens_partitioned FOR VALUES FROM (%L) TO (%L)',
+                       'tokens_p' || to_char(day, 'YYYYMMDD'),
+                       day::timestamp AT TIME ZONE 'UTC',
+                       (day + 1)::timestamp AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
+
+INSERT INTO cloud.tokens_partitioned (token, user_id, issued_at, expires_at, revoked, revoked_at)
+SELECT token, user_id, issued_at, expires_at, revoked, revoked_at
+FROM cloud.tokens;
+
+DROP TABLE cloud.tokens;
+ALTER TABLE cloud.tokens_partitioned RENAME TO tokens;
+
+CREATE INDEX idx_tokens_user_id ON cloud.tokens (user_id);
+CREATE INDEX idx_tokens_expires_at ON cloud.tokens (expires_at);
+CREATE INDEX idx_tokens_revoked_at ON cloud.tokens (revoked_at) WHERE revoked_at IS NOT NULL;
@@ -0,0 +1,29 @@
+--liquibase formatted sql
+
+--changeset yulia:17 splitStatements:false
+--comment: keys tokens by a 16-byte hash instead of the raw token, which is no longer stored
+ALTER TABLE cloud.tokens
+    ADD COLUMN token_hash UUID;
+
+-- The first 16 bytes of the SHA-256 of the token, as computed by TokenHashes.
+UPDATE cloud.tokens
+SET token_hash = encode(substring(sha256(convert_to(token, 'UTF8')) FROM 1 FOR 16), 'hex')::uuid;
+
+ALTER TABLE cloud.tokens DROP CONSTRAINT pk_tokens;
+ALTER TABLE cloud.tokens ALTER COLUMN token_hash SET NOT NULL;
+ALTER TABLE cloud.tokens ALTER COLUMN token DROP NOT NULL;
+ALTER TABLE cloud.tokens ADD CONSTRAINT pk_tokens PRIMARY KEY (token_hash, expires_at);
+
+-- Nodes still running the previous version insert the raw token only; hash it for them, so that
+-- their tokens are found by the new lookup. The raw column and this trigger go once all nodes are updated.
+CREATE FUNCTION cloud.tokens_hash_token() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.token_hash IS NULL THEN
+        NEW.token_hash := encode(substring(sha256(convert_to(NEW.token, 'UTF8')) FROM 1 FOR 16), 'hex')::uuid;
+    END IF;
+    RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_tokens_hash_token
+    BEFORE INSERT ON cloud.tokens
+    FOR EACH ROW EXECUTE FUNCTION cloud.tokens_hash_token();
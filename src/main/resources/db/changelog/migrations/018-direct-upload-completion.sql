@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset yulia:18
+--comment: completed direct uploads are kept until they expire, so their staging objects can be removed
+ALTER TABLE cloud.direct_uploads
+    ADD COLUMN completed_at TIMESTAMPTZ;
@@ -0,0 +1,25 @@
+--liquibase formatted sql
+
+--changeset yulia:19 splitStatements:false
+--comment: removes the default token partition, so that expired partitions can be detached concurrently
+ALTER TABLE cloud.tokens DETACH PARTITION cloud.tokens_default;
+
+-- Gives every day the default partition held tokens of a partition of its own. Those of days
+-- past the retention are dropped by TokenReaperService on its next run.
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN SELECT DISTINCT (expires_at AT TIME ZONE 'UTC')::date FROM cloud.tokens_default LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS cloud.%I PARTITION OF cloud.tokens FOR VALUES FROM (%L) TO (%L)',
+                       'tokens_p' || to_char(day, 'YYYYMMDD'),
+                       day::timestamp AT TIME ZONE 'UTC',
+                       (day + 1)::timestamp AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
+
+INSERT INTO cloud.tokens (token, token_hash, user_id, issued_at, expires_at, revoked, revoked_at)
+SELECT token, token_hash, user_id, issued_at, expires_at, revoked, revoked_at
+FROM cloud.tokens_default;
+
+DROP TABLE cloud.tokens_default;
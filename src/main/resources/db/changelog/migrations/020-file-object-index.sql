@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset yulia:20
+--comment: lets the shard rebalancer check whether a file still points at a moved object without scanning all files
+CREATE INDEX idx_files_s3_link ON cloud.files (s3_link);
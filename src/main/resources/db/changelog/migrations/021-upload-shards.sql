@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset yulia:21
+--comment: upload sessions and direct uploads are placed on a shard when they are created, like other uploads
+ALTER TABLE cloud.upload_sessions
+    ADD COLUMN shard VARCHAR(64);
+
+ALTER TABLE cloud.direct_uploads
+    ADD COLUMN shard VARCHAR(64);
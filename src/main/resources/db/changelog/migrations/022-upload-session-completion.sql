@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset yulia:22
+--comment: marks sessions whose multipart upload storage has completed, so a failed commit can be retried or cleaned up
+ALTER TABLE cloud.upload_sessions
+    ADD COLUMN completed_at TIMESTAMPTZ;
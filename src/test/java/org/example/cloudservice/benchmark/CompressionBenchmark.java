@@ -0,0 +1,102 @@
+package org.example.cloudservice.benchmark;
+
+import org.example.cloudservice.storage.StorageCodec;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Measures the compression ratio and the encode and decode throughput of each storage codec
+ * and deflate level on typical content: JSON, CSV, log lines and incompressible binary data.
+ * Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class CompressionBenchmark {
+
+    private static final int CONTENT_SIZE = 16 * 1024 * 1024;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int[] DEFLATE_LEVELS = {1, 6, 9};
+
+    @Test
+    void codecs_ratioAndThroughputPerContentType() throws Exception {
+        Random random = new Random(42);
+        run("json", text(random, i -> "{\"id\":" + i + ",\"user\":\"user" + random.nextInt(1000)
+                + "\",\"status\":\"" + (random.nextBoolean() ? "active" : "disabled") + "\",\"score\":"
+                + random.nextDouble() + "}\n"));
+        run("csv", text(random, i -> i + ",user" + random.nextInt(1000) + "," + random.nextInt(100_000)
+                + "," + (random.nextBoolean() ? "yes" : "no") + "\n"));
+        run("log", text(random, i -> "2025-01-01 12:00:" + (i % 60) + " [INFO] org.example.cloudservice.service."
+                + "FileService - File upload" + random.nextInt(10_000) + ".bin uploaded successfully for user "
+                + "user" + random.nextInt(1000) + ".\n"));
+        byte[] binary = new byte[CONTENT_SIZE];
+        random.nextBytes(binary);
+        run("random", binary);
+    }
+
+    private static void run(String contentType, byte[] content) throws Exception {
+        report(contentType, StorageCodec.NONE, 0, content);
+        for (int level : DEFLATE_LEVELS) {
+            report(contentType, StorageCodec.DEFLATE, level, content);
+        }
+    }
+
+    private static void report(String contentType, StorageCodec codec, int level, byte[] content) throws Exception {
+        byte[] stored = encode(codec, level, content);
+        double encodeSeconds = measure(() -> encode(codec, level, content));
+        double decodeSeconds = measure(() -> decode(codec, stored));
+        double megabytes = content.length / (1024.0 * 1024.0);
+        System.out.printf("%-7s %-7s level=%d ratio=%5.2f encode=%7.1f MB/s decode=%7.1f MB/s%n",
+                contentType, codec, level, (double) content.length / stored.length,
+                megabytes / encodeSeconds, megabytes / decodeSeconds);
+    }
+
+    private static byte[] encode(StorageCodec codec, int level, byte[] content) throws Exception {
+        try (InputStream in = codec.encode(new ByteArrayInputStream(content), level)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] decode(StorageCodec codec, byte[] stored) throws Exception {
+        try (InputStream in = codec.decode(new ByteArrayInputStream(stored))) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return stored;
+    }
+
+    /** Returns the mean duration of one call in seconds. */
+    private static double measure(Call call) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            call.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            call.run();
+        }
+        return (System.nanoTime() - start) / 1e9 / MEASURED_ITERATIONS;
+    }
+
+    private static byte[] text(Random random, Line line) {
+        StringBuilder builder = new StringBuilder(CONTENT_SIZE + 256);
+        for (int i = 0; builder.length() < CONTENT_SIZE; i++) {
+            builder.append(line.build(i));
+        }
+        builder.setLength(CONTENT_SIZE);
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @FunctionalInterface
+    private interface Line {
+        String build(int index);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.cloudservice.benchmark;
+
+import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import okhttp3.OkHttpClient;
+import org.example.cloudservice.infrastructure.minio.MinioClientConfig;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Compares the per-request latency of a small GET when a new MinioClient is
+ * built for every call (previous behaviour) against the shared pooled client.
+ * Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+@Testcontainers
+class MinioClientReuseBenchmark {
+
+    private static final String BUCKET = "benchmark-bucket";
+    private static final String OBJECT = "benchmark-object";
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    @Container
+    static MinIOContainer minio = new MinIOContainer(DockerImageName.parse("minio/minio:latest"))
+            .withUserName("minioadmin")
+            .withPassword("minioadmin");
+
+    private static MinioClientConfig config;
+    private static MinioClient sharedClient;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        MinioProperties properties = new MinioProperties();
+        properties.setEndpoint(minio.getS3URL());
+        properties.setAccessKey("minioadmin");
+        properties.setSecretKey("minioadmin");
+        properties.setBucket(BUCKET);
+
+        config = new MinioClientConfig(properties);
+        OkHttpClient httpClient = config.minioHttpClient();
+        sharedClient = config.minioClient(httpClient);
+
+        if (!sharedClient.bucketExists(BucketExistsArgs.builder().bucket(BUCKET).build())) {
+            sharedClient.makeBucket(MakeBucketArgs.builder().bucket(BUCKET).build());
+        }
+        byte[] payload = new byte[4 * 1024];
+        sharedClient.putObject(PutObjectArgs.builder()
+                .bucket(BUCKET)
+                .object(OBJECT)
+                .stream(new ByteArrayInputStream(payload), payload.length, -1)
+                .build());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        config.shutdownHttpClient();
+    }
+
+    @Test
+    void getObject_perRequestClientVersusSharedClient() throws Exception {
+        long[] perRequest = measure(() -> {
+            try (MinioClient client = MinioClient.builder()
+                    .endpoint(minio.getS3URL())
+                    .credentials("minioadmin", "minioadmin")
+                    .build()) {
+                read(client);
+            }
+        });
+        long[] shared = measure(() -> read(sharedClient));
+
+        report("new client per request", perRequest);
+        report("shared pooled client", shared);
+    }
+
+    private static void read(MinioClient client) throws Exception {
+        try (InputStream in = client.getObject(GetObjectArgs.builder().bucket(BUCKET).object(OBJECT).build())) {
+            in.readAllBytes();
+        }
+    }
+
+    private static long[] measure(Call call) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            call.run();
+        }
+        long[] samples = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            call.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static void report(String label, long[] sortedSamples) {
+        System.out.printf("%-24s mean=%.3f ms p50=%.3f ms p99=%.3f ms%n",
+                label,
+                Arrays.stream(sortedSamples).average().orElse(0) / 1_000_000.0,
+                percentile(sortedSamples, 0.50) / 1_000_000.0,
+                percentile(sortedSamples, 0.99) / 1_000_000.0);
+    }
+
+    private static long percentile(long[] sortedSamples, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, index)];
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+}
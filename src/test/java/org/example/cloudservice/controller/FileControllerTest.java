@@ -3,8 +3,7 @@ package org.example.cloudservice.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
-import java.io.File;
-import java.security.Principal;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
@@ -12,7 +11,12 @@ import java.util.stream.Stream;
 import org.example.cloudservice.dto.ErrorResponseDto;
 import org.example.cloudservice.dto.FileDto;
 import org.example.cloudservice.dto.FilenameUpdateRequestDto;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.service.FileDownload;
 import org.example.cloudservice.service.FileService;
+import org.example.cloudservice.service.StreamingUploadService;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageObjectResource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,9 +26,11 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -34,16 +40,18 @@ class FileControllerTest {
     @Mock
     private FileService fileService;
 
+    @Mock
+    private StreamingUploadService streamingUploadService;
+
     @InjectMocks
     private FileController fileController;
 
-    // Use a simple Principal implementation.
-    private Principal principal;
+    // The principal set by AuthTokenFilter.
+    private AuthenticatedUser user;
 
     @BeforeEach
     void setUp() {
-        // Using lambda; getName returns "testUser"
-        principal = () -> "testUser";
+        user = new AuthenticatedUser(1, "testUser", Instant.now().plusSeconds(3600));
     }
 
     @Test
@@ -53,23 +61,54 @@ class FileControllerTest {
         MultipartFile file = mock(MultipartFile.class);
 
         // Act
-        ResponseEntity<Void> response = fileController.uploadFile("test.txt", file, "hash123", principal);
+        ResponseEntity<Void> response = fileController.uploadFile("test.txt", file, "hash123", user);
+
+        // Assert
+        verify(fileService, times(1)).uploadFile("test.txt", file, "hash123", user);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void uploadFileByHash_storedContent_returnsOk() {
+        when(fileService.uploadFileByHash("test.txt", "abc123", 42L, user)).thenReturn(true);
+
+        ResponseEntity<Void> response = fileController.uploadFileByHash("test.txt", "abc123", 42L, user);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void uploadFileByHash_unknownContent_returnsNotFound() {
+        when(fileService.uploadFileByHash("test.txt", "abc123", 42L, user)).thenReturn(false);
+
+        ResponseEntity<Void> response = fileController.uploadFileByHash("test.txt", "abc123", 42L, user);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void uploadFileStreaming_delegatesRequestAndReturnsOk() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/file/stream");
+
+        // Act
+        ResponseEntity<Void> response = fileController.uploadFileStreaming(request, user);
 
         // Assert
-        verify(fileService, times(1)).uploadFile("test.txt", file, "hash123", "testUser");
+        verify(streamingUploadService, times(1)).uploadFile(request, user);
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
     @Test
     void deleteFile_returnsOk() throws Exception {
         // Arrange
-        doNothing().when(fileService).deleteFile("test.txt", "testUser");
+        doNothing().when(fileService).deleteFile("test.txt", user);
 
         // Act
-        ResponseEntity<Void> response = fileController.deleteFile("test.txt", principal);
+        ResponseEntity<Void> response = fileController.deleteFile("test.txt", user);
 
         // Assert
-        verify(fileService, times(1)).deleteFile("test.txt", "testUser");
+        verify(fileService, times(1)).deleteFile("test.txt", user);
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
@@ -77,13 +116,13 @@ class FileControllerTest {
     void updateFilename_returnsOk() throws Exception {
         // Arrange
         FilenameUpdateRequestDto updateDto = new FilenameUpdateRequestDto("newName.txt");
-        doNothing().when(fileService).updateFilename("test.txt", updateDto, "testUser");
+        doNothing().when(fileService).updateFilename("test.txt", updateDto, user);
 
         // Act
-        ResponseEntity<ErrorResponseDto> response = fileController.updateFilename("test.txt", updateDto, principal);
+        ResponseEntity<ErrorResponseDto> response = fileController.updateFilename("test.txt", updateDto, user);
 
         // Assert
-        verify(fileService, times(1)).updateFilename("test.txt", updateDto, "testUser");
+        verify(fileService, times(1)).updateFilename("test.txt", updateDto, user);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNull(response.getBody(), "Success response should have null body");
     }
@@ -91,27 +130,105 @@ class FileControllerTest {
     @Test
     void getFile_returnsMultipartResponse() throws Exception {
         // Arrange
-        // Create a temporary file to simulate a file returned by fileService.getFile.
-        File dummyFile = File.createTempFile("dummy", ".txt");
+        // A storage-backed resource as returned by fileService.getFile.
+        StorageObjectResource fileResource = new StorageObjectResource(
+                mock(StorageAdapter.class), "unique_test.txt", "test.txt", 100L);
         String expectedHash = "hash123";
-        when(fileService.getFile("test.txt", "testUser")).thenReturn(dummyFile);
-        when(fileService.getFileHash("test.txt", "testUser")).thenReturn(expectedHash);
+        when(fileService.getFile("test.txt", user))
+                .thenReturn(new FileDownload("test.txt", expectedHash, fileResource));
 
         // Act
-        ResponseEntity<MultiValueMap<String, Object>> response = fileController.getFile("test.txt", principal);
+        ResponseEntity<?> response = fileController.getFile("test.txt", null, null, null, user);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        MultiValueMap<String, Object> body = response.getBody();
+        assertEquals("\"hash123\"", response.getHeaders().getETag());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        MultiValueMap<?, ?> body = (MultiValueMap<?, ?>) response.getBody();
         assertNotNull(body, "Response body should not be null");
         // Verify that body contains "hash" and "file"
         assertTrue(body.containsKey("hash"));
         assertEquals(expectedHash, body.getFirst("hash"));
         assertTrue(body.containsKey("file"));
-        Object fileResource = body.getFirst("file");
-        assertInstanceOf(FileSystemResource.class, fileResource);
-        FileSystemResource resource = (FileSystemResource) fileResource;
-        assertEquals(dummyFile.getAbsolutePath(), resource.getFile().getAbsolutePath());
+        // The storage resource is passed through so the body is streamed, not copied.
+        assertSame(fileResource, body.getFirst("file"));
+    }
+
+    @Test
+    void getFile_ifNoneMatchHit_returnsNotModified() throws Exception {
+        // Arrange
+        StorageAdapter storageAdapter = mock(StorageAdapter.class);
+        StorageObjectResource fileResource = new StorageObjectResource(
+                storageAdapter, "unique_test.txt", "test.txt", 100L);
+        when(fileService.getFile("test.txt", user))
+                .thenReturn(new FileDownload("test.txt", "hash123", fileResource));
+
+        // Act
+        ResponseEntity<?> response = fileController.getFile(
+                "test.txt", "\"other\", W/\"hash123\"", null, null, user);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"hash123\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void getFile_singleRange_returnsPartialContent() throws Exception {
+        // Arrange
+        StorageObjectResource fileResource = new StorageObjectResource(
+                mock(StorageAdapter.class), "unique_test.txt", "test.txt", 100L);
+        when(fileService.getFile("test.txt", user))
+                .thenReturn(new FileDownload("test.txt", "hash123", fileResource));
+
+        // Act
+        ResponseEntity<?> response = fileController.getFile(
+                "test.txt", null, "bytes=40-", "\"hash123\"", user);
+
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 40-99/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, response.getHeaders().getContentType());
+        assertEquals(60L, response.getHeaders().getContentLength());
+        StorageObjectResource range = (StorageObjectResource) response.getBody();
+        assertNotNull(range);
+        assertEquals(40L, range.getOffset());
+        assertEquals(60L, range.contentLength());
+    }
+
+    @Test
+    void getFile_staleIfRange_returnsFullFile() throws Exception {
+        // Arrange
+        StorageObjectResource fileResource = new StorageObjectResource(
+                mock(StorageAdapter.class), "unique_test.txt", "test.txt", 100L);
+        when(fileService.getFile("test.txt", user))
+                .thenReturn(new FileDownload("test.txt", "hash123", fileResource));
+
+        // Act
+        ResponseEntity<?> response = fileController.getFile(
+                "test.txt", null, "bytes=40-", "\"stale\"", user);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertInstanceOf(MultiValueMap.class, response.getBody());
+    }
+
+    @Test
+    void getFile_unsatisfiableRange_returnsRangeNotSatisfiable() throws Exception {
+        // Arrange
+        StorageObjectResource fileResource = new StorageObjectResource(
+                mock(StorageAdapter.class), "unique_test.txt", "test.txt", 100L);
+        when(fileService.getFile("test.txt", user))
+                .thenReturn(new FileDownload("test.txt", "hash123", fileResource));
+
+        // Act
+        ResponseEntity<?> response = fileController.getFile(
+                "test.txt", null, "bytes=100-", null, user);
+
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
     }
 
     @Test
@@ -121,13 +238,13 @@ class FileControllerTest {
                 new FileDto("file1.txt", 100L),
                 new FileDto("file2.txt", 200L)
         );
-        when(fileService.listFiles(10, "testUser")).thenReturn(fileDtos);
+        when(fileService.listFiles(10, user)).thenReturn(fileDtos);
 
         // Act
-        ResponseEntity<List<FileDto>> response = fileController.listFiles(10, principal);
+        ResponseEntity<List<FileDto>> response = fileController.listFiles(10, user);
 
         // Assert
-        verify(fileService, times(1)).listFiles(10, "testUser");
+        verify(fileService, times(1)).listFiles(10, user);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(fileDtos, response.getBody());
     }
@@ -144,13 +261,13 @@ class FileControllerTest {
     @MethodSource("provideFileListLimits")
     void listFiles_withDifferentLimits_returnsCorrectNumberOfFiles(int limit, List<FileDto> expectedFiles) {
         // Arrange
-        when(fileService.listFiles(limit, "testUser")).thenReturn(expectedFiles);
+        when(fileService.listFiles(limit, user)).thenReturn(expectedFiles);
 
         // Act
-        ResponseEntity<List<FileDto>> response = fileController.listFiles(limit, principal);
+        ResponseEntity<List<FileDto>> response = fileController.listFiles(limit, user);
 
         // Assert
-        verify(fileService, times(1)).listFiles(limit, "testUser");
+        verify(fileService, times(1)).listFiles(limit, user);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(expectedFiles, response.getBody());
         assertEquals(expectedFiles.size(), response.getBody().size());
@@ -0,0 +1,58 @@
+package org.example.cloudservice.infrastructure.minio;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class MinioClientConfigTest {
+
+    private MinioProperties properties;
+    private MinioClientConfig config;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MinioProperties();
+        properties.setEndpoint("http://localhost:9000");
+        properties.setAccessKey("minioadmin");
+        properties.setSecretKey("minioadmin");
+        properties.setBucket("test-bucket");
+        config = new MinioClientConfig(properties);
+    }
+
+    @Test
+    void minioHttpClient_appliesConfiguredLimitsAndTimeouts() {
+        properties.getHttp().setMaxRequests(40);
+        properties.getHttp().setMaxRequestsPerHost(20);
+        properties.getHttp().setConnectTimeout(Duration.ofSeconds(3));
+        properties.getHttp().setReadTimeout(Duration.ofSeconds(30));
+
+        OkHttpClient client = config.minioHttpClient();
+
+        assertThat(client.dispatcher().getMaxRequests()).isEqualTo(40);
+        assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(20);
+        assertThat(client.connectTimeoutMillis()).isEqualTo(3_000);
+        assertThat(client.readTimeoutMillis()).isEqualTo(30_000);
+
+        config.shutdownHttpClient();
+    }
+
+    @Test
+    void minioHttpClientMetrics_registersPoolGauges() {
+        OkHttpClient client = config.minioHttpClient();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        config.minioHttpClientMetrics(client).bindTo(registry);
+
+        assertThat(registry.get("minio.http.pool.connections").gauge().value()).isZero();
+        assertThat(registry.get("minio.http.pool.connections.idle").gauge()).isNotNull();
+        assertThat(registry.get("minio.http.requests.running").gauge().value()).isZero();
+        assertThat(registry.get("minio.http.requests.queued").gauge()).isNotNull();
+
+        config.shutdownHttpClient();
+    }
+}
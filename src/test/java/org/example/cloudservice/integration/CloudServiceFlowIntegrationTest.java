@@ -96,6 +96,7 @@ class CloudServiceFlowIntegrationTest extends AbstractIntegrationTest {
         assertThat(dlResp.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(dlResp.getHeaders().getContentType().toString())
                 .startsWith("multipart/form-data");
+        assertThat(dlResp.getBody()).contains("Hello from integration test!");
 
         // 4) DELETE
         ResponseEntity<Void> delResp = restTemplate.exchange(
@@ -22,6 +22,8 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
 
 @ExtendWith(MockitoExtension.class)
 class AuthTokenFilterTest {
@@ -87,9 +89,8 @@ class AuthTokenFilterTest {
 
     @Test
     void doFilterInternal_invalidToken_sendsUnauthorized() throws IOException {
-        String token = "Bearer abc";
-        when(request.getHeader("Auth-Token")).thenReturn(token);
-        when(tokenService.validateToken(token)).thenReturn(false);
+        when(request.getHeader("Auth-Token")).thenReturn("Bearer abc");
+        when(tokenService.authenticate("abc")).thenReturn(Optional.empty());
 
         filter.doFilterInternal(request, response, chain);
 
@@ -100,9 +101,8 @@ class AuthTokenFilterTest {
 
     @Test
     void doFilterInternal_exceptionDuringValidation_sendsUnauthorized() throws IOException {
-        String token = "Bearer xyz";
-        when(request.getHeader("Auth-Token")).thenReturn(token);
-        doThrow(new RuntimeException("boom")).when(tokenService).validateToken(token);
+        when(request.getHeader("Auth-Token")).thenReturn("Bearer xyz");
+        doThrow(new RuntimeException("boom")).when(tokenService).authenticate("xyz");
 
         filter.doFilterInternal(request, response, chain);
 
@@ -114,10 +114,9 @@ class AuthTokenFilterTest {
     @Test
     void doFilterInternal_validToken_setsAuthenticationAndContinues() throws IOException, ServletException {
         String token = "good token";
-        String user  = "john";
+        AuthenticatedUser user = new AuthenticatedUser(7, "john", Instant.now().plusSeconds(60));
         when(request.getHeader("Auth-Token")).thenReturn("Bearer " + token);
-        when(tokenService.validateToken(token)).thenReturn(true);
-        when(tokenService.getUsernameFromToken(token)).thenReturn(user);
+        when(tokenService.authenticate(token)).thenReturn(Optional.of(user));
 
         filter.doFilterInternal(request, response, chain);
 
@@ -130,6 +129,7 @@ class AuthTokenFilterTest {
                 .isInstanceOf(UsernamePasswordAuthenticationToken.class)
                 .satisfies(a -> {
                     assertThat(a.getPrincipal()).isEqualTo(user);
+                    assertThat(a.getName()).isEqualTo("john");
                     assertThat(a.getAuthorities()).extracting(GrantedAuthority::getAuthority)
                             .containsExactly("ROLE_USER");
                 });
@@ -0,0 +1,108 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.example.cloudservice.repository.BlobRepository;
+import org.example.cloudservice.repository.BlobRepository.BlobObject;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+class BlobServiceTest {
+
+    @Mock
+    private BlobRepository blobRepository;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @InjectMocks
+    private BlobService blobService;
+
+    @BeforeEach
+    void setUp() {
+        // Stand in for the transaction the service methods run in.
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void acquire_newContent_keepsUpload() {
+        when(blobRepository.acquire("digest", "upload_1", 3L, "DEFLATE")).thenReturn(blobObject("upload_1", "DEFLATE"));
+
+        BlobService.StoredBlob blob = blobService.acquire("digest", 3L, "upload_1", StorageCodec.DEFLATE);
+
+        assertEquals(new BlobService.StoredBlob("upload_1", StorageCodec.DEFLATE), blob);
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    @Test
+    void acquire_duplicateContent_deletesUploadAfterCommit() {
+        when(blobRepository.acquire("digest", "upload_2", 3L, "DEFLATE")).thenReturn(blobObject("upload_1", "NONE"));
+
+        BlobService.StoredBlob blob = blobService.acquire("digest", 3L, "upload_2", StorageCodec.DEFLATE);
+
+        // The existing blob keeps the codec it was stored with.
+        assertEquals(new BlobService.StoredBlob("upload_1", StorageCodec.NONE), blob);
+        verifyNoInteractions(storageAdapter);
+        commit();
+        verify(storageAdapter).deleteObject(null, "upload_2");
+    }
+
+    @Test
+    void release_lastReference_deletesBlobAfterCommit() {
+        when(blobRepository.release("digest")).thenReturn(Optional.of(0));
+        when(blobRepository.deleteIfUnreferenced("digest")).thenReturn(Optional.of("upload_1"));
+
+        blobService.release("digest");
+
+        verifyNoInteractions(storageAdapter);
+        commit();
+        verify(storageAdapter).deleteObject(null, "upload_1");
+    }
+
+    @Test
+    void release_remainingReferences_keepsBlob() {
+        when(blobRepository.release("digest")).thenReturn(Optional.of(1));
+
+        blobService.release("digest");
+
+        verify(blobRepository, never()).deleteIfUnreferenced("digest");
+        commit();
+        verifyNoInteractions(storageAdapter);
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static BlobObject blobObject(String objectName, String codec) {
+        return new BlobObject() {
+            @Override
+            public String getObjectName() {
+                return objectName;
+            }
+
+            @Override
+            public String getCodec() {
+                return codec;
+            }
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.example.cloudservice.dto.DirectDownloadDto;
+import org.example.cloudservice.dto.DirectUploadDto;
+import org.example.cloudservice.entity.DirectUploadEntity;
+import org.example.cloudservice.entity.UserEntity;
+import org.example.cloudservice.repository.DirectUploadRepository;
+import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.example.cloudservice.storage.StorageObjectStat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@ExtendWith(MockitoExtension.class)
+class DirectTransferServiceTest {
+
+    @Mock
+    private DirectUploadRepository directUploadRepository;
+
+    @Mock
+    private UserEntityRepository userEntityRepository;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private HashBackfillService hashBackfillService;
+
+    private DirectTransferService directTransferService;
+
+    private UserEntity testUser;
+    private AuthenticatedUser user;
+    private DirectUploadEntity testUpload;
+
+    @BeforeEach
+    void setUp() {
+        when(storageAdapter.supportsPresignedUrls()).thenReturn(true);
+        directTransferService = new DirectTransferService(directUploadRepository, userEntityRepository,
+                storageAdapter, fileService, hashBackfillService);
+        clearInvocations(storageAdapter);
+        directTransferService.setUrlTtl(Duration.ofMinutes(15));
+        directTransferService.setCompletionTimeout(Duration.ofHours(1));
+        directTransferService.setCleanupBatchSize(10);
+
+        testUser = new UserEntity();
+        testUser.setId(1);
+        testUser.setUsername("testUser");
+        user = new AuthenticatedUser(1, "testUser", Instant.now().plus(Duration.ofHours(1)));
+
+        testUpload = DirectUploadEntity.builder()
+                .id(UUID.randomUUID())
+                .user(testUser)
+                .filename("video.mp4")
+                .objectName("unique_video.mp4")
+                .sizeBytes(1024L)
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                .build();
+    }
+
+    @Test
+    void createUpload_presignsPutAndRecordsPendingUpload() {
+        when(storageAdapter.chooseBucket(endsWith("_video.mp4"))).thenReturn("shard-b");
+        when(storageAdapter.presignPutObject(eq("shard-b"), startsWith("direct-uploads/"), eq(Duration.ofMinutes(15))))
+                .thenReturn("https://minio/put-url");
+        when(userEntityRepository.getReferenceById(1)).thenReturn(testUser);
+        when(directUploadRepository.save(any(DirectUploadEntity.class))).thenAnswer(invocation -> {
+            DirectUploadEntity upload = invocation.getArgument(0);
+            upload.setId(testUpload.getId());
+            return upload;
+        });
+
+        DirectUploadDto result = directTransferService.createUpload("video.mp4", 1024L, user);
+
+        assertEquals(testUpload.getId().toString(), result.getId());
+        assertEquals("https://minio/put-url", result.getUrl());
+        ArgumentCaptor<DirectUploadEntity> saved = ArgumentCaptor.forClass(DirectUploadEntity.class);
+        verify(directUploadRepository).save(saved.capture());
+        assertEquals(1024L, saved.getValue().getSizeBytes());
+        assertSame(testUser, saved.getValue().getUser());
+        assertEquals("shard-b", saved.getValue().getShard());
+        // The pending upload outlives its URL, so a PUT that started in time can still be completed.
+        assertTrue(saved.getValue().getExpiresAt().isAfter(result.getExpiresAt()));
+        // The client only gets a URL for the staging object.
+        verify(storageAdapter).presignPutObject("shard-b", "direct-uploads/" + saved.getValue().getObjectName(),
+                Duration.ofMinutes(15));
+    }
+
+    @Test
+    void constructor_withoutHashBackfill_isRejected() {
+        assertThrows(IllegalStateException.class, () -> new DirectTransferService(
+                directUploadRepository, userEntityRepository, storageAdapter, fileService, null));
+    }
+
+    @Test
+    void constructor_withoutPresignedUrls_isRejected() {
+        when(storageAdapter.supportsPresignedUrls()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> new DirectTransferService(
+                directUploadRepository, userEntityRepository, storageAdapter, fileService, hashBackfillService));
+    }
+
+    @Test
+    void createUpload_tooLargeForSinglePut_isRejected() {
+        assertThrows(DirectTransferException.class, () ->
+                directTransferService.createUpload("huge.iso", DirectTransferService.MAX_SINGLE_PUT_SIZE + 1, user));
+
+        verifyNoInteractions(storageAdapter, directUploadRepository);
+    }
+
+    @Test
+    void completeUpload_matchingSize_copiesStagingObjectAndRecordsFile() throws FileNotFoundException {
+        testUpload.setShard("shard-b");
+        when(directUploadRepository.findForUpdateByIdAndUserId(testUpload.getId(), 1)).thenReturn(Optional.of(testUpload));
+        when(storageAdapter.copyObject("shard-b", "direct-uploads/unique_video.mp4", "unique_video.mp4")).thenReturn(true);
+        when(storageAdapter.statObject("shard-b", "unique_video.mp4"))
+                .thenReturn(Optional.of(new StorageObjectStat(1024L, null)));
+
+        directTransferService.completeUpload(testUpload.getId(), user);
+
+        verify(fileService).saveFileEntity("video.mp4", 1024L, null, "unique_video.mp4", "shard-b", user);
+        verify(fileService).deleteQuietly("shard-b", "direct-uploads/unique_video.mp4");
+        // The upload is kept until it expires, but cannot be completed again.
+        assertNotNull(testUpload.getCompletedAt());
+        verify(directUploadRepository).save(testUpload);
+        verify(storageAdapter, never()).getObject(any(), anyString());
+        assertThrows(FileNotFoundException.class,
+                () -> directTransferService.completeUpload(testUpload.getId(), user));
+    }
+
+    @Test
+    void completeUpload_sizeMismatch_discardsObjectsAndKeepsUploadForRetry() {
+        when(directUploadRepository.findForUpdateByIdAndUserId(testUpload.getId(), 1)).thenReturn(Optional.of(testUpload));
+        when(storageAdapter.copyObject(null, "direct-uploads/unique_video.mp4", "unique_video.mp4")).thenReturn(true);
+        when(storageAdapter.statObject(null, "unique_video.mp4")).thenReturn(Optional.of(new StorageObjectStat(10L, null)));
+
+        assertThrows(DirectTransferException.class,
+                () -> directTransferService.completeUpload(testUpload.getId(), user));
+
+        verify(fileService).deleteQuietly(null, "unique_video.mp4");
+        verify(fileService).deleteQuietly(null, "direct-uploads/unique_video.mp4");
+        assertNull(testUpload.getCompletedAt());
+        verify(fileService, never()).saveFileEntity(anyString(), anyLong(), any(), anyString(), any(), any(AuthenticatedUser.class));
+    }
+
+    @Test
+    void completeUpload_nothingUploaded_keepsUploadForRetry() {
+        when(directUploadRepository.findForUpdateByIdAndUserId(testUpload.getId(), 1)).thenReturn(Optional.of(testUpload));
+        when(storageAdapter.copyObject(null, "direct-uploads/unique_video.mp4", "unique_video.mp4")).thenReturn(false);
+
+        assertThrows(DirectTransferException.class,
+                () -> directTransferService.completeUpload(testUpload.getId(), user));
+
+        verify(directUploadRepository, never()).delete(any());
+        verify(directUploadRepository, never()).save(any());
+    }
+
+    @Test
+    void completeUpload_expired_throwsFileNotFound() {
+        testUpload.setExpiresAt(Instant.now().minusSeconds(1));
+        when(directUploadRepository.findForUpdateByIdAndUserId(testUpload.getId(), 1)).thenReturn(Optional.of(testUpload));
+
+        assertThrows(FileNotFoundException.class,
+                () -> directTransferService.completeUpload(testUpload.getId(), user));
+
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void createDownload_uncompressedFile_presignsGetWithFilename() throws FileNotFoundException {
+        StorageObjectResource resource = new StorageObjectResource(storageAdapter, "unique_video.mp4", "video.mp4", 1024L);
+        when(fileService.getFile("video.mp4", user)).thenReturn(new FileDownload("video.mp4", "abc", resource));
+        when(storageAdapter.presignGetObject(null, "unique_video.mp4", Duration.ofMinutes(15), "video.mp4"))
+                .thenReturn("https://minio/get-url");
+
+        DirectDownloadDto result = directTransferService.createDownload("video.mp4", user);
+
+        assertEquals("https://minio/get-url", result.getUrl());
+        assertEquals("abc", result.getHash());
+    }
+
+    @Test
+    void createDownload_compressedFile_isRejected() throws FileNotFoundException {
+        StorageObjectResource resource = new StorageObjectResource(storageAdapter, "unique_notes.txt", "notes.txt",
+                StorageCodec.DEFLATE, 2048L);
+        when(fileService.getFile("notes.txt", user)).thenReturn(new FileDownload("notes.txt", "def", resource));
+
+        assertThrows(DirectTransferException.class, () -> directTransferService.createDownload("notes.txt", user));
+
+        verify(storageAdapter, never()).presignGetObject(any(), anyString(), any(), any());
+    }
+
+    @Test
+    void createDownload_packedFile_isRejected() throws FileNotFoundException {
+        StorageObjectResource resource = new StorageObjectResource(storageAdapter, "segments/abc", "small.txt",
+                StorageCodec.NONE, 10L, 4096L, 10L);
+        when(fileService.getFile("small.txt", user)).thenReturn(new FileDownload("small.txt", "ghi", resource));
+
+        assertThrows(DirectTransferException.class, () -> directTransferService.createDownload("small.txt", user));
+
+        verify(storageAdapter, never()).presignGetObject(any(), anyString(), any(), any());
+    }
+
+    @Test
+    void removeExpiredUploads_deletesObjectsOnTheirShardsThenRows() {
+        DirectUploadEntity completed = DirectUploadEntity.builder()
+                .id(UUID.randomUUID())
+                .user(testUser)
+                .filename("done.mp4")
+                .objectName("unique_done.mp4")
+                .shard("shard-b")
+                .sizeBytes(10L)
+                .expiresAt(Instant.now().minusSeconds(1))
+                .completedAt(Instant.now().minus(Duration.ofHours(1)))
+                .build();
+        when(directUploadRepository.findByExpiresAtBefore(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(testUpload, completed));
+
+        directTransferService.removeExpiredUploads();
+
+        // The object of a completed upload belongs to its file and is kept.
+        verify(storageAdapter).deleteObjects(null, List.of("direct-uploads/unique_video.mp4", "unique_video.mp4"));
+        verify(storageAdapter).deleteObjects("shard-b", List.of("direct-uploads/unique_done.mp4"));
+        verify(directUploadRepository).deleteAllInBatch(List.of(testUpload, completed));
+    }
+
+    @Test
+    void removeExpiredUploads_storageFailure_keepsRowsForNextRun() {
+        when(directUploadRepository.findByExpiresAtBefore(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(testUpload));
+        doThrow(new StorageException("unavailable")).when(storageAdapter).deleteObjects(eq(null), anyList());
+
+        directTransferService.removeExpiredUploads();
+
+        verify(directUploadRepository, never()).deleteAllInBatch(any());
+    }
+}
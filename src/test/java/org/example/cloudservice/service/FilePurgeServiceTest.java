@@ -0,0 +1,132 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.cloudservice.repository.FileEntityRepository;
+import org.example.cloudservice.repository.FileEntityRepository.PurgeCandidate;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class FilePurgeServiceTest {
+
+    @Mock
+    private FileEntityRepository fileEntityRepository;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FilePurgeService filePurgeService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filePurgeService = new FilePurgeService(fileEntityRepository, storageAdapter, transactionManager, meterRegistry);
+        filePurgeService.setRetention(Duration.ofDays(30));
+        filePurgeService.setBatchSize(2);
+        filePurgeService.setBatchPause(Duration.ZERO);
+        filePurgeService.setMaxBatchesPerRun(10);
+    }
+
+    @Test
+    void purge_deletesObjectsAndRowsInBatchesUntilNoneLeft() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new Candidate(1, "object_1", null, null, null), new Candidate(2, "object_2", null, null, null)))
+                .thenReturn(List.of(new Candidate(3, "object_3", null, null, null)));
+
+        filePurgeService.purge();
+
+        verify(storageAdapter).deleteObjects(null, List.of("object_1", "object_2"));
+        verify(storageAdapter).deleteObjects(null, List.of("object_3"));
+        verify(fileEntityRepository).deleteAllByIdInBatch(List.of(1, 2));
+        verify(fileEntityRepository).deleteAllByIdInBatch(List.of(3));
+        // The short second batch shows nothing is left, so no third query is made.
+        verify(fileEntityRepository, times(2)).lockPurgeCandidates(any(Instant.class), eq(2));
+        assertEquals(3.0, meterRegistry.counter("files.purged").count());
+    }
+
+    @Test
+    void purge_usesRetentionForCutoff() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2))).thenReturn(List.of());
+        Instant before = Instant.now().minus(Duration.ofDays(30));
+
+        filePurgeService.purge();
+
+        verify(fileEntityRepository).lockPurgeCandidates(argThat(cutoff -> !cutoff.isBefore(before)
+                && !cutoff.isAfter(Instant.now().minus(Duration.ofDays(30)))), eq(2));
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void purgeBatch_packedFile_deletesRowButNotSegment() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new Candidate(1, "object_1", null, null, null), new Candidate(2, "segments/abc", null, 7L, null)));
+
+        int purged = filePurgeService.purgeBatch(Instant.now());
+
+        assertEquals(2, purged);
+        verify(storageAdapter).deleteObjects(null, List.of("object_1"));
+        verify(fileEntityRepository).deleteAllByIdInBatch(List.of(1, 2));
+    }
+
+    @Test
+    void purgeBatch_sharedBlob_deletesRowButNotObject() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new Candidate(1, "object_1", null, null, null), new Candidate(2, "blob_object", "digest", null, null)));
+
+        int purged = filePurgeService.purgeBatch(Instant.now());
+
+        assertEquals(2, purged);
+        verify(storageAdapter).deleteObjects(null, List.of("object_1"));
+        verify(fileEntityRepository).deleteAllByIdInBatch(List.of(1, 2));
+    }
+
+    @Test
+    void purgeBatch_shardedFiles_deletesFromEachShard() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new Candidate(1, "object_1", null, null, null), new Candidate(2, "object_2", null, null, "eu-2")));
+
+        int purged = filePurgeService.purgeBatch(Instant.now());
+
+        assertEquals(2, purged);
+        verify(storageAdapter).deleteObjects(null, List.of("object_1"));
+        verify(storageAdapter).deleteObjects("eu-2", List.of("object_2"));
+        verify(fileEntityRepository).deleteAllByIdInBatch(List.of(1, 2));
+    }
+
+    @Test
+    void purge_storageFailure_keepsRowsAndStops() {
+        when(fileEntityRepository.lockPurgeCandidates(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new Candidate(1, "object_1", null, null, null), new Candidate(2, "object_2", null, null, null)));
+        doThrow(new StorageException("Could not delete 1 of 2 objects from MinIO"))
+                .when(storageAdapter).deleteObjects(isNull(), anyList());
+
+        filePurgeService.purge();
+
+        verify(fileEntityRepository, never()).deleteAllByIdInBatch(anyList());
+        verify(transactionManager).rollback(any());
+        verify(fileEntityRepository, times(1)).lockPurgeCandidates(any(Instant.class), eq(2));
+    }
+
+    private record Candidate(Integer getId, String getS3Link, String getBlobDigest, Long getSegmentId,
+                             String getShard)
+            implements PurgeCandidate {
+    }
+}
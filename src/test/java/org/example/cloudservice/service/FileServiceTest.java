@@ -10,23 +10,36 @@ import org.example.cloudservice.entity.FileEntity;
 import org.example.cloudservice.entity.UserEntity;
 import org.example.cloudservice.repository.FileEntityRepository;
 import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.ContentCompressor;
 import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageCodec;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StorageObjectResource;
+import org.example.cloudservice.storage.StorageProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.Optional;
 import java.util.List;
 
@@ -42,20 +55,31 @@ class FileServiceTest {
     @Mock
     private StorageAdapter storageAdapter;
 
+    @Mock
+    private BlobService blobService;
+
     @Mock
     private MultipartFile multipartFile;
 
+    private final StorageProperties storageProperties = new StorageProperties();
+
+    @Spy
+    private ContentCompressor contentCompressor = new ContentCompressor(storageProperties);
+
     @InjectMocks
     private FileService fileService;
 
     private UserEntity testUser;
+    private AuthenticatedUser user;
     private FileEntity testFileEntity;
 
     @BeforeEach
     void setUp() {
         // Set up a test user entity
         testUser = new UserEntity();
+        testUser.setId(1);
         testUser.setUsername("testUser");
+        user = new AuthenticatedUser(1, "testUser", Instant.now().plusSeconds(3600));
 
         // Prepare a file entity as if it was previously saved.
         // In tests for uploadFile this entity is created later.
@@ -75,7 +99,7 @@ class FileServiceTest {
         when(multipartFile.isEmpty()).thenReturn(true);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> fileService.uploadFile("test.txt", multipartFile, "hash123", "testUser")
+                () -> fileService.uploadFile("test.txt", multipartFile, "hash123", user)
         );
 
         assertEquals("File is empty.", exception.getMessage());
@@ -90,15 +114,18 @@ class FileServiceTest {
         when(multipartFile.getSize()).thenReturn((long) fileContent.length);
         when(multipartFile.getContentType()).thenReturn("text/plain");
 
-        when(userEntityRepository.findByUsername("testUser"))
-                .thenReturn(Optional.of(testUser));
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq((long) fileContent.length),
+                        eq("text/plain"));
+        // SHA-256 of "sample content".
+        String digest = "571ca3b4ef92a81f8c062f2c2437b9116435d1575589a7b64a5c607d058fde0d";
 
         // Call uploadFile.
-        fileService.uploadFile("test.txt", multipartFile, "hash123", "testUser");
+        fileService.uploadFile("test.txt", multipartFile, digest, user);
 
         // Verify that storage adapter is invoked with a unique filename.
         verify(storageAdapter, times(1))
-                .uploadObject(anyString(), any(InputStream.class), eq((long) fileContent.length), eq("text/plain"));
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq((long) fileContent.length), eq("text/plain"));
 
         // Capture the file entity saved in the repository.
         ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
@@ -107,20 +134,247 @@ class FileServiceTest {
         FileEntity savedEntity = fileEntityCaptor.getValue();
         assertEquals("test.txt", savedEntity.getFilename());
         assertEquals(fileContent.length, savedEntity.getFilesizeBytes());
-        assertEquals("hash123", savedEntity.getHash());
+        assertEquals(digest, savedEntity.getHash());
         assertFalse(savedEntity.getDeleted());
         assertNotNull(savedEntity.getS3Link());
     }
 
+    @Test
+    void uploadFile_stream_uploadsUnknownSizeAndSavesCountedSize() {
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+        byte[] fileContent = "streamed content".getBytes();
+        // Storage consumes the stream as MinIO would.
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+
+        // SHA-256 of "streamed content", in upper case as some clients send it.
+        String digest = "D9F93D83F082633FEAC23F4E3D5DEA332CA698BA7B00DD6EF8A9E93BAE65AA6B";
+
+        fileService.uploadFile("test.txt", new ByteArrayInputStream(fileContent), "text/plain", digest, user);
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        assertEquals(fileContent.length, fileEntityCaptor.getValue().getFilesizeBytes());
+        assertEquals(digest.toLowerCase(), fileEntityCaptor.getValue().getHash());
+    }
+
+    @Test
+    void uploadFile_hashMismatch_deletesObjectAndThrows() {
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+
+        assertThrows(HashMismatchException.class, () -> fileService.uploadFile("test.txt",
+                new ByteArrayInputStream("streamed content".getBytes()), "text/plain", "hash123", user));
+
+        verify(storageAdapter).deleteObject(isNull(), anyString());
+        verifyNoInteractions(fileEntityRepository, blobService);
+    }
+
+    @Test
+    void uploadFile_sharded_storesOnChosenShardAndRecordsIt() {
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+        when(storageAdapter.chooseBucket(anyString())).thenReturn("second");
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(eq("second"), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+
+        fileService.uploadFile("test.txt", new ByteArrayInputStream("streamed content".getBytes()), "text/plain",
+                null, user);
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        assertEquals("second", fileEntityCaptor.getValue().getShard());
+        verify(storageAdapter).chooseBucket(fileEntityCaptor.getValue().getS3Link());
+    }
+
+    @Test
+    void uploadFile_dedupEnabled_referencesBlobByServerDigest() {
+        fileService.setDedupEnabled(true);
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+        byte[] fileContent = "abc".getBytes();
+        // SHA-256 of "abc".
+        String digest = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+        when(blobService.acquire(eq(digest), eq(3L), anyString(), eq(StorageCodec.NONE)))
+                .thenReturn(new BlobService.StoredBlob("existing_blob", StorageCodec.NONE));
+
+        fileService.uploadFile("test.txt", new ByteArrayInputStream(fileContent), "text/plain", null, user);
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        assertEquals("existing_blob", fileEntityCaptor.getValue().getS3Link());
+        assertEquals(digest, fileEntityCaptor.getValue().getBlobDigest());
+        // Without a client hash, the computed one is still persisted.
+        assertEquals(digest, fileEntityCaptor.getValue().getHash());
+    }
+
+    @Test
+    void uploadFile_referencesUserByIdWithoutLookup() {
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+        when(userEntityRepository.getReferenceById(1)).thenReturn(testUser);
+
+        fileService.uploadFile("test.txt", new ByteArrayInputStream("content".getBytes()), "text/plain", null, user);
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        assertSame(testUser, fileEntityCaptor.getValue().getUser());
+        verify(userEntityRepository, never()).findByUsername(anyString());
+    }
+
+    @Test
+    void uploadFileByHash_storedBlob_createsFileWithoutTransfer() {
+        fileService.setDedupEnabled(true);
+        String digest = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        when(fileEntityRepository.existsByUserIdAndBlobDigestAndDeletedFalse(1, digest)).thenReturn(true);
+        when(blobService.reference(digest, 3L))
+                .thenReturn(Optional.of(new BlobService.StoredBlob("existing_blob", StorageCodec.DEFLATE)));
+
+        assertTrue(fileService.uploadFileByHash("copy.txt", digest.toUpperCase(), 3L, user));
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        assertEquals("copy.txt", fileEntityCaptor.getValue().getFilename());
+        assertEquals("existing_blob", fileEntityCaptor.getValue().getS3Link());
+        assertEquals(digest, fileEntityCaptor.getValue().getHash());
+        assertEquals(digest, fileEntityCaptor.getValue().getBlobDigest());
+        assertEquals(3L, fileEntityCaptor.getValue().getFilesizeBytes());
+        assertEquals(StorageCodec.DEFLATE, fileEntityCaptor.getValue().getCodec());
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void uploadFileByHash_unknownContent_returnsFalse() {
+        fileService.setDedupEnabled(true);
+        when(fileEntityRepository.existsByUserIdAndBlobDigestAndDeletedFalse(1, "abc")).thenReturn(true);
+        when(blobService.reference("abc", 3L)).thenReturn(Optional.empty());
+
+        assertFalse(fileService.uploadFileByHash("copy.txt", "abc", 3L, user));
+        verify(fileEntityRepository, never()).save(any(FileEntity.class));
+    }
+
+    @Test
+    void uploadFileByHash_contentOfOtherUser_returnsFalseWithoutReferencingIt() {
+        fileService.setDedupEnabled(true);
+        when(fileEntityRepository.existsByUserIdAndBlobDigestAndDeletedFalse(1, "abc")).thenReturn(false);
+
+        assertFalse(fileService.uploadFileByHash("copy.txt", "abc", 3L, user));
+        verifyNoInteractions(blobService);
+        verify(fileEntityRepository, never()).save(any(FileEntity.class));
+    }
+
+    @Test
+    void uploadFileByHash_dedupDisabled_returnsFalse() {
+        assertFalse(fileService.uploadFileByHash("copy.txt", "abc", 3L, user));
+        verifyNoInteractions(blobService, fileEntityRepository);
+    }
+
+    @Test
+    void uploadFile_compressibleContent_storesCompressedAndRecordsCodec() throws Exception {
+        storageProperties.getCompression().setEnabled(true);
+        fileService = new FileService(fileEntityRepository, userEntityRepository, storageAdapter, blobService,
+                new ContentCompressor(storageProperties), null);
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(64));
+        byte[] fileContent = "line of a log file\n".repeat(200).getBytes();
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(2).transferTo(stored);
+            return null;
+        }).when(storageAdapter).uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), eq("text/plain"));
+
+        fileService.uploadFile("app.log", new ByteArrayInputStream(fileContent), "text/plain", null, user);
+
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository, times(1)).save(fileEntityCaptor.capture());
+        FileEntity savedEntity = fileEntityCaptor.getValue();
+        assertEquals(StorageCodec.DEFLATE, savedEntity.getCodec());
+        // Size and hash describe the original content, not the stored bytes.
+        assertEquals(fileContent.length, savedEntity.getFilesizeBytes());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(fileContent)),
+                savedEntity.getHash());
+        assertTrue(stored.size() < fileContent.length / 5);
+        assertArrayEquals(fileContent,
+                StorageCodec.DEFLATE.decode(new ByteArrayInputStream(stored.toByteArray())).readAllBytes());
+    }
+
+    @Test
+    void uploadFile_smallFileWithPacking_appendsToSegmentAndRecordsPosition() throws Exception {
+        SegmentWriter segmentWriter = mock(SegmentWriter.class);
+        fileService = new FileService(fileEntityRepository, userEntityRepository, storageAdapter, blobService,
+                contentCompressor, segmentWriter);
+        byte[] fileContent = "sample content".getBytes();
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(fileContent));
+        when(multipartFile.getSize()).thenReturn((long) fileContent.length);
+        when(multipartFile.getContentType()).thenReturn("text/plain");
+        when(segmentWriter.accepts(fileContent.length)).thenReturn(true);
+        when(segmentWriter.append(fileContent))
+                .thenReturn(new SegmentWriter.PackedEntry(7L, "segments/abc", 4096L, fileContent.length));
+
+        fileService.uploadFile("small.txt", multipartFile, null, user);
+
+        verify(storageAdapter, never()).uploadObject(any(), anyString(), any(InputStream.class), anyLong(), any());
+        ArgumentCaptor<FileEntity> fileEntityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        verify(fileEntityRepository).save(fileEntityCaptor.capture());
+        FileEntity savedEntity = fileEntityCaptor.getValue();
+        assertEquals("segments/abc", savedEntity.getS3Link());
+        assertEquals(7L, savedEntity.getSegmentId());
+        assertEquals(4096L, savedEntity.getSegmentOffset());
+        assertEquals((long) fileContent.length, savedEntity.getSegmentLength());
+        assertEquals("571ca3b4ef92a81f8c062f2c2437b9116435d1575589a7b64a5c607d058fde0d", savedEntity.getHash());
+    }
+
+    @Test
+    void uploadFile_packingHashMismatch_appendsNothing() throws Exception {
+        SegmentWriter segmentWriter = mock(SegmentWriter.class);
+        fileService = new FileService(fileEntityRepository, userEntityRepository, storageAdapter, blobService,
+                contentCompressor, segmentWriter);
+        byte[] fileContent = "sample content".getBytes();
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(fileContent));
+        when(multipartFile.getSize()).thenReturn((long) fileContent.length);
+        when(segmentWriter.accepts(fileContent.length)).thenReturn(true);
+
+        assertThrows(HashMismatchException.class,
+                () -> fileService.uploadFile("small.txt", multipartFile, "deadbeef", user));
+
+        verify(segmentWriter, never()).append(any());
+        verifyNoInteractions(fileEntityRepository);
+    }
+
+    @Test
+    void uploadFile_emptyStream_throwsIllegalArgumentException() {
+        fileService.setMaxStreamingFileSize(DataSize.ofKilobytes(1));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> fileService.uploadFile("test.txt", new ByteArrayInputStream(new byte[0]), "text/plain", null, user)
+        );
+
+        assertEquals("File is empty.", exception.getMessage());
+        verifyNoInteractions(storageAdapter, fileEntityRepository);
+    }
+
+    @Test
+    void uploadFile_streamOverLimit_throwsMaxUploadSizeExceededException() {
+        fileService.setMaxStreamingFileSize(DataSize.ofBytes(4));
+        doAnswer(FileServiceTest::consumeStream).when(storageAdapter)
+                .uploadObject(isNull(), anyString(), any(InputStream.class), eq(-1L), any());
+
+        assertThrows(MaxUploadSizeExceededException.class,
+                () -> fileService.uploadFile("test.txt", new ByteArrayInputStream(new byte[16]), null, null, user));
+        verifyNoInteractions(fileEntityRepository);
+    }
+
     @Test
     void deleteFile_fileExists_marksDeleted() throws Exception {
         // Prepare repository responses.
-        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(fileEntityRepository.findByUserAndFilenameAndDeletedFalse(testUser, "test.txt"))
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
                 .thenReturn(List.of(testFileEntity));
 
         // Invoke deletion.
-        fileService.deleteFile("test.txt", "testUser");
+        fileService.deleteFile("test.txt", user);
 
         // Verify that the file entity is marked as deleted.
         assertTrue(testFileEntity.getDeleted());
@@ -128,17 +382,28 @@ class FileServiceTest {
         verify(fileEntityRepository, times(1)).save(testFileEntity);
     }
 
+    @Test
+    void deleteFile_sharedBlob_releasesReference() throws Exception {
+        testFileEntity.setBlobDigest("digest123");
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
+                .thenReturn(List.of(testFileEntity));
+
+        fileService.deleteFile("test.txt", user);
+
+        assertTrue(testFileEntity.getDeleted());
+        verify(blobService, times(1)).release("digest123");
+    }
+
     @Test
     void updateFilename_fileExists_updatesFilename() throws Exception {
         // Prepare mocks for an existing file.
-        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(fileEntityRepository.findByUserAndFilenameAndDeletedFalse(testUser, "test.txt"))
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
                 .thenReturn(List.of(testFileEntity));
 
         FilenameUpdateRequestDto updateDto = new FilenameUpdateRequestDto("newName.txt");
 
         // Execute updateFilename.
-        fileService.updateFilename("test.txt", updateDto, "testUser");
+        fileService.updateFilename("test.txt", updateDto, user);
 
         // Verify the update.
         assertEquals("newName.txt", testFileEntity.getFilename());
@@ -146,31 +411,94 @@ class FileServiceTest {
     }
 
     @Test
-    void getFile_fileExists_returnsFile() throws Exception {
+    void getFile_fileExists_streamsContentFromStorage() throws Exception {
         // Simulate downloading file content via the storage adapter.
         byte[] fileContent = "download content".getBytes();
-        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(fileEntityRepository.findByUserAndFilenameAndDeletedFalse(testUser, "test.txt"))
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
                 .thenReturn(List.of(testFileEntity));
-        when(storageAdapter.getObject("unique_test.txt"))
-                .thenReturn(new ByteArrayInputStream(fileContent));
 
         // Call getFile.
-        File downloadedFile = fileService.getFile("test.txt", "testUser");
+        FileDownload download = fileService.getFile("test.txt", user);
+        Resource resource = download.resource();
+        assertEquals(testFileEntity.getHash(), download.hash());
+
+        // Nothing is fetched from storage until the resource is read.
+        verify(storageAdapter, never()).getObject(any(), anyString());
+        assertEquals("test.txt", resource.getFilename());
+        assertEquals(100L, resource.contentLength());
+
+        when(storageAdapter.getObject(null, "unique_test.txt"))
+                .thenReturn(new ByteArrayInputStream(fileContent));
+        try (InputStream inputStream = resource.getInputStream()) {
+            assertArrayEquals(fileContent, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void getFile_range_fetchesOnlyRequestedBytes() throws Exception {
+        byte[] rangeContent = "load".getBytes();
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
+                .thenReturn(List.of(testFileEntity));
+        when(storageAdapter.getObject(null, "unique_test.txt", 4L, 4L))
+                .thenReturn(new ByteArrayInputStream(rangeContent));
 
-        // Verify file creation and that the content matches.
-        assertNotNull(downloadedFile);
-        byte[] downloadedContent = Files.readAllBytes(downloadedFile.toPath());
-        assertArrayEquals(fileContent, downloadedContent);
+        Resource range = fileService.getFile("test.txt", user).resource().range(4, 4);
+
+        assertEquals(4L, range.contentLength());
+        try (InputStream inputStream = range.getInputStream()) {
+            assertArrayEquals(rangeContent, inputStream.readAllBytes());
+        }
+        verify(storageAdapter, never()).getObject(any(), anyString());
+    }
+
+    @Test
+    void getFile_compressedRange_decodesAndSkipsToOffset() throws Exception {
+        byte[] content = "0123456789".getBytes();
+        testFileEntity.setCodec(StorageCodec.DEFLATE);
+        testFileEntity.setFilesizeBytes((long) content.length);
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
+                .thenReturn(List.of(testFileEntity));
+        when(storageAdapter.getObject(null, "unique_test.txt"))
+                .thenReturn(StorageCodec.DEFLATE.encode(new ByteArrayInputStream(content), 6));
+
+        Resource range = fileService.getFile("test.txt", user).resource().range(4, 3);
+
+        try (InputStream inputStream = range.getInputStream()) {
+            assertArrayEquals("456".getBytes(), inputStream.readAllBytes());
+        }
+        // Offsets in compressed objects cannot be requested from storage.
+        verify(storageAdapter, never()).getObject(any(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getFile_packedFile_readsOnlyItsSliceOfTheSegment() throws Exception {
+        testFileEntity.setS3Link("segments/abc");
+        testFileEntity.setFilesizeBytes(5L);
+        testFileEntity.setSegmentId(7L);
+        testFileEntity.setSegmentOffset(4096L);
+        testFileEntity.setSegmentLength(5L);
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
+                .thenReturn(List.of(testFileEntity));
+        when(storageAdapter.getObject(null, "segments/abc", 4096L, 5L)).thenReturn(new ByteArrayInputStream("hello".getBytes()));
+        when(storageAdapter.getObject(null, "segments/abc", 4097L, 3L)).thenReturn(new ByteArrayInputStream("ell".getBytes()));
+
+        StorageObjectResource resource = fileService.getFile("test.txt", user).resource();
+
+        try (InputStream inputStream = resource.getInputStream()) {
+            assertArrayEquals("hello".getBytes(), inputStream.readAllBytes());
+        }
+        try (InputStream inputStream = resource.range(1, 3).getInputStream()) {
+            assertArrayEquals("ell".getBytes(), inputStream.readAllBytes());
+        }
+        verify(storageAdapter, never()).getObject(null, "segments/abc");
     }
 
     @Test
     void getFileHash_fileExists_returnsHash() throws Exception {
-        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(fileEntityRepository.findByUserAndFilenameAndDeletedFalse(testUser, "test.txt"))
+        when(fileEntityRepository.findByUserIdAndFilenameAndDeletedFalse(1, "test.txt"))
                 .thenReturn(List.of(testFileEntity));
 
-        String hash = fileService.getFileHash("test.txt", "testUser");
+        String hash = fileService.getFileHash("test.txt", user);
         assertEquals("hash123", hash);
     }
 
@@ -192,12 +520,11 @@ class FileServiceTest {
                 .createdAt(Instant.now())
                 .build();
 
-        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
         // Simulate a paged repository result.
-        when(fileEntityRepository.findAllByUserAndDeletedFalse(eq(testUser), any(PageRequest.class)))
+        when(fileEntityRepository.findAllByUserIdAndDeletedFalse(eq(1), any(PageRequest.class)))
                 .thenReturn(Arrays.asList(file1, file2));
 
-        List<FileDto> dtos = fileService.listFiles(10, "testUser");
+        List<FileDto> dtos = fileService.listFiles(10, user);
 
         assertEquals(2, dtos.size());
         assertEquals("file1.txt", dtos.get(0).getFilename());
@@ -205,4 +532,15 @@ class FileServiceTest {
         assertEquals("file2.txt", dtos.get(1).getFilename());
         assertEquals(456L, dtos.get(1).getSize());
     }
+
+    /** Reads the upload stream to the end, as storage would. */
+    private static Void consumeStream(InvocationOnMock invocation) {
+        InputStream inputStream = invocation.getArgument(2);
+        try {
+            inputStream.readAllBytes();
+            return null;
+        } catch (IOException e) {
+            throw new StorageException("Error uploading file to MinIO", e);
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.cloudservice.service.HashBackfillService.PendingFile;
+import org.example.cloudservice.storage.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class HashBackfillServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private FileService fileService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HashBackfillService hashBackfillService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hashBackfillService = new HashBackfillService(jdbcTemplate, fileService, meterRegistry);
+        hashBackfillService.setPageSize(2);
+        hashBackfillService.setParallelism(2);
+        hashBackfillService.setPagePause(Duration.ZERO);
+    }
+
+    @Test
+    void run_resumesFromCheckpointAndWritesHashesInBatches() {
+        when(jdbcTemplate.queryForList(HashBackfillService.SELECT_CHECKPOINT, Integer.class, HashBackfillService.JOB_NAME))
+                .thenReturn(List.of(10));
+        when(jdbcTemplate.queryForObject(HashBackfillService.COUNT_PENDING, Long.class, 10)).thenReturn(3L);
+        when(jdbcTemplate.query(eq(HashBackfillService.SELECT_PAGE), ArgumentMatchers.<RowMapper<PendingFile>>any(), eq(10), eq(2)))
+                .thenReturn(List.of(new PendingFile(11, "object_11", null), new PendingFile(12, "object_12", null)));
+        when(jdbcTemplate.query(eq(HashBackfillService.SELECT_PAGE), ArgumentMatchers.<RowMapper<PendingFile>>any(), eq(12), eq(2)))
+                .thenReturn(List.of(new PendingFile(15, "object_15", null)));
+        when(fileService.hashObject(null, "object_11")).thenReturn("digest_11");
+        when(fileService.hashObject(null, "object_12")).thenReturn("digest_12");
+        when(fileService.hashObject(null, "object_15")).thenReturn("digest_15");
+
+        hashBackfillService.run();
+
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.captor();
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(HashBackfillService.UPDATE_HASH), batches.capture());
+        assertArrayEquals(new Object[]{"digest_11", 11}, batches.getAllValues().get(0).get(0));
+        assertArrayEquals(new Object[]{"digest_12", 12}, batches.getAllValues().get(0).get(1));
+        assertArrayEquals(new Object[]{"digest_15", 15}, batches.getAllValues().get(1).get(0));
+        verify(jdbcTemplate).update(HashBackfillService.SAVE_CHECKPOINT, HashBackfillService.JOB_NAME, 12);
+        // The short page ends the pass, so the checkpoint is reset for the next one.
+        verify(jdbcTemplate).update(HashBackfillService.SAVE_CHECKPOINT, HashBackfillService.JOB_NAME, 0);
+        assertEquals(3.0, meterRegistry.counter("files.hash.backfill", "result", "success").count());
+    }
+
+    @Test
+    void run_unreadableObject_isSkippedAndRetriedByNextPass() {
+        when(jdbcTemplate.queryForList(HashBackfillService.SELECT_CHECKPOINT, Integer.class, HashBackfillService.JOB_NAME))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(HashBackfillService.COUNT_PENDING, Long.class, 0)).thenReturn(1L);
+        when(jdbcTemplate.query(eq(HashBackfillService.SELECT_PAGE), ArgumentMatchers.<RowMapper<PendingFile>>any(), eq(0), eq(2)))
+                .thenReturn(List.of(new PendingFile(1, "missing", null)));
+        when(fileService.hashObject(null, "missing")).thenThrow(new StorageException("Object 'missing' does not exist"));
+
+        hashBackfillService.run();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), ArgumentMatchers.<List<Object[]>>any());
+        verify(jdbcTemplate).update(HashBackfillService.SAVE_CHECKPOINT, HashBackfillService.JOB_NAME, 0);
+        verify(jdbcTemplate, never()).update(HashBackfillService.SAVE_CHECKPOINT, HashBackfillService.JOB_NAME, 1);
+        assertEquals(1.0, meterRegistry.counter("files.hash.backfill", "result", "failure").count());
+    }
+
+    @Test
+    void run_nothingPendingAfterCheckpoint_startsOverFromTheBeginning() {
+        when(jdbcTemplate.queryForList(HashBackfillService.SELECT_CHECKPOINT, Integer.class, HashBackfillService.JOB_NAME))
+                .thenReturn(List.of(42));
+        when(jdbcTemplate.queryForObject(HashBackfillService.COUNT_PENDING, Long.class, 42)).thenReturn(0L);
+        when(jdbcTemplate.queryForObject(HashBackfillService.COUNT_PENDING, Long.class, 0)).thenReturn(1L);
+        when(jdbcTemplate.query(eq(HashBackfillService.SELECT_PAGE), ArgumentMatchers.<RowMapper<PendingFile>>any(), eq(0), eq(2)))
+                .thenReturn(List.of(new PendingFile(7, "object_7", null)));
+        when(fileService.hashObject(null, "object_7")).thenReturn("digest_7");
+
+        hashBackfillService.run();
+
+        verify(jdbcTemplate).batchUpdate(eq(HashBackfillService.UPDATE_HASH), ArgumentMatchers.<List<Object[]>>any());
+        assertEquals(1.0, meterRegistry.counter("files.hash.backfill", "result", "success").count());
+    }
+
+    @Test
+    void run_nothingPending_doesNothing() {
+        when(jdbcTemplate.queryForList(HashBackfillService.SELECT_CHECKPOINT, Integer.class, HashBackfillService.JOB_NAME))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(HashBackfillService.COUNT_PENDING, Long.class, 0)).thenReturn(0L);
+
+        hashBackfillService.run();
+
+        verifyNoInteractions(fileService);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
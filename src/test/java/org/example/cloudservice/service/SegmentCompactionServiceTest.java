@@ -0,0 +1,152 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.cloudservice.entity.FileEntity;
+import org.example.cloudservice.entity.SegmentEntity;
+import org.example.cloudservice.repository.FileEntityRepository;
+import org.example.cloudservice.repository.SegmentRepository;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class SegmentCompactionServiceTest {
+
+    @Mock
+    private SegmentRepository segmentRepository;
+
+    @Mock
+    private FileEntityRepository fileEntityRepository;
+
+    @Mock
+    private SegmentWriter segmentWriter;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SegmentCompactionService segmentCompactionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        segmentCompactionService = new SegmentCompactionService(segmentRepository, fileEntityRepository,
+                segmentWriter, storageAdapter, transactionManager, meterRegistry);
+        segmentCompactionService.setLiveRatio(0.5);
+        segmentCompactionService.setMinAge(Duration.ofHours(1));
+        segmentCompactionService.setBatchSize(2);
+        segmentCompactionService.setMaxBatchesPerRun(5);
+        segmentCompactionService.setRetiredGrace(Duration.ofHours(1));
+        lenient().when(segmentWriter.getSegmentSize()).thenReturn(DataSize.ofMegabytes(8));
+    }
+
+    @Test
+    void compactBatch_copiesLiveFilesIntoNewSegmentAndRetiresOldOnes() {
+        SegmentEntity first = segment(1L, "segments/one");
+        SegmentEntity second = segment(2L, "segments/two");
+        FileEntity a = packedFile(1L, "segments/one", 2L, 3L);
+        FileEntity b = packedFile(2L, "segments/two", 0L, 2L);
+        when(segmentRepository.lockCompactionCandidates(any(Instant.class), eq(0.5), eq(2)))
+                .thenReturn(List.of(first, second));
+        when(fileEntityRepository.findBySegmentIdInOrderBySegmentIdAscSegmentOffsetAsc(List.of(1L, 2L)))
+                .thenReturn(List.of(a, b));
+        when(storageAdapter.getObject("segments/one")).thenReturn(new ByteArrayInputStream("xxAAAxxxxx".getBytes()));
+        when(storageAdapter.getObject("segments/two")).thenReturn(new ByteArrayInputStream("BBxxxxxxxx".getBytes()));
+        when(segmentWriter.writeSegment(any())).thenReturn(segment(3L, "segments/three"));
+
+        int compacted = segmentCompactionService.compactBatch(Instant.now());
+
+        assertEquals(2, compacted);
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(segmentWriter).writeSegment(written.capture());
+        assertArrayEquals("AAABB".getBytes(), written.getValue());
+        assertEquals(3L, a.getSegmentId());
+        assertEquals(0L, a.getSegmentOffset());
+        assertEquals("segments/three", a.getS3Link());
+        assertEquals(3L, b.getSegmentId());
+        assertEquals(3L, b.getSegmentOffset());
+        assertNotNull(first.getRetiredAt());
+        assertNotNull(second.getRetiredAt());
+        // Old objects stay until the grace period has passed.
+        verify(storageAdapter, never()).deleteObjects(any(), anyList());
+        assertEquals(2.0, meterRegistry.counter("segments.compacted").count());
+    }
+
+    @Test
+    void compactBatch_segmentWithoutFiles_isRetiredWithoutWritingAnything() {
+        SegmentEntity empty = segment(1L, "segments/empty");
+        when(segmentRepository.lockCompactionCandidates(any(Instant.class), eq(0.5), eq(2))).thenReturn(List.of(empty));
+        when(fileEntityRepository.findBySegmentIdInOrderBySegmentIdAscSegmentOffsetAsc(List.of(1L))).thenReturn(List.of());
+        when(storageAdapter.getObject("segments/empty")).thenReturn(new ByteArrayInputStream(new byte[10]));
+
+        segmentCompactionService.compactBatch(Instant.now());
+
+        verify(segmentWriter, never()).writeSegment(any());
+        assertNotNull(empty.getRetiredAt());
+    }
+
+    @Test
+    void run_deletesSegmentsRetiredBeforeGracePeriod() {
+        SegmentEntity retired = segment(1L, "segments/old");
+        when(segmentRepository.findByRetiredAtBefore(any(Instant.class), any(Pageable.class))).thenReturn(List.of(retired));
+        when(segmentRepository.lockCompactionCandidates(any(Instant.class), anyDouble(), anyInt())).thenReturn(List.of());
+
+        segmentCompactionService.run();
+
+        verify(storageAdapter).deleteObjects(null, List.of("segments/old"));
+        verify(segmentRepository).deleteAllInBatch(List.of(retired));
+    }
+
+    @Test
+    void run_storageFailure_keepsRetiredSegments() {
+        SegmentEntity retired = segment(1L, "segments/old");
+        when(segmentRepository.findByRetiredAtBefore(any(Instant.class), any(Pageable.class))).thenReturn(List.of(retired));
+        doThrow(new StorageException("unavailable")).when(storageAdapter).deleteObjects(null, List.of("segments/old"));
+
+        segmentCompactionService.run();
+
+        verify(segmentRepository, never()).deleteAllInBatch(any());
+    }
+
+    private static SegmentEntity segment(long id, String objectName) {
+        return SegmentEntity.builder()
+                .id(id)
+                .objectName(objectName)
+                .sizeBytes(10L)
+                .createdAt(Instant.now().minus(Duration.ofDays(1)))
+                .build();
+    }
+
+    private static FileEntity packedFile(long segmentId, String objectName, long offset, long length) {
+        return FileEntity.builder()
+                .filename("file")
+                .filesizeBytes(length)
+                .s3Link(objectName)
+                .segmentId(segmentId)
+                .segmentOffset(offset)
+                .segmentLength(length)
+                .deleted(false)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
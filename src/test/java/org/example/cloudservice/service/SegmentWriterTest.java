@@ -0,0 +1,131 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.example.cloudservice.entity.SegmentEntity;
+import org.example.cloudservice.repository.SegmentRepository;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@ExtendWith(MockitoExtension.class)
+class SegmentWriterTest {
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @Mock
+    private SegmentRepository segmentRepository;
+
+    private SegmentWriter segmentWriter;
+    private final List<byte[]> writtenSegments = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        segmentWriter = new SegmentWriter(storageAdapter, segmentRepository);
+        segmentWriter.setMaxFileSize(DataSize.ofKilobytes(64));
+        segmentWriter.setSegmentSize(DataSize.ofBytes(10));
+        segmentWriter.setLinger(Duration.ofMillis(50));
+
+        lenient().doAnswer(invocation -> {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            invocation.<InputStream>getArgument(2).transferTo(content);
+            synchronized (writtenSegments) {
+                writtenSegments.add(content.toByteArray());
+            }
+            return null;
+        }).when(storageAdapter).uploadObject(isNull(), startsWith("segments/"), any(InputStream.class), anyLong(),
+                eq("application/octet-stream"));
+        lenient().when(segmentRepository.save(any(SegmentEntity.class))).thenAnswer(invocation -> {
+            SegmentEntity segment = invocation.getArgument(0);
+            segment.setId((long) writtenSegments.size());
+            return segment;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        segmentWriter.shutdown();
+    }
+
+    @Test
+    void accepts_onlyKnownSizesUpToTheLimit() {
+        assertTrue(segmentWriter.accepts(64 * 1024));
+        assertFalse(segmentWriter.accepts(64 * 1024 + 1));
+        assertFalse(segmentWriter.accepts(-1));
+    }
+
+    @Test
+    void append_concurrentFilesShareOneSegmentWithDistinctOffsets() throws Exception {
+        segmentWriter.setSegmentSize(DataSize.ofKilobytes(1));
+        segmentWriter.setLinger(Duration.ofMillis(200));
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SegmentWriter.PackedEntry>> entries = new ArrayList<>();
+            for (String content : List.of("aaa", "bbbb", "cc")) {
+                entries.add(callers.submit(() -> {
+                    start.await();
+                    return segmentWriter.append(content.getBytes());
+                }));
+            }
+            start.countDown();
+
+            List<SegmentWriter.PackedEntry> packed = new ArrayList<>();
+            for (Future<SegmentWriter.PackedEntry> entry : entries) {
+                packed.add(entry.get());
+            }
+
+            assertEquals(1, writtenSegments.size());
+            byte[] segment = writtenSegments.getFirst();
+            assertEquals(9, segment.length);
+            for (int i = 0; i < packed.size(); i++) {
+                SegmentWriter.PackedEntry entry = packed.get(i);
+                assertEquals(packed.getFirst().objectName(), entry.objectName());
+                String expected = List.of("aaa", "bbbb", "cc").get(i);
+                assertEquals(expected, new String(segment, (int) entry.offset(), (int) entry.length()));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void append_fullBatchIsWrittenWithoutWaitingForLinger() {
+        segmentWriter.setLinger(Duration.ofHours(1));
+
+        SegmentWriter.PackedEntry entry = segmentWriter.append("0123456789".getBytes());
+
+        assertEquals(0, entry.offset());
+        assertEquals(10, entry.length());
+        assertEquals(1, writtenSegments.size());
+    }
+
+    @Test
+    void append_storageFailure_isReportedToTheCaller() {
+        doThrow(new StorageException("unavailable")).when(storageAdapter)
+                .uploadObject(isNull(), startsWith("segments/"), any(InputStream.class), anyLong(), anyString());
+
+        assertThrows(StorageException.class, () -> segmentWriter.append("abc".getBytes()));
+
+        verify(segmentRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.cloudservice.service.ShardRebalanceService.ShardedFile;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageObjectStat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+class ShardRebalanceServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShardRebalanceService shardRebalanceService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        shardRebalanceService = new ShardRebalanceService(jdbcTemplate, storageAdapter, meterRegistry);
+        shardRebalanceService.setPageSize(2);
+        shardRebalanceService.setPagePause(Duration.ZERO);
+        shardRebalanceService.setSourceGrace(Duration.ofHours(1));
+    }
+
+    @Test
+    void move_objectOnOtherShard_copiesWithContentTypeAndRecordsOriginal() {
+        InputStream content = new ByteArrayInputStream("data".getBytes());
+        when(storageAdapter.chooseBucket("object_1")).thenReturn("second");
+        when(storageAdapter.statObject("default", "object_1")).thenReturn(Optional.of(new StorageObjectStat(4, "image/png")));
+        when(storageAdapter.getObject("default", "object_1")).thenReturn(content);
+        when(jdbcTemplate.update(ShardRebalanceService.UPDATE_SHARD, "second", 1, null)).thenReturn(1);
+
+        assertTrue(shardRebalanceService.move(new ShardedFile(1, "object_1", null)));
+
+        verify(storageAdapter).uploadObject("second", "object_1", content, 4, "image/png");
+        verify(jdbcTemplate).update(ShardRebalanceService.INSERT_MOVE, "object_1", "default");
+        verify(storageAdapter, never()).deleteObject(any(), anyString());
+        assertEquals(1.0, meterRegistry.counter("files.shard.moved").count());
+    }
+
+    @Test
+    void move_objectOnItsShard_isLeftAlone() {
+        when(storageAdapter.chooseBucket("object_1")).thenReturn("second");
+
+        assertFalse(shardRebalanceService.move(new ShardedFile(1, "object_1", "second")));
+
+        verify(storageAdapter, never()).uploadObject(any(), anyString(), any(), anyLong(), anyString());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void move_filePurgedMeanwhile_deletesCopy() {
+        when(storageAdapter.chooseBucket("object_1")).thenReturn("default");
+        when(storageAdapter.statObject("second", "object_1")).thenReturn(Optional.of(new StorageObjectStat(4, null)));
+        when(storageAdapter.getObject("second", "object_1")).thenReturn(new ByteArrayInputStream("data".getBytes()));
+        when(jdbcTemplate.update(ShardRebalanceService.UPDATE_SHARD, "default", 1, "second")).thenReturn(0);
+
+        assertFalse(shardRebalanceService.move(new ShardedFile(1, "object_1", "second")));
+
+        verify(storageAdapter).deleteObject("default", "object_1");
+        verify(jdbcTemplate, never()).update(eq(ShardRebalanceService.INSERT_MOVE), any(Object[].class));
+    }
+
+    @Test
+    void run_completedPass_resetsCheckpoint() {
+        when(jdbcTemplate.queryForList(ShardRebalanceService.SELECT_CHECKPOINT, Integer.class, ShardRebalanceService.JOB_NAME))
+                .thenReturn(List.of(10));
+        when(jdbcTemplate.query(eq(ShardRebalanceService.SELECT_DUE_MOVES), ArgumentMatchers.<RowMapper<Object>>any(),
+                any(), eq(2))).thenReturn(List.of());
+        when(jdbcTemplate.query(eq(ShardRebalanceService.SELECT_PAGE), ArgumentMatchers.<RowMapper<ShardedFile>>any(), eq(10), eq(2)))
+                .thenReturn(List.of(new ShardedFile(11, "object_11", "second"), new ShardedFile(12, "object_12", null)));
+        when(jdbcTemplate.query(eq(ShardRebalanceService.SELECT_PAGE), ArgumentMatchers.<RowMapper<ShardedFile>>any(), eq(12), eq(2)))
+                .thenReturn(List.of(new ShardedFile(15, "object_15", null)));
+        when(storageAdapter.chooseBucket("object_11")).thenReturn("second");
+        when(storageAdapter.chooseBucket("object_12")).thenReturn("default");
+        when(storageAdapter.chooseBucket("object_15")).thenReturn("default");
+
+        shardRebalanceService.run();
+
+        verify(jdbcTemplate).update(ShardRebalanceService.SAVE_CHECKPOINT, ShardRebalanceService.JOB_NAME, 12);
+        verify(jdbcTemplate).update(ShardRebalanceService.SAVE_CHECKPOINT, ShardRebalanceService.JOB_NAME, 0);
+        verify(storageAdapter, never()).uploadObject(any(), anyString(), any(), anyLong(), anyString());
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Optional;
+
+class SignedTokenCodecTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final SignedTokenCodec codec = new SignedTokenCodec(SECRET);
+
+    @Test
+    void decode_encodedToken_returnsUser() {
+        AuthenticatedUser user = new AuthenticatedUser(7, "testUser", Instant.now().plus(1, ChronoUnit.HOURS)
+                .truncatedTo(ChronoUnit.SECONDS));
+
+        String token = codec.encode(user);
+
+        assertTrue(SignedTokenCodec.isSigned(token));
+        assertEquals(Optional.of(user), codec.decode(token));
+        assertNotEquals(token, codec.encode(user), "every token is unique");
+    }
+
+    @Test
+    void decode_tamperedPayload_isRejected() {
+        String token = codec.encode(new AuthenticatedUser(7, "testUser", Instant.now().plus(1, ChronoUnit.HOURS)));
+        String other = codec.encode(new AuthenticatedUser(8, "otherUser", Instant.now().plus(1, ChronoUnit.HOURS)));
+
+        String forged = other.substring(0, other.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertEquals(Optional.empty(), codec.decode(forged));
+        assertEquals(Optional.empty(), codec.decode("not.a-token"));
+    }
+
+    @Test
+    void decode_otherKey_isRejected() {
+        String token = codec.encode(new AuthenticatedUser(7, "testUser", Instant.now().plus(1, ChronoUnit.HOURS)));
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+
+        SignedTokenCodec otherCodec = new SignedTokenCodec(Base64.getEncoder().encodeToString(otherKey));
+
+        assertEquals(Optional.empty(), otherCodec.decode(token));
+    }
+
+    @Test
+    void decode_expiredToken_isRejected() {
+        String token = codec.encode(new AuthenticatedUser(7, "testUser", Instant.now().minus(1, ChronoUnit.MINUTES)));
+
+        assertEquals(Optional.empty(), codec.decode(token));
+    }
+
+    @Test
+    void isSigned_randomToken_isFalse() {
+        assertFalse(SignedTokenCodec.isSigned("6f1c1e0e-5b8e-4d7a-9d55-2f1b4f0a8c3e"));
+    }
+
+    @Test
+    void constructor_shortSecret_throws() {
+        String secret = Base64.getEncoder().encodeToString(new byte[16]);
+
+        assertThrows(IllegalStateException.class, () -> new SignedTokenCodec(secret));
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingUploadServiceTest {
+
+    private static final String BOUNDARY = "----test-boundary";
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private StreamingUploadService streamingUploadService;
+
+    private final AuthenticatedUser user = new AuthenticatedUser(1, "testUser", Instant.now().plusSeconds(3600));
+
+    @Test
+    void uploadFile_hashBeforeFile_pipesFilePartWithHash() throws Exception {
+        MockHttpServletRequest request = multipartRequest(
+                field("hash", "hash123") + filePart("file content"));
+
+        doAnswer(invocation -> {
+            InputStream inputStream = invocation.getArgument(1);
+            assertEquals("file content", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            return null;
+        }).when(fileService).uploadFile(eq("test.txt"), any(InputStream.class), eq("text/plain"), eq("hash123"), eq(user));
+
+        streamingUploadService.uploadFile(request, user);
+
+        verify(fileService, times(1))
+                .uploadFile(eq("test.txt"), any(InputStream.class), eq("text/plain"), eq("hash123"), eq(user));
+    }
+
+    @Test
+    void uploadFile_hashAfterFile_isIgnored() throws Exception {
+        MockHttpServletRequest request = multipartRequest(
+                filePart("file content") + field("hash", "hash123"));
+
+        streamingUploadService.uploadFile(request, user);
+
+        verify(fileService, times(1))
+                .uploadFile(eq("test.txt"), any(InputStream.class), eq("text/plain"), isNull(), eq(user));
+    }
+
+    @Test
+    void uploadFile_missingFilePart_throwsIllegalArgumentException() {
+        MockHttpServletRequest request = multipartRequest(field("hash", "hash123"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> streamingUploadService.uploadFile(request, user));
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    void uploadFile_notMultipart_throwsIllegalArgumentException() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/file/stream");
+        request.setContentType("application/json");
+        request.setParameter("filename", "test.txt");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> streamingUploadService.uploadFile(request, user));
+        verifyNoInteractions(fileService);
+    }
+
+    private static MockHttpServletRequest multipartRequest(String parts) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/file/stream");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setParameter("filename", "test.txt");
+        request.setContent((parts + "--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static String field(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+
+    private static String filePart(String content) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + content + "\r\n";
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+class TokenHashesTest {
+
+    @Test
+    void of_isTheTruncatedSha256ComputedByTheMigration() {
+        // encode(substring(sha256(convert_to('token', 'UTF8')) FROM 1 FOR 16), 'hex')::uuid
+        assertEquals(UUID.fromString("3c469e9d-6c58-75d3-7a43-f353d4f88e61"), TokenHashes.of("token"));
+    }
+
+    @Test
+    void of_differsBetweenTokens() {
+        assertEquals(TokenHashes.of("a.b"), TokenHashes.of("a.b"));
+        assertNotEquals(TokenHashes.of("a.b"), TokenHashes.of("a.c"));
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.cloudservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs the token partitioning migrations and {@link TokenReaperService} against a real PostgreSQL,
+ * since the partition DDL and the concurrent detach cannot be checked with mocks.
+ */
+@Testcontainers
+class TokenPartitioningIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+                    .withDatabaseName("cloudservice_db")
+                    .withUsername("test")
+                    .withPassword("test");
+
+    private static DriverManagerDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @Test
+    void migrations_partitionTokensByDayWithoutDefaultPartition() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        List<String> partitions = partitions();
+
+        // 016 created a week of partitions ahead, and 019 removed the default one.
+        for (int i = 0; i <= 7; i++) {
+            assertThat(partitions).contains(TokenReaperService.partitionName(today.plusDays(i)));
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('cloud.tokens_default') IS NULL", Boolean.class))
+                .isTrue();
+        // Without a default partition, a token expiring on a day without a partition cannot be stored.
+        assertThatThrownBy(() -> insertToken(UUID.randomUUID(), today.plusDays(30)))
+                .isInstanceOf(DataAccessException.class);
+    }
+
+    @Test
+    void migrations_hashRawTokensOfPreviousVersion() {
+        Timestamp expiresAt = Timestamp.from(LocalDate.now(ZoneOffset.UTC).plusDays(1)
+                .atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        // As inserted by nodes still running the version before 017.
+        jdbcTemplate.update("INSERT INTO cloud.tokens (token, user_id, expires_at) VALUES (?, ?, ?)",
+                "raw-token", userId(), expiresAt);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT token_hash FROM cloud.tokens WHERE token = ?",
+                UUID.class, "raw-token")).isEqualTo(TokenHashes.of("raw-token"));
+    }
+
+    @Test
+    void run_createsPartitionsAheadEvenWhenDisabled() {
+        LocalDate lastDay = LocalDate.now(ZoneOffset.UTC).plusDays(10);
+        TokenReaperService reaper = new TokenReaperService(jdbcTemplate, new SimpleMeterRegistry(), false, 10, 3600);
+
+        reaper.run();
+
+        assertThat(partitions()).contains(TokenReaperService.partitionName(lastDay));
+        insertToken(UUID.randomUUID(), lastDay);
+    }
+
+    @Test
+    void run_detachesConcurrentlyAndDropsExpiredPartitions() {
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(5);
+        String partition = createPartition(day);
+        UUID tokenHash = UUID.randomUUID();
+        insertToken(tokenHash, day);
+        TokenReaperService reaper = new TokenReaperService(jdbcTemplate, new SimpleMeterRegistry(), true, 7, 3600);
+        reaper.setRetention(Duration.ofDays(1));
+        reaper.setBatchPause(Duration.ZERO);
+
+        reaper.run();
+
+        assertThat(partitions()).doesNotContain(partition);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM cloud.tokens WHERE token_hash = ?",
+                Integer.class, tokenHash)).isZero();
+    }
+
+    @Test
+    void dropPartitions_finalizesInterruptedConcurrentDetach() throws SQLException {
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(6);
+        String partition = createPartition(day);
+
+        // A transaction reading the tokens holds the concurrent detach in its second phase until it
+        // times out, which leaves the partition pending detach as a restart would.
+        try (Connection reader = dataSource.getConnection(); Connection detacher = dataSource.getConnection();
+             Statement detach = detacher.createStatement()) {
+            reader.setAutoCommit(false);
+            reader.createStatement().executeQuery("SELECT count(*) FROM cloud.tokens").close();
+            detach.execute("SET statement_timeout = '2s'");
+            assertThatThrownBy(() -> detach.execute(TokenReaperService.DETACH_PARTITION.formatted(partition)))
+                    .isInstanceOf(SQLException.class);
+            reader.rollback();
+        }
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT i.inhdetachpending FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE c.relname = ?
+                """, Boolean.class, partition)).isTrue();
+
+        new TokenReaperService(jdbcTemplate, new SimpleMeterRegistry(), true, 7, 3600)
+                .dropPartitions(day.plusDays(2).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        assertThat(partitions()).doesNotContain(partition);
+    }
+
+    private static List<String> partitions() {
+        return jdbcTemplate.query(TokenReaperService.SELECT_PARTITIONS, (rs, rowNum) -> rs.getString(1));
+    }
+
+    private static String createPartition(LocalDate day) {
+        String name = TokenReaperService.partitionName(day);
+        jdbcTemplate.execute(TokenReaperService.CREATE_PARTITION.formatted(name,
+                day.atStartOfDay(ZoneOffset.UTC).toInstant(),
+                day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+        return name;
+    }
+
+    private static void insertToken(UUID tokenHash, LocalDate expiresOn) {
+        jdbcTemplate.update("INSERT INTO cloud.tokens (token_hash, user_id, expires_at) VALUES (?, ?, ?)",
+                tokenHash, userId(), Timestamp.from(expiresOn.atStartOfDay(ZoneOffset.UTC).plusHours(12).toInstant()));
+    }
+
+    private static int userId() {
+        return jdbcTemplate.queryForObject("SELECT min(id) FROM cloud.users", Integer.class);
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class TokenReaperServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenReaperService tokenReaperService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenReaperService = new TokenReaperService(jdbcTemplate, meterRegistry, true, 2, 3600);
+        tokenReaperService.setRetention(Duration.ofDays(1));
+        tokenReaperService.setBatchSize(2);
+        tokenReaperService.setBatchPause(Duration.ZERO);
+        tokenReaperService.setMaxBatchesPerRun(5);
+    }
+
+    @Test
+    void run_deletesExpiredTokensInBatchesUntilShortBatch() {
+        when(jdbcTemplate.query(eq(TokenReaperService.SELECT_PARTITIONS), any(RowMapper.class))).thenReturn(List.of());
+        when(jdbcTemplate.update(eq(TokenReaperService.DELETE_EXPIRED), any(Timestamp.class), eq(2)))
+                .thenReturn(2, 1);
+
+        tokenReaperService.run();
+
+        verify(jdbcTemplate, times(2)).update(eq(TokenReaperService.DELETE_EXPIRED), any(Timestamp.class), eq(2));
+        assertEquals(3.0, meterRegistry.counter("tokens.reaped").count());
+    }
+
+    @Test
+    void run_reaperDisabled_stillCreatesPartitions() {
+        TokenReaperService disabled = new TokenReaperService(jdbcTemplate, meterRegistry, false, 2, 3600);
+
+        disabled.run();
+
+        verify(jdbcTemplate, times(3)).execute(contains("PARTITION OF cloud.tokens"));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void constructor_lookaheadNotExceedingTokenValidity_isRejected() {
+        assertThrows(IllegalStateException.class,
+                () -> new TokenReaperService(jdbcTemplate, meterRegistry, true, 1, 86400));
+    }
+
+    @Test
+    void createPartitions_createsTodayAndLookaheadDays() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        doThrow(new DataIntegrityViolationException("partition would overlap"))
+                .when(jdbcTemplate).execute(contains(TokenReaperService.partitionName(today)));
+
+        tokenReaperService.createPartitions();
+
+        verify(jdbcTemplate).execute(contains(TokenReaperService.partitionName(today.plusDays(1))));
+        verify(jdbcTemplate).execute(contains(TokenReaperService.partitionName(today.plusDays(2))));
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+
+    @Test
+    void dropPartitions_detachesConcurrentlyThenDropsOnlyDaysEndedBeforeCutoff() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        String old = TokenReaperService.partitionName(today.minusDays(3));
+        String recent = TokenReaperService.partitionName(today.minusDays(1));
+        when(jdbcTemplate.query(eq(TokenReaperService.SELECT_PARTITIONS), any(RowMapper.class))).thenReturn(List.of(
+                new TokenReaperService.Partition(old, true, false),
+                new TokenReaperService.Partition(recent, true, false)));
+
+        tokenReaperService.dropPartitions(today.minusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE cloud.tokens DETACH PARTITION cloud." + old + " CONCURRENTLY");
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE IF EXISTS cloud." + old);
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    @Test
+    void dropPartitions_finishesInterruptedDetachAndDropsLeftovers() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        String pending = TokenReaperService.partitionName(today.minusDays(4));
+        String detached = TokenReaperService.partitionName(today.minusDays(3));
+        when(jdbcTemplate.query(eq(TokenReaperService.SELECT_PARTITIONS), any(RowMapper.class))).thenReturn(List.of(
+                new TokenReaperService.Partition(pending, true, true),
+                new TokenReaperService.Partition(detached, false, false)));
+
+        tokenReaperService.dropPartitions(today.minusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        verify(jdbcTemplate).execute("ALTER TABLE cloud.tokens DETACH PARTITION cloud." + pending + " FINALIZE");
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS cloud." + pending);
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS cloud." + detached);
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationFilterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Test
+    void revoke_tokenIsRevokedRightAway() {
+        TokenRevocationFilter filter = new TokenRevocationFilter(jdbcTemplate);
+
+        filter.revoke(TokenHashes.of("revoked"), Instant.now().plus(1, ChronoUnit.HOURS));
+
+        assertTrue(filter.isRevoked(TokenHashes.of("revoked")));
+        assertFalse(filter.isRevoked(TokenHashes.of("other")));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void refresh_loadsRevocationsOfOtherNodesAndDropsExpiredOnes() throws Exception {
+        Instant now = Instant.now();
+        when(resultSet.getObject("token_hash", UUID.class)).thenReturn(TokenHashes.of("revoked_elsewhere"));
+        when(resultSet.getTimestamp("expires_at")).thenReturn(Timestamp.from(now.plus(1, ChronoUnit.HOURS)));
+        when(resultSet.getTimestamp("revoked_at")).thenReturn(Timestamp.from(now));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(eq(TokenRevocationFilter.SELECT_REVOKED), any(RowCallbackHandler.class),
+                any(Timestamp.class), any(Timestamp.class));
+        TokenRevocationFilter filter = new TokenRevocationFilter(jdbcTemplate);
+        filter.revoke(TokenHashes.of("expired"), now.minus(1, ChronoUnit.MINUTES));
+
+        filter.refresh();
+
+        assertTrue(filter.isRevoked(TokenHashes.of("revoked_elsewhere")));
+        assertFalse(filter.isRevoked(TokenHashes.of("expired")));
+    }
+}
@@ -1,22 +1,30 @@
 package org.example.cloudservice.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.example.cloudservice.entity.TokenEntity;
 import org.example.cloudservice.entity.UserEntity;
 import org.example.cloudservice.repository.TokenEntityRepository;
 import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
@@ -29,6 +37,9 @@ class TokenServiceTest {
     @Mock
     private UserEntityRepository userEntityRepository;
 
+    @Spy
+    private TokenCache tokenCache = new TokenCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
     @InjectMocks
     private TokenService tokenService;
 
@@ -51,7 +62,34 @@ class TokenServiceTest {
 
         // Assert
         assertNotNull(token);
-        verify(tokenEntityRepository, times(1)).save(any(TokenEntity.class));
+        ArgumentCaptor<TokenEntity> saved = ArgumentCaptor.forClass(TokenEntity.class);
+        verify(tokenEntityRepository, times(1)).save(saved.capture());
+        assertEquals(TokenHashes.of(token), saved.getValue().getTokenHash());
+    }
+
+    @Test
+    void generateToken_OverLimit_RevokesOldestTokens() {
+        tokenService.setMaxTokensPerUser(2);
+        UserEntity user = new UserEntity();
+        user.setUsername("testUser");
+        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        Instant now = Instant.now();
+        TokenEntity newest = TokenEntity.builder().tokenHash(TokenHashes.of("newest")).user(user).issuedAt(now)
+                .expiresAt(now.plus(1, ChronoUnit.HOURS)).build();
+        TokenEntity older = TokenEntity.builder().tokenHash(TokenHashes.of("older")).user(user).issuedAt(now.minusSeconds(60))
+                .expiresAt(now.plus(1, ChronoUnit.HOURS)).build();
+        TokenEntity oldest = TokenEntity.builder().tokenHash(TokenHashes.of("oldest")).user(user).issuedAt(now.minusSeconds(120))
+                .expiresAt(now.plus(1, ChronoUnit.HOURS)).build();
+        when(tokenEntityRepository.findByUserAndRevokedFalseAndExpiresAtAfterOrderByIssuedAtDesc(eq(user), any(Instant.class)))
+                .thenReturn(List.of(newest, older, oldest));
+
+        tokenService.generateToken("testUser");
+
+        assertFalse(newest.isRevoked());
+        assertFalse(older.isRevoked());
+        assertTrue(oldest.isRevoked());
+        verify(tokenEntityRepository).save(oldest);
+        verify(tokenCache).evict(TokenHashes.of("oldest"));
     }
 
     @Test
@@ -63,115 +101,177 @@ class TokenServiceTest {
     }
 
     @Test
-    void validateToken_TokenNotFound_ReturnsFalse() {
-        when(tokenEntityRepository.findByToken(anyString())).thenReturn(Optional.empty());
+    void authenticate_TokenNotFound_ReturnsEmpty() {
+        when(tokenEntityRepository.findByTokenHash(any(UUID.class))).thenReturn(Optional.empty());
 
-        boolean isValid = tokenService.validateToken("some-token");
-        assertFalse(isValid);
+        assertTrue(tokenService.authenticate("some-token").isEmpty());
     }
 
     @Test
-    void validateToken_ExpiredToken_ReturnsFalse() {
+    void authenticate_ExpiredToken_ReturnsEmpty() {
         String token = UUID.randomUUID().toString();
         UserEntity user = new UserEntity();
         user.setUsername("testUser");
 
         Instant now = Instant.now();
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(user)
                 .issuedAt(now.minus(2, ChronoUnit.HOURS))
                 .expiresAt(now.minus(1, ChronoUnit.HOURS)) // expired one hour ago
                 .revoked(false)
                 .build();
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.of(tokenEntity));
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of(token))).thenReturn(Optional.of(tokenEntity));
 
-        boolean isValid = tokenService.validateToken(token);
-        assertFalse(isValid);
+        assertTrue(tokenService.authenticate(token).isEmpty());
     }
 
     @Test
-    void validateToken_RevokedToken_ReturnsFalse() {
+    void authenticate_RevokedToken_ReturnsEmpty() {
         String token = UUID.randomUUID().toString();
         UserEntity user = new UserEntity();
         user.setUsername("testUser");
 
         Instant now = Instant.now();
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(user)
                 .issuedAt(now)
                 .expiresAt(now.plus(1, ChronoUnit.HOURS))
                 .revoked(true)
                 .build();
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.of(tokenEntity));
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of(token))).thenReturn(Optional.of(tokenEntity));
 
-        boolean isValid = tokenService.validateToken(token);
-        assertFalse(isValid);
+        assertTrue(tokenService.authenticate(token).isEmpty());
     }
 
     @Test
-    void validateToken_ValidToken_ReturnsTrue() {
+    void authenticate_ValidToken_IsLookedUpOnce() {
         String token = UUID.randomUUID().toString();
         UserEntity user = new UserEntity();
+        user.setId(7);
         user.setUsername("testUser");
 
         Instant now = Instant.now();
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(user)
                 .issuedAt(now)
                 .expiresAt(now.plus(1, ChronoUnit.HOURS))
                 .revoked(false)
                 .build();
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.of(tokenEntity));
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of(token))).thenReturn(Optional.of(tokenEntity));
+
+        Optional<AuthenticatedUser> first = tokenService.authenticate(token);
+        Optional<AuthenticatedUser> second = tokenService.authenticate(token);
 
-        boolean isValid = tokenService.validateToken(token);
-        assertTrue(isValid);
+        assertEquals(Optional.of(new AuthenticatedUser(7, "testUser", tokenEntity.getExpiresAt())), first);
+        assertEquals(first, second);
+        verify(tokenEntityRepository, times(1)).findByTokenHash(TokenHashes.of(token));
     }
 
     @Test
-    void invalidateToken_TokenExists_RevokesToken() {
+    void invalidateToken_CachedToken_IsRejectedRightAway() {
         String token = UUID.randomUUID().toString();
         UserEntity user = new UserEntity();
         user.setUsername("testUser");
 
+        Instant now = Instant.now();
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(user)
+                .issuedAt(now)
+                .expiresAt(now.plus(1, ChronoUnit.HOURS))
                 .revoked(false)
                 .build();
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.of(tokenEntity));
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of(token))).thenReturn(Optional.of(tokenEntity));
+        assertTrue(tokenService.authenticate(token).isPresent());
 
         tokenService.invalidateToken(token);
 
-        // Verify that token's revoked flag is set to true and saved.
+        assertTrue(tokenService.authenticate(token).isEmpty());
+        verify(tokenCache).evict(TokenHashes.of(token));
+    }
+
+    @Test
+    void authenticate_SignedToken_IsVerifiedWithoutLookup() {
+        TokenRevocationFilter revocationFilter = mock(TokenRevocationFilter.class);
+        TokenService signedTokenService = signedTokenService(revocationFilter);
+        UserEntity user = new UserEntity();
+        user.setId(7);
+        user.setUsername("testUser");
+        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+
+        String token = signedTokenService.generateToken("testUser");
+        Optional<AuthenticatedUser> authenticated = signedTokenService.authenticate(token);
+
+        assertTrue(authenticated.isPresent());
+        assertEquals(7, authenticated.get().userId());
+        assertEquals("testUser", authenticated.get().username());
+        // Recorded for revocation, but never looked up.
+        verify(tokenEntityRepository).save(any(TokenEntity.class));
+        verify(tokenEntityRepository, never()).findByTokenHash(any(UUID.class));
+    }
+
+    @Test
+    void authenticate_RevokedSignedToken_IsRejected() {
+        TokenRevocationFilter revocationFilter = mock(TokenRevocationFilter.class);
+        TokenService signedTokenService = signedTokenService(revocationFilter);
+        UserEntity user = new UserEntity();
+        user.setId(7);
+        user.setUsername("testUser");
+        when(userEntityRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        String token = signedTokenService.generateToken("testUser");
+        when(revocationFilter.isRevoked(TokenHashes.of(token))).thenReturn(true);
+
+        assertTrue(signedTokenService.authenticate(token).isEmpty());
+    }
+
+    @Test
+    void invalidateToken_SignedToken_AddsToRevocationFilter() {
+        TokenRevocationFilter revocationFilter = mock(TokenRevocationFilter.class);
+        TokenService signedTokenService = signedTokenService(revocationFilter);
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        TokenEntity tokenEntity = TokenEntity.builder()
+                .tokenHash(TokenHashes.of("signed.token"))
+                .user(new UserEntity())
+                .expiresAt(expiresAt)
+                .revoked(false)
+                .build();
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of("signed.token"))).thenReturn(Optional.of(tokenEntity));
+
+        signedTokenService.invalidateToken("signed.token");
+
         assertTrue(tokenEntity.isRevoked());
-        verify(tokenEntityRepository, times(1)).save(tokenEntity);
+        assertNotNull(tokenEntity.getRevokedAt());
+        verify(revocationFilter).revoke(TokenHashes.of("signed.token"), expiresAt);
     }
 
     @Test
-    void getUsernameFromToken_TokenExists_ReturnsUsername() {
+    void invalidateToken_TokenExists_RevokesToken() {
         String token = UUID.randomUUID().toString();
         UserEntity user = new UserEntity();
         user.setUsername("testUser");
 
         TokenEntity tokenEntity = TokenEntity.builder()
-                .token(token)
+                .tokenHash(TokenHashes.of(token))
                 .user(user)
+                .revoked(false)
                 .build();
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.of(tokenEntity));
+        when(tokenEntityRepository.findByTokenHash(TokenHashes.of(token))).thenReturn(Optional.of(tokenEntity));
 
-        String username = tokenService.getUsernameFromToken(token);
-        assertEquals("testUser", username);
-    }
+        tokenService.invalidateToken(token);
 
-    @Test
-    void getUsernameFromToken_TokenNotFound_ThrowsException() {
-        String token = "invalid-token";
-        when(tokenEntityRepository.findByToken(token)).thenReturn(Optional.empty());
+        // Verify that token's revoked flag is set to true and saved.
+        assertTrue(tokenEntity.isRevoked());
+        verify(tokenEntityRepository, times(1)).save(tokenEntity);
+    }
 
-        Exception exception = assertThrows(RuntimeException.class, () -> tokenService.getUsernameFromToken(token));
-        assertTrue(exception.getMessage().contains(token));
+    private TokenService signedTokenService(TokenRevocationFilter revocationFilter) {
+        SignedTokenCodec codec = new SignedTokenCodec(Base64.getEncoder().encodeToString(new byte[32]));
+        TokenService service = new TokenService(tokenEntityRepository, userEntityRepository, tokenCache,
+                codec, revocationFilter);
+        service.setTokenValiditySeconds(3600L);
+        return service;
     }
 }
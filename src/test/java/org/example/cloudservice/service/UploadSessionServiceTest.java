@@ -0,0 +1,293 @@
+package org.example.cloudservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.example.cloudservice.dto.UploadSessionDto;
+import org.example.cloudservice.entity.UploadSessionEntity;
+import org.example.cloudservice.entity.UploadSessionPartEntity;
+import org.example.cloudservice.entity.UserEntity;
+import org.example.cloudservice.repository.UploadSessionPartRepository;
+import org.example.cloudservice.repository.UploadSessionRepository;
+import org.example.cloudservice.repository.UserEntityRepository;
+import org.example.cloudservice.security.AuthenticatedUser;
+import org.example.cloudservice.storage.StorageAdapter;
+import org.example.cloudservice.storage.StorageException;
+import org.example.cloudservice.storage.StoragePart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceTest {
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private UploadSessionPartRepository uploadSessionPartRepository;
+
+    @Mock
+    private UserEntityRepository userEntityRepository;
+
+    @Mock
+    private StorageAdapter storageAdapter;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private UploadSessionService uploadSessionService;
+
+    private UserEntity testUser;
+    private AuthenticatedUser user;
+    private UploadSessionEntity testSession;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionService.setMinChunkSize(DataSize.ofBytes(4));
+        uploadSessionService.setMaxChunkSize(DataSize.ofBytes(8));
+        uploadSessionService.setSessionTtl(Duration.ofHours(1));
+
+        testUser = new UserEntity();
+        testUser.setId(1);
+        testUser.setUsername("testUser");
+        user = new AuthenticatedUser(1, "testUser", Instant.now().plus(Duration.ofHours(1)));
+
+        testSession = UploadSessionEntity.builder()
+                .id(UUID.randomUUID())
+                .user(testUser)
+                .filename("big.bin")
+                .hash("hash123")
+                .objectName("unique_big.bin")
+                .uploadId("upload-1")
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                .build();
+    }
+
+    @Test
+    void createSession_startsMultipartUploadOnChosenShard() {
+        when(storageAdapter.chooseBucket(endsWith("_big.bin"))).thenReturn("shard-b");
+        when(storageAdapter.createMultipartUpload(eq("shard-b"), anyString(), eq("application/zip")))
+                .thenReturn("upload-1");
+        when(userEntityRepository.getReferenceById(1)).thenReturn(testUser);
+        when(uploadSessionRepository.save(any(UploadSessionEntity.class))).thenAnswer(invocation -> {
+            UploadSessionEntity session = invocation.getArgument(0);
+            session.setId(testSession.getId());
+            return session;
+        });
+
+        UploadSessionDto dto = uploadSessionService.createSession("big.bin", "application/zip", null, user);
+
+        assertEquals(testSession.getId().toString(), dto.getId());
+        assertEquals(0L, dto.getReceivedBytes());
+        ArgumentCaptor<UploadSessionEntity> captor = ArgumentCaptor.forClass(UploadSessionEntity.class);
+        verify(uploadSessionRepository).save(captor.capture());
+        assertEquals("upload-1", captor.getValue().getUploadId());
+        assertTrue(captor.getValue().getObjectName().endsWith("_big.bin"));
+        assertEquals("shard-b", captor.getValue().getShard());
+    }
+
+    @Test
+    void uploadChunk_storesPartAndReportsProgress() throws Exception {
+        InputStream chunk = new ByteArrayInputStream("abcd".getBytes());
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+        when(storageAdapter.uploadPart(null, "unique_big.bin", "upload-1", 2, chunk, 4L))
+                .thenReturn(new StoragePart(2, "etag-2", 4L));
+        when(uploadSessionPartRepository.findBySessionAndPartNumber(testSession, 2)).thenReturn(Optional.empty());
+        when(uploadSessionPartRepository.findBySessionOrderByPartNumber(testSession))
+                .thenReturn(List.of(part(1, 4L), part(2, 4L)));
+
+        UploadSessionDto dto = uploadSessionService.uploadChunk(testSession.getId(), 2, chunk, 4L, user);
+
+        ArgumentCaptor<UploadSessionPartEntity> captor = ArgumentCaptor.forClass(UploadSessionPartEntity.class);
+        verify(uploadSessionPartRepository).save(captor.capture());
+        assertEquals(2, captor.getValue().getPartNumber());
+        assertEquals("etag-2", captor.getValue().getEtag());
+        assertEquals(8L, dto.getReceivedBytes());
+        assertEquals(List.of(1, 2), dto.getReceivedChunks());
+    }
+
+    @Test
+    void uploadChunk_tooLarge_throwsWithoutTouchingStorage() {
+        assertThrows(UploadSessionException.class, () -> uploadSessionService.uploadChunk(
+                testSession.getId(), 1, new ByteArrayInputStream(new byte[9]), 9L, user));
+
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void commitSession_completesUploadAndSavesFile() throws Exception {
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+        when(uploadSessionPartRepository.findBySessionOrderByPartNumber(testSession))
+                .thenReturn(List.of(part(1, 4L), part(2, 4L), part(3, 1L)));
+        when(fileService.hashObject(null, "unique_big.bin")).thenReturn("hash123");
+
+        uploadSessionService.commitSession(testSession.getId(), user);
+
+        verify(storageAdapter).completeMultipartUpload(null, "unique_big.bin", "upload-1", List.of(
+                new StoragePart(1, "etag-1", 4L),
+                new StoragePart(2, "etag-2", 4L),
+                new StoragePart(3, "etag-3", 1L)));
+        // The file is recorded and the session removed in one transaction, after the object was read back.
+        InOrder inOrder = inOrder(fileService, transactionManager, uploadSessionRepository);
+        inOrder.verify(fileService).hashObject(null, "unique_big.bin");
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(fileService).saveFileEntity("big.bin", 9L, "hash123", "unique_big.bin", null, user);
+        inOrder.verify(uploadSessionRepository).delete(testSession);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void commitSession_failureAfterAssembly_marksSessionCompletedForRetry() throws Exception {
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+        when(uploadSessionPartRepository.findBySessionOrderByPartNumber(testSession))
+                .thenReturn(List.of(part(1, 4L), part(2, 4L), part(3, 1L)));
+        when(fileService.hashObject(null, "unique_big.bin"))
+                .thenThrow(new StorageException("unavailable"))
+                .thenReturn("hash123");
+
+        assertThrows(StorageException.class, () -> uploadSessionService.commitSession(testSession.getId(), user));
+
+        assertNotNull(testSession.getCompletedAt());
+        verify(uploadSessionRepository).save(testSession);
+        verify(uploadSessionRepository, never()).delete(any());
+
+        // The retry does not assemble the object again, since its upload id is no longer valid.
+        uploadSessionService.commitSession(testSession.getId(), user);
+
+        verify(storageAdapter, times(1)).completeMultipartUpload(any(), anyString(), anyString(), anyList());
+        verify(fileService).saveFileEntity("big.bin", 9L, "hash123", "unique_big.bin", null, user);
+        verify(uploadSessionRepository).delete(testSession);
+    }
+
+    @Test
+    void uploadChunk_completedSession_isRejected() {
+        testSession.setCompletedAt(Instant.now());
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+
+        assertThrows(UploadSessionException.class, () -> uploadSessionService.uploadChunk(
+                testSession.getId(), 1, new ByteArrayInputStream(new byte[4]), 4L, user));
+
+        verifyNoInteractions(storageAdapter);
+    }
+
+    @Test
+    void commitSession_hashMismatch_discardsObjectAndSession() throws Exception {
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+        when(uploadSessionPartRepository.findBySessionOrderByPartNumber(testSession))
+                .thenReturn(List.of(part(1, 4L), part(2, 4L), part(3, 1L)));
+        when(fileService.hashObject(null, "unique_big.bin")).thenReturn("other");
+
+        assertThrows(HashMismatchException.class,
+                () -> uploadSessionService.commitSession(testSession.getId(), user));
+
+        verify(fileService).deleteQuietly(null, "unique_big.bin");
+        verify(uploadSessionRepository).delete(testSession);
+        verify(fileService, never()).saveFileEntity(anyString(), anyLong(), any(), anyString(), any(), any(AuthenticatedUser.class));
+    }
+
+    @Test
+    void commitSession_missingChunk_throws() {
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+        when(uploadSessionPartRepository.findBySessionOrderByPartNumber(testSession))
+                .thenReturn(List.of(part(1, 4L), part(3, 1L)));
+
+        UploadSessionException exception = assertThrows(UploadSessionException.class,
+                () -> uploadSessionService.commitSession(testSession.getId(), user));
+
+        assertEquals("Chunk 2 is missing.", exception.getMessage());
+        verify(storageAdapter, never()).completeMultipartUpload(any(), anyString(), anyString(), anyList());
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    void getSessionStatus_expiredSession_throwsFileNotFound() {
+        testSession.setExpiresAt(Instant.now().minusSeconds(1));
+        when(uploadSessionRepository.findByIdAndUserId(testSession.getId(), 1)).thenReturn(Optional.of(testSession));
+
+        assertThrows(FileNotFoundException.class,
+                () -> uploadSessionService.getSessionStatus(testSession.getId(), user));
+    }
+
+    @Test
+    void removeExpiredSessions_abortsUploadsThenDeletesRows() {
+        uploadSessionService.setCleanupBatchSize(10);
+        when(uploadSessionRepository.findExpired(any(Instant.class), eq(0), eq(10))).thenReturn(List.of(testSession));
+
+        uploadSessionService.removeExpiredSessions();
+
+        verify(storageAdapter).abortMultipartUpload(null, "unique_big.bin", "upload-1");
+        // A commit may have failed right after storage assembled the object.
+        verify(storageAdapter).deleteObject(null, "unique_big.bin");
+        verify(uploadSessionRepository).deleteAllInBatch(List.of(testSession));
+    }
+
+    @Test
+    void removeExpiredSessions_completedSession_deletesObjectWithoutAborting() {
+        uploadSessionService.setCleanupBatchSize(10);
+        testSession.setCompletedAt(Instant.now().minus(Duration.ofHours(2)));
+        when(uploadSessionRepository.findExpired(any(Instant.class), eq(0), eq(10))).thenReturn(List.of(testSession));
+
+        uploadSessionService.removeExpiredSessions();
+
+        verify(storageAdapter, never()).abortMultipartUpload(any(), anyString(), anyString());
+        verify(storageAdapter).deleteObject(null, "unique_big.bin");
+        verify(uploadSessionRepository).deleteAllInBatch(List.of(testSession));
+    }
+
+    @Test
+    void removeExpiredSessions_abortFailure_skipsSessionAndKeepsItForNextRun() {
+        uploadSessionService.setCleanupBatchSize(1);
+        UploadSessionEntity other = UploadSessionEntity.builder()
+                .id(UUID.randomUUID())
+                .user(testUser)
+                .filename("other.bin")
+                .objectName("unique_other.bin")
+                .uploadId("upload-2")
+                .expiresAt(Instant.now().minusSeconds(1))
+                .build();
+        when(uploadSessionRepository.findExpired(any(Instant.class), eq(0), eq(1))).thenReturn(List.of(testSession));
+        when(uploadSessionRepository.findExpired(any(Instant.class), eq(1), eq(1)))
+                .thenReturn(List.of(other), List.of());
+        doThrow(new StorageException("unavailable"))
+                .when(storageAdapter).abortMultipartUpload(null, "unique_big.bin", "upload-1");
+
+        uploadSessionService.removeExpiredSessions();
+
+        // The failed session is kept, and the cleanup carries on past it.
+        verify(uploadSessionRepository).deleteAllInBatch(List.of());
+        verify(uploadSessionRepository).deleteAllInBatch(List.of(other));
+        verify(storageAdapter).abortMultipartUpload(null, "unique_other.bin", "upload-2");
+    }
+
+    private UploadSessionPartEntity part(int number, long size) {
+        return UploadSessionPartEntity.builder()
+                .session(testSession)
+                .partNumber(number)
+                .sizeBytes(size)
+                .etag("etag-" + number)
+                .build();
+    }
+}
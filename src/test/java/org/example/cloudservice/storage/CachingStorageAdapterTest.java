@@ -0,0 +1,168 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@ExtendWith(MockitoExtension.class)
+class CachingStorageAdapterTest {
+
+    private static final byte[] CONTENT = "cached content".getBytes();
+
+    @Mock
+    private StorageAdapter delegate;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CachingStorageAdapter cachingAdapter;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties.Cache properties = new StorageProperties.Cache();
+        properties.setDirectory(cacheDirectory);
+        properties.setMaxSize(DataSize.ofMegabytes(1));
+        properties.setMaxObjectSize(DataSize.ofBytes(64));
+        meterRegistry = new SimpleMeterRegistry();
+        cachingAdapter = new CachingStorageAdapter(delegate, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cachingAdapter.close();
+    }
+
+    @Test
+    void getObject_missThenHit_servesSecondReadFromDisk() throws Exception {
+        when(delegate.getObject(null, "object")).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+
+        // Act: the miss is served by the delegate and copied into the cache as it is read.
+        try (InputStream first = cachingAdapter.getObject(null, "object")) {
+            assertArrayEquals(CONTENT, first.readAllBytes());
+        }
+        awaitPopulations("success", 1);
+
+        try (InputStream second = cachingAdapter.getObject(null, "object")) {
+            assertArrayEquals(CONTENT, second.readAllBytes());
+        }
+
+        // Assert: one read to serve the miss, none for the hit.
+        verify(delegate, times(1)).getObject(null, "object");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void getObject_rangeOfCachedObject_readsOnlyThatRange() throws Exception {
+        when(delegate.getObject(null, "object")).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+        try (InputStream first = cachingAdapter.getObject(null, "object")) {
+            first.readAllBytes();
+        }
+        awaitPopulations("success", 1);
+
+        try (InputStream range = cachingAdapter.getObject(null, "object", 7, 7)) {
+            assertEquals("content", new String(range.readAllBytes()));
+        }
+        verify(delegate, never()).getObject(any(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getObject_readerStopsEarly_isNotCached() throws Exception {
+        when(delegate.getObject(null, "object")).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+
+        try (InputStream first = cachingAdapter.getObject(null, "object")) {
+            first.readNBytes(3);
+        }
+        try (InputStream second = cachingAdapter.getObject(null, "object")) {
+            assertArrayEquals(CONTENT, second.readAllBytes());
+        }
+
+        verify(delegate, times(2)).getObject(null, "object");
+        assertEquals(0L, countFiles());
+    }
+
+    @Test
+    void getObject_objectLargerThanLimit_isNotCachedAndRemembered() throws Exception {
+        byte[] large = new byte[65];
+        when(delegate.getObject(null, "large")).thenAnswer(invocation -> new ByteArrayInputStream(large));
+
+        try (InputStream first = cachingAdapter.getObject(null, "large")) {
+            assertArrayEquals(large, first.readAllBytes());
+        }
+        try (InputStream second = cachingAdapter.getObject(null, "large")) {
+            assertArrayEquals(large, second.readAllBytes());
+        }
+
+        // Each read is served once by the delegate, and only the first tries to cache it.
+        verify(delegate, times(2)).getObject(null, "large");
+        assertEquals(1.0, meterRegistry.get("storage.cache.populations").tag("result", "skipped").counter().count());
+        assertEquals(0L, countFiles());
+    }
+
+    @Test
+    void getObject_rangeOfObjectLargerThanLimit_isNotFetchedInBackground() throws Exception {
+        when(delegate.statObject(null, "large")).thenReturn(Optional.of(new StorageObjectStat(65, "video/mp4")));
+        when(delegate.getObject(null, "large", 0, 10)).thenAnswer(invocation -> new ByteArrayInputStream(new byte[10]));
+
+        cachingAdapter.getObject(null, "large", 0, 10).close();
+        awaitPopulations("skipped", 1);
+        cachingAdapter.getObject(null, "large", 0, 10).close();
+
+        verify(delegate, never()).getObject(null, "large");
+        verify(delegate, times(1)).statObject(null, "large");
+    }
+
+    @Test
+    void deleteObject_dropsCachedCopy() throws Exception {
+        when(delegate.getObject(null, "object")).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+        try (InputStream first = cachingAdapter.getObject(null, "object")) {
+            first.readAllBytes();
+        }
+        awaitPopulations("success", 1);
+
+        cachingAdapter.deleteObject(null, "object");
+
+        verify(delegate).deleteObject(null, "object");
+        // The cached file is removed by Caffeine's removal listener, which runs asynchronously.
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (countFiles() > 0) {
+            if (System.nanoTime() > deadline) {
+                fail("Cached file was not removed in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.count();
+        }
+    }
+
+    private void awaitPopulations(String result, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (meterRegistry.get("storage.cache.populations").tag("result", result).counter().count() < expected) {
+            if (System.nanoTime() > deadline) {
+                fail("Cache was not populated in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
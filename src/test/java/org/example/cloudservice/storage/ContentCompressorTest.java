@@ -0,0 +1,73 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+class ContentCompressorTest {
+
+    private StorageProperties storageProperties;
+
+    @BeforeEach
+    void setUp() {
+        storageProperties = new StorageProperties();
+        storageProperties.getCompression().setEnabled(true);
+    }
+
+    @Test
+    void encode_listedContentType_compressesAndRoundTrips() throws Exception {
+        byte[] content = "{\"id\":1,\"name\":\"value\"}\n".repeat(500).getBytes();
+
+        ContentCompressor.Encoded encoded = new ContentCompressor(storageProperties)
+                .encode(new ByteArrayInputStream(content), "application/json; charset=UTF-8");
+
+        assertEquals(StorageCodec.DEFLATE, encoded.codec());
+        byte[] stored = encoded.stream().readAllBytes();
+        assertTrue(stored.length < content.length / 5);
+        try (InputStream decoded = StorageCodec.DEFLATE.decode(new ByteArrayInputStream(stored))) {
+            assertArrayEquals(content, decoded.readAllBytes());
+        }
+    }
+
+    @Test
+    void encode_unlistedCompressibleContent_isCompressedAfterSampling() throws Exception {
+        byte[] content = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".repeat(4000).getBytes();
+
+        ContentCompressor.Encoded encoded = new ContentCompressor(storageProperties)
+                .encode(new ByteArrayInputStream(content), "application/octet-stream");
+
+        assertEquals(StorageCodec.DEFLATE, encoded.codec());
+        try (InputStream decoded = StorageCodec.DEFLATE.decode(new ByteArrayInputStream(encoded.stream().readAllBytes()))) {
+            assertArrayEquals(content, decoded.readAllBytes());
+        }
+    }
+
+    @Test
+    void encode_incompressibleContent_isStoredAsIs() throws Exception {
+        byte[] content = new byte[200_000];
+        new Random(42).nextBytes(content);
+
+        ContentCompressor.Encoded encoded = new ContentCompressor(storageProperties)
+                .encode(new ByteArrayInputStream(content), "image/jpeg");
+
+        assertEquals(StorageCodec.NONE, encoded.codec());
+        // The sampled bytes are replayed, so nothing is lost.
+        assertArrayEquals(content, encoded.stream().readAllBytes());
+    }
+
+    @Test
+    void encode_disabled_returnsStreamUnchanged() throws Exception {
+        storageProperties.getCompression().setEnabled(false);
+        InputStream content = new ByteArrayInputStream("text".getBytes());
+
+        ContentCompressor.Encoded encoded = new ContentCompressor(storageProperties).encode(content, "text/plain");
+
+        assertEquals(StorageCodec.NONE, encoded.codec());
+        assertSame(content, encoded.stream());
+    }
+}
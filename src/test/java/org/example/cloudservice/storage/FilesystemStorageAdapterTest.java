@@ -0,0 +1,102 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+class FilesystemStorageAdapterTest {
+
+    @TempDir
+    Path root;
+
+    private FilesystemStorageAdapter storageAdapter;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.getFilesystem().setRoot(root);
+        properties.getFilesystem().setBucket("test-bucket");
+        storageAdapter = new FilesystemStorageAdapter(properties);
+    }
+
+    @Test
+    void uploadObject_thenGetObject_roundTripsContent() throws Exception {
+        byte[] content = "filesystem content".getBytes();
+
+        storageAdapter.uploadObject("uuid_../../etc/passwd", new ByteArrayInputStream(content), -1, "text/plain");
+
+        try (InputStream in = storageAdapter.getObject("uuid_../../etc/passwd")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        try (InputStream in = storageAdapter.getObject("uuid_../../etc/passwd", 11, 7)) {
+            assertEquals("content", new String(in.readAllBytes()));
+        }
+        // The object lives in a sharded directory of the bucket, whatever its name.
+        try (Stream<Path> files = Files.walk(root.resolve("test-bucket"))) {
+            List<Path> objects = files.filter(Files::isRegularFile).toList();
+            assertEquals(1, objects.size());
+            assertEquals(3, root.resolve("test-bucket").relativize(objects.getFirst()).getNameCount());
+        }
+    }
+
+    @Test
+    void uploadObject_sizeMismatch_throwsAndLeavesNoObject() {
+        assertThrows(StorageException.class, () ->
+                storageAdapter.uploadObject("object", new ByteArrayInputStream(new byte[3]), 5, null));
+
+        assertThrows(StorageException.class, () -> storageAdapter.getObject("object"));
+    }
+
+    @Test
+    void multipartUpload_concatenatesPartsInOrder() throws Exception {
+        String uploadId = storageAdapter.createMultipartUpload(null, "object", null);
+        StoragePart second = storageAdapter.uploadPart(null, "object", uploadId, 2,
+                new ByteArrayInputStream("world".getBytes()), 5);
+        StoragePart first = storageAdapter.uploadPart(null, "object", uploadId, 1,
+                new ByteArrayInputStream("hello ".getBytes()), 6);
+
+        storageAdapter.completeMultipartUpload(null, "object", uploadId, List.of(first, second));
+
+        try (InputStream in = storageAdapter.getObject("object")) {
+            assertEquals("hello world", new String(in.readAllBytes()));
+        }
+        assertFalse(Files.exists(root.resolve("test-bucket").resolve(".uploads").resolve(uploadId)));
+    }
+
+    @Test
+    void copyObject_copiesContentAndReportsMissingSource() throws Exception {
+        storageAdapter.uploadObject("source", new ByteArrayInputStream("copied".getBytes()), 6, null);
+
+        assertTrue(storageAdapter.copyObject(null, "source", "target"));
+        assertFalse(storageAdapter.copyObject(null, "missing", "other"));
+
+        try (InputStream in = storageAdapter.getObject("target")) {
+            assertEquals("copied", new String(in.readAllBytes()));
+        }
+        assertTrue(storageAdapter.statObject(null, "other").isEmpty());
+        assertFalse(storageAdapter.supportsPresignedUrls());
+    }
+
+    @Test
+    void deleteObject_removesObject() {
+        storageAdapter.uploadObject("object", new ByteArrayInputStream(new byte[1]), 1, null);
+
+        storageAdapter.deleteObject(null, "object");
+
+        assertThrows(StorageException.class, () -> storageAdapter.getObject("object"));
+    }
+
+    @Test
+    void invalidBucket_isRejected() {
+        assertThrows(StorageException.class, () -> storageAdapter.getObject("../escape", "object"));
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingStorageAdapterTest {
+
+    @Mock
+    private StorageAdapter delegate;
+
+    private MinioProperties.Hedging properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MinioProperties.Hedging();
+        properties.setMinDelay(Duration.ofMillis(20));
+        properties.setMaxDelay(Duration.ofMillis(20));
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        properties.setMaxExtraLoad(1.0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void getObject_slowFirstRequest_usesHedgeAndClosesSlowerResponse() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TrackedStream slow = new TrackedStream("slow");
+        when(delegate.getObject(null, "object"))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return slow;
+                })
+                .thenReturn(new TrackedStream("fast"));
+        HedgingStorageAdapter adapter = new HedgingStorageAdapter(delegate, properties, meterRegistry);
+
+        try (InputStream stream = adapter.getObject(null, "object")) {
+            assertEquals("fast", new String(stream.readAllBytes()));
+        }
+        release.countDown();
+
+        verify(delegate, times(2)).getObject(null, "object");
+        assertEquals(1.0, meterRegistry.counter("storage.get.hedged").count());
+        assertEquals(1.0, meterRegistry.counter("storage.get.hedge.wins").count());
+        assertTrue(slow.awaitClosed(), "the response that lost the race is closed");
+    }
+
+    @Test
+    void getObject_noBudgetLeft_waitsForFirstRequest() throws Exception {
+        properties.setMaxExtraLoad(0);
+        when(delegate.getObject(null, "object")).thenAnswer(invocation -> {
+            Thread.sleep(60);
+            return new TrackedStream("slow");
+        });
+        HedgingStorageAdapter adapter = new HedgingStorageAdapter(delegate, properties, meterRegistry);
+
+        try (InputStream stream = adapter.getObject(null, "object")) {
+            assertEquals("slow", new String(stream.readAllBytes()));
+        }
+
+        verify(delegate, times(1)).getObject(null, "object");
+        assertEquals(0.0, meterRegistry.counter("storage.get.hedged").count());
+    }
+
+    @Test
+    void getObject_transientError_isRetried() throws Exception {
+        when(delegate.getObject(null, "object", 0, 4))
+                .thenThrow(new StorageException("Error downloading file from MinIO", new IOException("connection reset")))
+                .thenReturn(new TrackedStream("data"));
+        HedgingStorageAdapter adapter = new HedgingStorageAdapter(delegate, properties, meterRegistry);
+
+        try (InputStream stream = adapter.getObject(null, "object", 0, 4)) {
+            assertEquals("data", new String(stream.readAllBytes()));
+        }
+
+        assertEquals(1.0, meterRegistry.counter("storage.get.retried").count());
+        assertEquals(1, meterRegistry.get("storage.get.latency").timer().count());
+    }
+
+    @Test
+    void getObject_storageUnavailable_isNotRetried() {
+        when(delegate.getObject(null, "object")).thenThrow(new StorageUnavailableException("rejected"));
+        HedgingStorageAdapter adapter = new HedgingStorageAdapter(delegate, properties, meterRegistry);
+
+        assertThrows(StorageUnavailableException.class, () -> adapter.getObject(null, "object"));
+
+        verify(delegate, times(1)).getObject(null, "object");
+    }
+
+    private static final class TrackedStream extends ByteArrayInputStream {
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private TrackedStream(String content) {
+            super(content.getBytes());
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            closed.countDown();
+        }
+
+        private boolean awaitClosed() throws InterruptedException {
+            return closed.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.cloudservice.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.messages.Part;
+import org.example.cloudservice.infrastructure.minio.ExtendedMinioAsyncClient;
+import org.example.cloudservice.infrastructure.minio.MinioProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+
+@ExtendWith(MockitoExtension.class)
+class MinioMultipartUploaderTest {
+
+    @Mock
+    private ExtendedMinioAsyncClient minioAsyncClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MinioMultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        MinioProperties properties = new MinioProperties();
+        properties.getMultipart().setPartSize(DataSize.ofBytes(4));
+        properties.getMultipart().setParallelism(2);
+        meterRegistry = new SimpleMeterRegistry();
+        uploader = new MinioMultipartUploader(minioAsyncClient, properties, meterRegistry);
+
+        // Not every test starts an upload.
+        lenient().when(minioAsyncClient.startMultipartUpload("bucket", "object", "text/plain"))
+                .thenReturn(CompletableFuture.completedFuture("upload-1"));
+    }
+
+    @Test
+    void upload_splitsStreamIntoOrderedParts() {
+        when(minioAsyncClient.putPart(eq("bucket"), eq("object"), eq("upload-1"), anyInt(), any(byte[].class), anyInt()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture("etag-" + invocation.getArgument(3)));
+        when(minioAsyncClient.finishMultipartUpload(eq("bucket"), eq("object"), eq("upload-1"), any(Part[].class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        uploader.upload("bucket", "object", new ByteArrayInputStream("0123456789".getBytes()), 10, "text/plain");
+
+        // 10 bytes in parts of 4 bytes: 4 + 4 + 2.
+        verify(minioAsyncClient).putPart(eq("bucket"), eq("object"), eq("upload-1"), eq(1), any(byte[].class), eq(4));
+        verify(minioAsyncClient).putPart(eq("bucket"), eq("object"), eq("upload-1"), eq(2), any(byte[].class), eq(4));
+        verify(minioAsyncClient).putPart(eq("bucket"), eq("object"), eq("upload-1"), eq(3), any(byte[].class), eq(2));
+
+        ArgumentCaptor<Part[]> partsCaptor = ArgumentCaptor.forClass(Part[].class);
+        verify(minioAsyncClient).finishMultipartUpload(eq("bucket"), eq("object"), eq("upload-1"), partsCaptor.capture());
+        assertThat(partsCaptor.getValue()).extracting(Part::partNumber).containsExactly(1, 2, 3);
+        assertThat(partsCaptor.getValue()).extracting(Part::etag).containsExactly("etag-1", "etag-2", "etag-3");
+
+        assertEquals(10.0, meterRegistry.get("storage.multipart.upload.bytes").counter().count());
+        assertEquals(1L, meterRegistry.get("storage.multipart.upload.throughput").summary().count());
+    }
+
+    @Test
+    void upload_startFails_throwsStorageExceptionWithCause() {
+        IllegalStateException failure = new IllegalStateException("start failed");
+        when(minioAsyncClient.startMultipartUpload("bucket", "other", "text/plain"))
+                .thenReturn(CompletableFuture.failedFuture(failure));
+
+        StorageException exception = assertThrows(StorageException.class, () -> uploader.upload(
+                "bucket", "other", new ByteArrayInputStream("0123456789".getBytes()), 10, "text/plain"));
+
+        assertSame(failure, exception.getCause());
+        verify(minioAsyncClient, never()).putPart(anyString(), anyString(), anyString(), anyInt(), any(byte[].class), anyInt());
+    }
+
+    @Test
+    void upload_partFails_abortsUploadAndThrows() {
+        when(minioAsyncClient.putPart(eq("bucket"), eq("object"), eq("upload-1"), anyInt(), any(byte[].class), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("part failed")));
+        when(minioAsyncClient.cancelMultipartUpload("bucket", "object", "upload-1"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThrows(StorageException.class, () -> uploader.upload(
+                "bucket", "object", new ByteArrayInputStream("0123456789".getBytes()), 10, "text/plain"));
+
+        verify(minioAsyncClient).cancelMultipartUpload("bucket", "object", "upload-1");
+        verify(minioAsyncClient, never()).finishMultipartUpload(anyString(), anyString(), anyString(), any(Part[].class));
+        assertEquals(1.0, meterRegistry.get("storage.multipart.upload.aborted").counter().count());
+    }
+
+    @Test
+    void partSizeFor_raisesPartSizeToStayWithinPartLimit() {
+        long size = 4L * MinioMultipartUploader.MAX_PARTS * 3;
+
+        assertEquals(12L, uploader.partSizeFor(size));
+        assertEquals(4L, uploader.partSizeFor(-1));
+    }
+}
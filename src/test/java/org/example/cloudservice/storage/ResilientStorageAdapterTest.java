@@ -0,0 +1,128 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientStorageAdapterTest {
+
+    @Mock
+    private StorageAdapter delegate;
+
+    private StorageProperties.Resilience properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties.Resilience();
+        properties.setMaxConcurrentCalls(1);
+        properties.setMaxWait(Duration.ZERO);
+        properties.setMetadataTimeout(Duration.ofMillis(200));
+        properties.setSlidingWindowSize(4);
+        properties.setMinimumNumberOfCalls(4);
+        properties.setOpenDuration(Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void getObject_healthyStorage_passesCallThrough() throws Exception {
+        when(delegate.getObject(null, "object")).thenReturn(new ByteArrayInputStream("content".getBytes()));
+        ResilientStorageAdapter adapter = new ResilientStorageAdapter(delegate, properties, meterRegistry);
+
+        try (InputStream stream = adapter.getObject(null, "object")) {
+            assertEquals("content", new String(stream.readAllBytes()));
+        }
+    }
+
+    @Test
+    void statObject_failingStorage_opensCircuitAndFailsFast() {
+        when(delegate.statObject(null, "object"))
+                .thenThrow(new StorageException("Error reading file metadata from MinIO", new ConnectException("refused")));
+        ResilientStorageAdapter adapter = new ResilientStorageAdapter(delegate, properties, meterRegistry);
+
+        for (int i = 0; i < 4; i++) {
+            StorageException e = assertThrows(StorageException.class, () -> adapter.statObject(null, "object"));
+            assertFalse(e instanceof StorageUnavailableException);
+        }
+
+        // Once open, the circuit rejects calls without reaching storage.
+        assertThrows(StorageUnavailableException.class, () -> adapter.statObject(null, "object"));
+        verify(delegate, times(4)).statObject(null, "object");
+        assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tags("name", "storage", "state", "open").gauge().value());
+    }
+
+    @Test
+    void getObject_missingObjects_doNotOpenCircuit() {
+        StorageException missing = MinioStorageAdapter.minioError("Error downloading file from MinIO", new ErrorResponseException(
+                new ErrorResponse("NoSuchKey", "The specified key does not exist.", "bucket", "missing", null, null, null),
+                null, null));
+        when(delegate.getObject(null, "missing")).thenThrow(missing);
+        ResilientStorageAdapter adapter = new ResilientStorageAdapter(delegate, properties, meterRegistry);
+
+        for (int i = 0; i < 6; i++) {
+            StorageException e = assertThrows(StorageException.class, () -> adapter.getObject(null, "missing"));
+            assertSame(missing, e);
+        }
+
+        verify(delegate, times(6)).getObject(null, "missing");
+        assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tags("name", "storage", "state", "closed").gauge().value());
+    }
+
+    @Test
+    void getObject_missingFilesOnFilesystem_doNotOpenCircuit(@TempDir Path root) {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.getFilesystem().setRoot(root);
+        storageProperties.getFilesystem().setBucket("test-bucket");
+        ResilientStorageAdapter adapter = new ResilientStorageAdapter(
+                new FilesystemStorageAdapter(storageProperties), properties, meterRegistry);
+
+        for (int i = 0; i < 6; i++) {
+            StorageException e = assertThrows(StorageException.class, () -> adapter.getObject(null, "missing"));
+            assertFalse(e instanceof StorageUnavailableException);
+            assertFalse(e.isTransient());
+        }
+
+        assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tags("name", "storage", "state", "closed").gauge().value());
+    }
+
+    @Test
+    void statObject_slowStorage_timesOutAndKeepsSlotUntilCallReturns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.statObject(null, "slow")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new StorageObjectStat(1, null));
+        });
+        ResilientStorageAdapter adapter = new ResilientStorageAdapter(delegate, properties, meterRegistry);
+
+        assertThrows(StorageUnavailableException.class, () -> adapter.statObject(null, "slow"));
+        assertEquals(1.0, meterRegistry.counter("storage.calls.timed.out").count());
+
+        // The abandoned call still occupies the only slot, so the next call is rejected.
+        assertThrows(StorageUnavailableException.class, () -> adapter.statObject(null, "other"));
+        verify(delegate, never()).statObject(null, "other");
+
+        release.countDown();
+    }
+}
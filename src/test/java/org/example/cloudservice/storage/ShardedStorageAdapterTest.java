@@ -0,0 +1,93 @@
+package org.example.cloudservice.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedStorageAdapterTest {
+
+    @Mock
+    private StorageAdapter defaultShard;
+
+    @Mock
+    private StorageAdapter secondShard;
+
+    private ShardedStorageAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        adapter = new ShardedStorageAdapter(
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, defaultShard, "second", secondShard),
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, 1, "second", 1));
+    }
+
+    @Test
+    void getObject_nullBucket_readsFromDefaultShard() {
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+        when(defaultShard.getObject(null, "object")).thenReturn(content);
+
+        assertSame(content, adapter.getObject(null, "object"));
+        verifyNoInteractions(secondShard);
+    }
+
+    @Test
+    void deleteObjects_namedShard_deletesFromThatShard() {
+        adapter.deleteObjects("second", List.of("a", "b"));
+
+        verify(secondShard).deleteObjects(null, List.of("a", "b"));
+        verifyNoInteractions(defaultShard);
+    }
+
+    @Test
+    void getObject_unknownShard_throws() {
+        assertThrows(StorageException.class, () -> adapter.getObject("removed", "object"));
+    }
+
+    @Test
+    void chooseBucket_spreadsObjectsByWeight() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            counts.merge(adapter.chooseBucket("object_" + i), 1, Integer::sum);
+        }
+
+        assertEquals(2, counts.size());
+        assertTrue(counts.get("second") > 4_000 && counts.get("second") < 6_000, "got " + counts);
+        assertEquals(adapter.chooseBucket("object_1"), adapter.chooseBucket("object_1"));
+    }
+
+    @Test
+    void chooseBucket_addedShard_onlyMovesObjectsToIt() {
+        ShardedStorageAdapter grown = new ShardedStorageAdapter(
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, defaultShard, "second", secondShard, "third", secondShard),
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, 1, "second", 1, "third", 1));
+
+        for (int i = 0; i < 1_000; i++) {
+            String before = adapter.chooseBucket("object_" + i);
+            String after = grown.chooseBucket("object_" + i);
+            assertTrue(after.equals(before) || after.equals("third"), "object_" + i + " moved from " + before + " to " + after);
+        }
+    }
+
+    @Test
+    void chooseBucket_zeroWeight_placesNothingOnShard() {
+        ShardedStorageAdapter draining = new ShardedStorageAdapter(
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, defaultShard, "second", secondShard),
+                Map.of(ShardedStorageAdapter.DEFAULT_SHARD, 0, "second", 1));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("second", draining.chooseBucket("object_" + i));
+        }
+    }
+}